@@ -0,0 +1,100 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.ws.AccessLog;
+
+/**
+ * Cost on the request thread of logging a request: handing it to the
+ * {@link AccessLog} at a sample rate, against formatting and publishing a
+ * java.util.logging record synchronously as Jersey's LoggingFilter does. Both
+ * outputs discard the text, so only the request-side work is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessLogBenchmark {
+
+	@Param({ "1", "0.01" })
+	public double sampleRate;
+
+	private final URI uri = URI.create("http://localhost:8080/airports/BOS/weather/100");
+
+	private AccessLog accessLog;
+
+	private Logger logger;
+
+	@Setup
+	public void setUp() {
+		accessLog = new AccessLog(new Writer() {
+			@Override
+			public void write(char[] buffer, int offset, int length) {
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		}, AccessLog.DEFAULT_CAPACITY, sampleRate, 100);
+
+		logger = Logger.getLogger(AccessLogBenchmark.class.getName());
+		logger.setUseParentHandlers(false);
+		SimpleFormatter formatter = new SimpleFormatter();
+		logger.addHandler(new Handler() {
+			@Override
+			public synchronized void publish(LogRecord record) {
+				formatter.format(record);
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		});
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		accessLog.close();
+	}
+
+	@Benchmark
+	public boolean accessLog() {
+		return accessLog.log("GET", uri, 200, 1_000_000);
+	}
+
+	@Benchmark
+	public void synchronousLogging() {
+		logger.info("Server responded with a response on thread main\n< 200\n< Content-Type: application/json\n"
+				+ "GET " + uri);
+	}
+}
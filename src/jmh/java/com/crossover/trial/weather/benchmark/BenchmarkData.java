@@ -0,0 +1,102 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.server.data.ColumnarRepository;
+import com.crossover.trial.weather.server.data.DummyRepository;
+import com.crossover.trial.weather.server.data.DurableRepository;
+import com.crossover.trial.weather.server.data.IataCodec;
+import com.crossover.trial.weather.server.data.Repository;
+
+/**
+ * Synthetic catalogs shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * @param type
+	 *            "dummy" or "columnar", like the weather.repository property,
+	 *            or "durable" for a columnar repository logging to the
+	 *            directory
+	 * @param directory
+	 *            the log directory of a durable repository, which the caller
+	 *            closes and deletes with {@link #close(Repository, Path)}
+	 */
+	static Repository repository(String type, Path directory) {
+		if (type.equals("durable")) {
+			try {
+				return new DurableRepository(new ColumnarRepository(), directory, TimeUnit.MINUTES.toMillis(1));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return repository(type);
+	}
+
+	/**
+	 * @param type
+	 *            "dummy" or "columnar", like the weather.repository property
+	 */
+	static Repository repository(String type) {
+		switch (type) {
+		case "dummy":
+			return DummyRepository.getInstance();
+		case "columnar":
+			return new ColumnarRepository();
+		default:
+			throw new IllegalArgumentException("Unknown repository type: " + type);
+		}
+	}
+
+	/**
+	 * Closes a durable repository and deletes its directory.
+	 */
+	static void close(Repository repository, Path directory) throws IOException {
+		if (repository instanceof Closeable) {
+			((Closeable) repository).close();
+		}
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Adds airports with codes AAA, AAB, ... clustered in the northern mid
+	 * latitudes like the real catalog, each with a full set of weather data.
+	 */
+	static void populate(Repository repository, int size) {
+		Random random = new Random(42);
+		for (int i = 0; i < size; i++) {
+			String iata = IataCodec.decode(i);
+			repository.saveAirport(new Airport.Builder().withIataCode(iata)
+					.withLatitude(Math.max(-90, Math.min(90, random.nextGaussian() * 20 + 35)))
+					.withLongitude(random.nextDouble() * 360 - 180)
+					.build());
+			for (DataPointType type : DataPointType.values()) {
+				repository.updateAtmosphericInformation(iata, dataPoint(type, random));
+			}
+		}
+	}
+
+	static DataPoint dataPoint(DataPointType type, Random random) {
+		double mean = type.getMin() + random.nextDouble() * (type.getMax() - type.getMin());
+		return new DataPoint.Builder(type).withMean(mean).withFirst((int) type.getMin()).withSecond((int) mean)
+				.withLast((int) type.getMax()).withCount(random.nextInt(100)).build();
+	}
+}
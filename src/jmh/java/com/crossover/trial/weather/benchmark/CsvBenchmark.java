@@ -0,0 +1,85 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.io.AirportCsv;
+import com.crossover.trial.weather.io.CsvParser;
+import com.crossover.trial.weather.model.Airport;
+
+/**
+ * Parsing an airports file of the size of the OpenFlights data set, line by
+ * line as the loaders used to, with one parser and split across the common
+ * pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvBenchmark {
+
+	private static final int AIRPORTS = 12000;
+
+	private String content;
+
+	private String[] lines;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < AIRPORTS; i++) {
+			csv.append(String.format(Locale.ROOT, "%d,\"Airport %d Intl\",\"City %d\",\"Country %d\",\"%s\",\"K%s\",%.6f,%.6f,%d,%d,\"%s\"%n",
+					i, i, i, i % 200, code(i), code(i), random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180,
+					random.nextInt(5000), random.nextInt(24) - 12, "E"));
+		}
+		content = csv.toString();
+		lines = content.split("\n");
+	}
+
+	private static String code(int i) {
+		return new String(new char[] { (char) ('A' + i / 676 % 26), (char) ('A' + i / 26 % 26), (char) ('A' + i % 26) });
+	}
+
+	@Benchmark
+	public int parseLines() {
+		int count = 0;
+		for (String line : lines) {
+			count += AirportCsv.parse(line) == null ? 0 : 1;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int parseSequential() throws IOException {
+		CsvParser parser = new CsvParser(new StringReader(content));
+		int count = 0;
+		while (parser.next()) {
+			count += AirportCsv.read(parser) == null ? 0 : 1;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public List<Airport> parseParallel() throws IOException {
+		return CsvParser.parse(new StringReader(content), ForkJoinPool.commonPool(), AirportCsv::read);
+	}
+}
@@ -0,0 +1,172 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.io.WeatherRecords;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherUpdate;
+import com.crossover.trial.weather.server.data.IataCodec;
+import com.crossover.trial.weather.server.data.Repository;
+import com.crossover.trial.weather.ws.RestAirportsEndpoint;
+import com.google.gson.Gson;
+
+/**
+ * The endpoint hot paths called directly, without HTTP and Jersey dispatch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndpointBenchmark {
+
+	@Param({ "dummy", "columnar" })
+	private String repositoryType;
+
+	@Param({ "1000", "10000" })
+	private int catalogSize;
+
+	@Param({ "0", "50", "500", "5000" })
+	private String radius;
+
+	private RestAirportsEndpoint endpoint;
+
+	private String[] iataCodes;
+
+	private String[] dataPoints;
+
+	/** the same updates as a json batch and as binary records */
+	private byte[] jsonBatch;
+
+	private byte[] recordBatch;
+
+	/** the current ETag of the weather around every code */
+	private String[] etags;
+
+	private int next;
+
+	@Setup
+	public void setUp() {
+		Repository repository = BenchmarkData.repository(repositoryType);
+		BenchmarkData.populate(repository, catalogSize);
+		endpoint = new RestAirportsEndpoint(repository);
+
+		Random random = new Random(7);
+		Gson gson = new Gson();
+		iataCodes = new String[1024];
+		dataPoints = new String[1024];
+		for (int i = 0; i < iataCodes.length; i++) {
+			iataCodes[i] = IataCodec.decode(random.nextInt(catalogSize));
+			DataPointType type = DataPointType.values()[random.nextInt(DataPointType.values().length)];
+			dataPoints[i] = gson.toJson(BenchmarkData.dataPoint(type, random));
+		}
+		List<WeatherUpdate> updates = new ArrayList<>();
+		ByteBuffer records = ByteBuffer.allocate(WeatherRecords.RECORD_BYTES * iataCodes.length);
+		for (int i = 0; i < iataCodes.length; i++) {
+			WeatherUpdate update = new WeatherUpdate.Builder().withIata(iataCodes[i])
+					.withDataPoint(gson.fromJson(dataPoints[i], DataPoint.class)).build();
+			updates.add(update);
+			WeatherRecords.write(records, update);
+		}
+		jsonBatch = gson.toJson(updates).getBytes(StandardCharsets.UTF_8);
+		recordBatch = records.array();
+
+		etags = new String[iataCodes.length];
+		for (int i = 0; i < iataCodes.length; i++) {
+			etags[i] = endpoint.getWeatherAround(iataCodes[i], radius, null, null).getHeaderString(HttpHeaders.ETAG);
+		}
+	}
+
+	private int nextIndex() {
+		next = (next + 1) & 1023;
+		return next;
+	}
+
+	@Benchmark
+	public Object getWeatherAround() throws IOException {
+		return entity(endpoint.getWeatherAround(iataCodes[nextIndex()], radius, null, null));
+	}
+
+	/** a poll which is answered with 304 Not Modified */
+	@Benchmark
+	public Object getWeatherAroundNotModified() throws IOException {
+		int i = nextIndex();
+		return entity(endpoint.getWeatherAround(iataCodes[i], radius, etags[i], null));
+	}
+
+	@Benchmark
+	public Object updateWeather() {
+		int i = nextIndex();
+		return endpoint.updateWeather(iataCodes[i], dataPoints[i]);
+	}
+
+	/** a batch of 1024 updates */
+	@Benchmark
+	public Object updateWeatherJsonBatch() {
+		return endpoint.updateWeather(new ByteArrayInputStream(jsonBatch));
+	}
+
+	/** a batch of 1024 updates */
+	@Benchmark
+	public Object updateWeatherRecords() {
+		return endpoint.updateWeatherRecords(new ByteArrayInputStream(recordBatch));
+	}
+
+	@Benchmark
+	public Object stats() throws IOException {
+		return entity(endpoint.stats());
+	}
+
+	/** forces the response body to be produced */
+	static Object entity(Response response) throws IOException {
+		Object entity = response.getEntity();
+		if (entity instanceof StreamingOutput) {
+			CountingOutputStream output = new CountingOutputStream();
+			((StreamingOutput) entity).write(output);
+			return output.count;
+		}
+		return entity;
+	}
+
+	/** discards the body, like a network which is never the bottleneck */
+	private static final class CountingOutputStream extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
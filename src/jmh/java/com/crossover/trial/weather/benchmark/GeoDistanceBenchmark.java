@@ -0,0 +1,38 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.server.data.GeoDistance;
+
+/**
+ * A single haversine distance, the unit of work of a linear radius scan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeoDistanceBenchmark {
+
+	// not final, so the distance is not constant folded
+	private Airport boston = new Airport.Builder().withIataCode("BOS").withLatitude(42.364347).withLongitude(-71.005181).build();
+
+	private Airport newYork = new Airport.Builder().withIataCode("JFK").withLatitude(40.639751).withLongitude(-73.778925).build();
+
+	@Benchmark
+	public double calculateDistance() {
+		return GeoDistance.calculateDistance(boston, newYork);
+	}
+}
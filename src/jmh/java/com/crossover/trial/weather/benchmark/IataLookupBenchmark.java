@@ -0,0 +1,88 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.server.data.IataCodec;
+
+/**
+ * Compares airport lookups through the synchronized map used before with
+ * lookups through {@link IataCodec} codes into an array.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IataLookupBenchmark {
+
+	private static final int AIRPORTS = 10000;
+
+	private static final int QUERIES = 4096;
+
+	private Map<String, Airport> map;
+
+	private AtomicReferenceArray<Airport> array;
+
+	private String[] queries;
+
+	private int next;
+
+	@Setup
+	public void setUp() {
+		map = Collections.synchronizedMap(new HashMap<>());
+		array = new AtomicReferenceArray<>(IataCodec.CAPACITY);
+
+		Random random = new Random(42);
+		for (int i = 0; i < AIRPORTS; i++) {
+			String iata = IataCodec.decode(random.nextInt(IataCodec.CAPACITY));
+			Airport airport = new Airport.Builder().withIataCode(iata).build();
+			map.put(iata, airport);
+			array.set(IataCodec.encode(iata), airport);
+		}
+
+		queries = new String[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			// fresh instances like path parameters of incoming requests
+			queries[i] = new String(IataCodec.decode(random.nextInt(IataCodec.CAPACITY)).toCharArray());
+		}
+	}
+
+	private String nextQuery() {
+		next = (next + 1) & (QUERIES - 1);
+		return queries[next];
+	}
+
+	@Benchmark
+	public Airport synchronizedMapLookup() {
+		return map.get(nextQuery());
+	}
+
+	@Benchmark
+	public Airport codecArrayLookup() {
+		int code = IataCodec.encode(nextQuery());
+		return code == IataCodec.INVALID ? null : array.get(code);
+	}
+
+	@Benchmark
+	public int encode() {
+		return IataCodec.encode(nextQuery());
+	}
+}
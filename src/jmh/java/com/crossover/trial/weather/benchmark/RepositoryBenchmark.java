@@ -0,0 +1,107 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.server.data.IataCodec;
+import com.crossover.trial.weather.server.data.Repository;
+
+/**
+ * Repository operations under contention. Scale the thread count with the JMH
+ * -t option (e.g. -t 1, -t 4, -t max), the read/write group runs 3 readers per
+ * writer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+	private static final int CATALOG_SIZE = 1000;
+
+	@Param({ "dummy", "columnar", "durable" })
+	private String repositoryType;
+
+	private Repository repository;
+
+	/** the log directory of the durable repository */
+	private Path directory;
+
+	private DataPoint[] dataPoints;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("weather-benchmark");
+		repository = BenchmarkData.repository(repositoryType, directory);
+		BenchmarkData.populate(repository, CATALOG_SIZE);
+
+		Random random = new Random(7);
+		dataPoints = new DataPoint[1024];
+		for (int i = 0; i < dataPoints.length; i++) {
+			dataPoints[i] = BenchmarkData.dataPoint(DataPointType.values()[i % DataPointType.values().length], random);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		BenchmarkData.close(repository, directory);
+	}
+
+	private static String randomAirport() {
+		return IataCodec.decode(ThreadLocalRandom.current().nextInt(CATALOG_SIZE));
+	}
+
+	@Benchmark
+	public void incrementRequestCount() {
+		repository.incrementRequestCount(randomAirport());
+	}
+
+	@Benchmark
+	public void incrementRadiusCount() {
+		repository.incrementRadiusCount(ThreadLocalRandom.current().nextInt(2000));
+	}
+
+	@Benchmark
+	public Object getAirport() {
+		return repository.getAirport(randomAirport());
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(3)
+	public AtmosphericInformation read() {
+		return repository.getAtmosphericInformationByIataCode(randomAirport());
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(1)
+	public void write() {
+		repository.updateAtmosphericInformation(randomAirport(), dataPoints[ThreadLocalRandom.current().nextInt(1024)]);
+	}
+}
@@ -0,0 +1,59 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPointType;
+import com.google.gson.Gson;
+
+/**
+ * Gson serialization of weather lists as returned by getWeatherAround.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	private int size;
+
+	private final Gson gson = new Gson();
+
+	private List<AtmosphericInformation> atmosphericInformation;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		atmosphericInformation = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			AtmosphericInformation.Builder builder = new AtmosphericInformation.Builder();
+			for (DataPointType type : DataPointType.values()) {
+				builder.withDataPoint(BenchmarkData.dataPoint(type, random));
+			}
+			atmosphericInformation.add(builder.withLastUpdateTime(System.currentTimeMillis()).build());
+		}
+	}
+
+	@Benchmark
+	public String toJson() {
+		return gson.toJson(atmosphericInformation);
+	}
+}
@@ -0,0 +1,116 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.server.TransportConfig;
+import com.crossover.trial.weather.server.TransportConfig.ExecutionMode;
+import com.crossover.trial.weather.server.data.IataCodec;
+import com.crossover.trial.weather.server.data.Repository;
+import com.crossover.trial.weather.ws.RestAirportsEndpoint;
+
+/**
+ * Requests over HTTP to a local server with each execution mode, from many
+ * concurrent keep-alive connections (one per JMH thread, set with -t). The
+ * radius query is CPU bound, the blocking request waits like a call to a
+ * slow downstream service and shows how many requests each mode can have
+ * waiting at the same time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dhttp.maxConnections=1024")
+@Threads(256)
+@State(Scope.Benchmark)
+public class ServerBenchmark {
+
+	private static final int CATALOG_SIZE = 1000;
+
+	private static final int PORT = 8089;
+
+	@Param({ "POOL", "VIRTUAL" })
+	private ExecutionMode mode;
+
+	@Param({ "16" })
+	private int workerThreads;
+
+	private HttpServer server;
+
+	@Setup
+	public void setUp() throws IOException {
+		Repository repository = BenchmarkData.repository("columnar");
+		BenchmarkData.populate(repository, CATALOG_SIZE);
+		ResourceConfig resources = new ResourceConfig()
+				.register(new RestAirportsEndpoint(repository))
+				.register(BlockingResource.class);
+		server = new TransportConfig.Builder().withMode(mode).withWorkerThreads(workerThreads).build()
+				.createHttpServer(URI.create("http://localhost:" + PORT + "/"), resources);
+		server.start();
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.shutdownNow();
+	}
+
+	@Benchmark
+	public int radiusQuery() throws IOException {
+		return get("/airports/" + IataCodec.decode(ThreadLocalRandom.current().nextInt(CATALOG_SIZE)) + "/weather/200");
+	}
+
+	@Benchmark
+	public int blocking() throws IOException {
+		return get("/blocking/10");
+	}
+
+	/** reads the whole body, so the connection is kept alive */
+	private static int get(String path) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + path).openConnection();
+		int length = 0;
+		try (InputStream body = connection.getInputStream()) {
+			byte[] buffer = new byte[8192];
+			for (int read; (read = body.read(buffer)) >= 0;) {
+				length += read;
+			}
+		}
+		return length;
+	}
+
+	/** waits like a call to a downstream service */
+	@Path("/blocking")
+	public static class BlockingResource {
+
+		@GET
+		@Path("/{millis}")
+		public String block(@PathParam("millis") long millis) throws InterruptedException {
+			Thread.sleep(millis);
+			return "ok";
+		}
+	}
+}
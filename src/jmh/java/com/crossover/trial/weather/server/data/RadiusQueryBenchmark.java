@@ -0,0 +1,93 @@
+package com.crossover.trial.weather.server.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.Airport;
+
+/**
+ * Radius queries over a random catalog: a linear scan calling
+ * {@link GeoDistance} per airport, the same scan through the
+ * {@link CoordinateBlock} kernel and the {@link AirportGridIndex}.
+ * Lives in the repository package to reach the package private kernel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RadiusQueryBenchmark {
+
+	@Param({ "1000", "10000" })
+	private int catalogSize;
+
+	@Param({ "50", "500", "5000" })
+	private double radius;
+
+	private List<Airport> airports;
+
+	private CoordinateBlock block;
+
+	private AirportGridIndex index;
+
+	private Airport center;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		airports = new ArrayList<>(catalogSize);
+		block = CoordinateBlock.EMPTY;
+		index = new AirportGridIndex();
+		for (int i = 0; i < catalogSize; i++) {
+			// airports cluster in the northern mid latitudes like the real catalog
+			Airport airport = new Airport.Builder().withIataCode(IataCodec.decode(i))
+					.withLatitude(random.nextGaussian() * 20 + 35)
+					.withLongitude(random.nextDouble() * 360 - 180)
+					.build();
+			if (GeoDistance.isValidCoordinate(airport.getLatitude(), airport.getLongitude())) {
+				airports.add(airport);
+				block = block.with(airport);
+				index.add(airport);
+			}
+		}
+		center = new Airport.Builder().withIataCode("BOS").withLatitude(42.364347).withLongitude(-71.005181).build();
+	}
+
+	@Benchmark
+	public List<Airport> linearScan() {
+		List<Airport> result = new ArrayList<>();
+		for (Airport airport : airports) {
+			if (GeoDistance.calculateDistance(center, airport) <= radius) {
+				result.add(airport);
+			}
+		}
+		return result;
+	}
+
+	@Benchmark
+	public List<Airport> kernelScan() {
+		List<Airport> result = new ArrayList<>();
+		block.collectWithin(CoordinateBlock.Query.around(center.getLatitude(), center.getLongitude(), radius), result);
+		return result;
+	}
+
+	@Benchmark
+	public List<Airport> gridIndex() {
+		return index.findWithin(center, radius);
+	}
+}
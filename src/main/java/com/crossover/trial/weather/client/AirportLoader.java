@@ -1,25 +1,31 @@
 package com.crossover.trial.weather.client;
 
-import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
 import org.glassfish.jersey.filter.LoggingFilter;
 
+import com.crossover.trial.weather.io.AirportCsv;
+import com.crossover.trial.weather.io.CsvParser;
 import com.crossover.trial.weather.model.Airport;
-import com.crossover.trial.weather.model.DST;
 import com.google.gson.Gson;
 
 /**
@@ -49,60 +55,73 @@ public class AirportLoader {
 
     // CR: This method needs to be implemented
     public void upload(InputStream inputStream) throws IOException{
-		try (BufferedReader buffer = new BufferedReader(new InputStreamReader(inputStream))) {
-			 List<Airport> airports = buffer.lines().map(line -> buildAirportFromCSV(line))
-					 .collect(Collectors.toList());
-			 
-			 airports.stream().filter(Objects::nonNull)
-			 	.forEach(airport -> createAirport(airport));
+		List<Airport> airports;
+		try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+			airports = CsvParser.parse(reader, ForkJoinPool.commonPool(), AirportLoader::buildAirportFromCSV);
 		}
+		airports.forEach(airport -> createAirport(airport));
+    }
+
+    /**
+     * Streams the csv file as it is read into the bulk import endpoint, a
+     * single request which never holds the whole file in memory.
+     *
+     * @return the import summary of the server
+     */
+    public String uploadBulk(InputStream inputStream) {
+		Response response = airportsEndpoint.path("/import").request(MediaType.APPLICATION_JSON)
+				.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED)
+				.post(Entity.entity(inputStream, AirportCsv.MEDIA_TYPE));
+		return response.readEntity(String.class);
     }
 
     private void createAirport(Airport airport) {
 		airportsEndpoint.request().post(Entity.<String>entity(gson.toJson(airport), MediaType.APPLICATION_JSON));
 	}
 
-	public static void main(String args[]) throws IOException{
-    	
-    	InputStream inputStream = AirportLoader.class.getResourceAsStream("/airports.txt");
-    	
-		AirportLoader loader = new AirportLoader();
-		loader.upload(inputStream);
-    }
-    
-	private static Airport buildAirportFromCSV(String line) {
-		Airport airport = null;
-		
-		String[] parts = line.split(",");
-		
-		if(parts.length != 11) {
-			log.warning("Skipped. This line doesn't follow required format : " + line);
-		} else {
-			List<String> airportProperties = Arrays.asList(parts).stream().map(item ->stripLeadingAndTrailingQuote(item)).collect(Collectors.toList());
-
-			airport = new Airport.Builder()
-				.withCity(airportProperties.get(2))
-				.withCountry(airportProperties.get(3))
-				.withIataCode(airportProperties.get(4))
-				.withIcaoCode(airportProperties.get(5))
-				.withLatitude(Double.parseDouble(airportProperties.get(6)))
-				.withLongitude(Double.parseDouble(airportProperties.get(7)))
-				.withAltitude(Double.parseDouble(airportProperties.get(8)))
-				.withUtcOffset(airportProperties.get(9))
-				.withDst(DST.valueOf(airportProperties.get(10)))
-				.build();
+	/**
+	 * Usage: AirportLoader [--bulk | --async [--window N]] [file], loads the
+	 * bundled airports.txt if no file is given.
+	 */
+	public static void main(String args[]) throws IOException, InterruptedException {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		boolean bulk = arguments.remove("--bulk");
+		boolean async = arguments.remove("--async");
+		int window = AsyncAirportUploader.DEFAULT_WINDOW;
+		int windowIndex = arguments.indexOf("--window");
+		if (windowIndex >= 0) {
+			arguments.remove(windowIndex);
+			window = Integer.parseInt(arguments.remove(windowIndex));
 		}
-		return airport;
-	}
 
-	private static String stripLeadingAndTrailingQuote(String line) {
-		String result = line;
-		if (result.startsWith("\"") ) {
-			result = result.substring(1, result.length());
+		try (InputStream inputStream = arguments.isEmpty() ? AirportLoader.class.getResourceAsStream("/airports.txt")
+				: new FileInputStream(arguments.get(0))) {
+			if (async) {
+				// keep a pooled connection per request in flight, must be set before the first connection
+				if (System.getProperty("http.maxConnections") == null) {
+					System.setProperty("http.maxConnections", String.valueOf(window));
+				}
+				AsyncAirportUploader uploader = new AsyncAirportUploader(BASE_URL, window,
+						AsyncAirportUploader.DEFAULT_MAX_ATTEMPTS);
+				try {
+					log.info(uploader.upload(inputStream));
+				} finally {
+					uploader.close();
+				}
+			} else if (bulk) {
+				log.info(new AirportLoader().uploadBulk(inputStream));
+			} else {
+				new AirportLoader().upload(inputStream);
+			}
 		}
-		if (result.endsWith("\"") ) {
-			result = result.substring(0, result.length()-1);
+    }
+    
+	private static Airport buildAirportFromCSV(CsvParser record) {
+		try {
+			return AirportCsv.read(record);
+		} catch (IllegalArgumentException e) {
+			log.warning("Skipped. This line doesn't follow required format : " + record.getLine());
+			return null;
 		}
-		return result;
 	}
 }
@@ -0,0 +1,261 @@
+package com.crossover.trial.weather.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.ClientAsyncExecutor;
+import org.glassfish.jersey.spi.ExecutorServiceProvider;
+
+import com.crossover.trial.weather.io.AirportCsv;
+import com.crossover.trial.weather.io.CsvParser;
+import com.crossover.trial.weather.metrics.LatencyHistogram;
+import com.crossover.trial.weather.model.Airport;
+import com.google.gson.Gson;
+
+/**
+ * Uploads airports with pipelined asynchronous {@code POST /airports}
+ * requests. At most {@code window} requests are in flight, the file is read
+ * only as fast as they complete. Failed requests and 5xx responses are retried
+ * with exponential backoff and jitter, a 409 Conflict counts as done. The
+ * reported latency of an airport spans all its attempts, from the first
+ * request to the final response.
+ *
+ * Connections are reused through the keep-alive cache of the JDK HTTP client,
+ * whose size is the {@code http.maxConnections} system property, so it should
+ * be at least the window (see {@link AirportLoader#main(String[])}).
+ */
+public class AsyncAirportUploader {
+
+	public static final Logger log = Logger.getLogger(AsyncAirportUploader.class.getName());
+
+	public static final int DEFAULT_WINDOW = 32;
+
+	public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+	private static final long INITIAL_BACKOFF_MILLIS = 50;
+
+	private static final long MAX_BACKOFF_MILLIS = 5000;
+
+	private static final Gson gson = new Gson();
+
+	private final Client client;
+
+	private final WebTarget airportsEndpoint;
+
+	private final int window;
+
+	private final int maxAttempts;
+
+	private final Semaphore inFlight;
+
+	private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(daemon("airport-upload-retry"));
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private final LongAdder created = new LongAdder();
+	private final LongAdder conflicts = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder retried = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+
+	public AsyncAirportUploader(String baseUrl, int window, int maxAttempts) {
+		if (window < 1) {
+			throw new IllegalArgumentException("Window must be positive but was " + window);
+		}
+		this.window = window;
+		this.maxAttempts = maxAttempts;
+		this.inFlight = new Semaphore(window);
+		// one async thread per request in flight, the default connector blocks while waiting
+		this.client = ClientBuilder.newClient().register(new AsyncExecutorProvider(window));
+		this.airportsEndpoint = client.target(baseUrl).path("/airports");
+	}
+
+	/**
+	 * Uploads all airports of the csv stream and waits until every request is
+	 * done.
+	 *
+	 * @return the summary of the upload
+	 */
+	public String upload(InputStream inputStream) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+			CsvParser record = new CsvParser(reader);
+			while (record.next()) {
+				Airport airport;
+				try {
+					airport = AirportCsv.read(record);
+				} catch (IllegalArgumentException e) {
+					log.warning("Skipped. This line doesn't follow required format : " + record.getLine());
+					skipped.increment();
+					continue;
+				}
+				inFlight.acquire();
+				send(gson.toJson(airport), 1, System.nanoTime());
+			}
+		}
+		// every request holds a permit until it is done
+		inFlight.acquire(window);
+		inFlight.release(window);
+		return summary(System.nanoTime() - start);
+	}
+
+	public void close() {
+		retries.shutdownNow();
+		client.close();
+	}
+
+	/**
+	 * @param firstStart
+	 *            the time of the airport's first attempt
+	 */
+	private void send(String airport, int attempt, long firstStart) {
+		try {
+			airportsEndpoint.request().async().post(Entity.entity(airport, MediaType.APPLICATION_JSON),
+					new InvocationCallback<Response>() {
+						@Override
+						public void completed(Response response) {
+							int status = response.getStatus();
+							response.close();
+							if (status == Response.Status.CREATED.getStatusCode()) {
+								done(created, firstStart);
+							} else if (status == Response.Status.CONFLICT.getStatusCode()) {
+								done(conflicts, firstStart);
+							} else if (status >= 500) {
+								retry(airport, attempt, firstStart, "HTTP " + status, null);
+							} else {
+								log.warning("Rejected with HTTP " + status + ": " + airport);
+								done(failed, firstStart);
+							}
+						}
+
+						@Override
+						public void failed(Throwable throwable) {
+							retry(airport, attempt, firstStart, throwable.getMessage(), throwable);
+						}
+					});
+		} catch (RuntimeException e) {
+			// e.g. a closed client, the callbacks will not run and release the permit
+			log.log(Level.WARNING, "Failed to send: " + airport, e);
+			done(failed, firstStart);
+		}
+	}
+
+	private void retry(String airport, int attempt, long firstStart, String reason, Throwable cause) {
+		if (attempt >= maxAttempts) {
+			log.log(Level.WARNING, "Giving up after " + attempt + " attempts (" + reason + "): " + airport, cause);
+			done(failed, firstStart);
+			return;
+		}
+		retried.increment();
+		long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << (attempt - 1));
+		long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+		try {
+			retries.schedule(() -> send(airport, attempt + 1, firstStart), delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			log.log(Level.WARNING, "Giving up after " + attempt + " attempts, the uploader is closed: " + airport, e);
+			done(failed, firstStart);
+		}
+	}
+
+	/**
+	 * Counts the airport as done and releases its permit.
+	 */
+	private void done(LongAdder outcome, long firstStart) {
+		latency.record(System.nanoTime() - firstStart);
+		outcome.increment();
+		inFlight.release();
+	}
+
+	public long getCreated() {
+		return created.sum();
+	}
+
+	public long getConflicts() {
+		return conflicts.sum();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/** @return the number of attempts after the first ones */
+	public long getRetried() {
+		return retried.sum();
+	}
+
+	/** @return the number of lines which are not airports */
+	public long getSkipped() {
+		return skipped.sum();
+	}
+
+	private String summary(long elapsedNanos) {
+		LatencyHistogram.Snapshot snapshot = latency.snapshot();
+		long done = created.sum() + conflicts.sum() + failed.sum();
+		double seconds = elapsedNanos / 1e9;
+		return String.format("Uploaded %d airports in %.2f s (%.0f/s) with window %d: %d created, %d conflicts, "
+				+ "%d failed, %d skipped lines, %d retries. Airport latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+				done, seconds, done / seconds, window, created.sum(), conflicts.sum(), failed.sum(), skipped.sum(),
+				retried.sum(), millis(snapshot.getValueAtPercentile(50)), millis(snapshot.getValueAtPercentile(90)),
+				millis(snapshot.getValueAtPercentile(99)), millis(snapshot.getMaxValue()));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	private static ThreadFactory daemon(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Async executor of the client. Jersey's default one is not shut down when
+	 * the client is closed and its threads keep the JVM alive.
+	 */
+	@ClientAsyncExecutor
+	public static class AsyncExecutorProvider implements ExecutorServiceProvider {
+
+		private final int threads;
+
+		public AsyncExecutorProvider(int threads) {
+			this.threads = threads;
+		}
+
+		@Override
+		public ExecutorService getExecutorService() {
+			return Executors.newFixedThreadPool(threads, daemon("airport-upload"));
+		}
+
+		@Override
+		public void dispose(ExecutorService executorService) {
+			executorService.shutdownNow();
+		}
+	}
+}
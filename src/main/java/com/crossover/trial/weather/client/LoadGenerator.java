@@ -0,0 +1,556 @@
+package com.crossover.trial.weather.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.crossover.trial.weather.metrics.LatencyHistogram;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.google.gson.Gson;
+
+/**
+ * Generates a weighted mix of weather updates, radius queries, airport
+ * listings and stats requests from a number of threads, for repeatable
+ * capacity numbers of a running server.
+ *
+ * In the open model requests are scheduled at a fixed arrival rate and their
+ * latency is measured from the scheduled start, so a stalled server is
+ * charged for the requests which queued up behind the stall. In the closed
+ * model every thread sends its next request as soon as the previous one is
+ * done; a latency above the median service time of the warmup is then
+ * corrected by also recording the requests which would have been sent during
+ * it, as HdrHistogram's {@code recordValueWithExpectedInterval} does. The
+ * plain service times are reported next to the corrected latencies.
+ */
+public class LoadGenerator {
+
+	public static final Logger log = Logger.getLogger(LoadGenerator.class.getName());
+
+	/** the requests of the mix */
+	public enum Operation {
+		/** PUT /airports/{iata}/weather */
+		POPULATE("populate"),
+		/** GET /airports/{iata}/weather/{radius} */
+		RADIUS_QUERY("radius"),
+		/** GET /airports */
+		LIST_AIRPORTS("airports"),
+		/** GET /airports/stats */
+		STATS("stats");
+
+		private final String key;
+
+		private Operation(String key) {
+			this.key = key;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public static Operation ofKey(String key) {
+			for (Operation operation : values()) {
+				if (operation.key.equals(key)) {
+					return operation;
+				}
+			}
+			throw new IllegalArgumentException("Unknown operation " + key + ", expected one of "
+					+ Arrays.toString(Arrays.stream(values()).map(Operation::getKey).toArray()));
+		}
+	}
+
+	private static final Operation[] OPERATIONS = Operation.values();
+
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	private static final Gson gson = new Gson();
+
+	private final String baseUrl;
+
+	private final int threads;
+
+	/** requests per second of the open model, 0 for the closed model */
+	private final double rate;
+
+	private final long warmupNanos;
+
+	private final long durationNanos;
+
+	private final double radius;
+
+	/** cumulative weights in the order of {@link Operation#values()} */
+	private final int[] mix;
+
+	private LoadGenerator(Builder builder) {
+		this.baseUrl = builder.baseUrl;
+		this.threads = builder.threads;
+		this.rate = builder.rate;
+		this.warmupNanos = builder.warmupNanos;
+		this.durationNanos = builder.durationNanos;
+		this.radius = builder.radius;
+		this.mix = new int[OPERATIONS.length];
+		int total = 0;
+		for (Operation operation : OPERATIONS) {
+			total += builder.weights.getOrDefault(operation, 0);
+			mix[operation.ordinal()] = total;
+		}
+	}
+
+	/**
+	 * Runs the warmup and the measurement and waits for all threads.
+	 *
+	 * @return the results of the measurement
+	 */
+	public Report run() throws InterruptedException {
+		Client client = ClientBuilder.newClient();
+		try {
+			WebTarget airports = client.target(baseUrl).path("/airports");
+			String[] iataCodes = gson.fromJson(airports.request(MediaType.APPLICATION_JSON).get(String.class), String[].class);
+			if (iataCodes.length == 0) {
+				throw new IllegalStateException("The server has no airports");
+			}
+			return new Run(airports, iataCodes).execute();
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Adds the value and, if it is longer than the expected interval, the
+	 * values of the requests a waiting thread would have sent meanwhile.
+	 */
+	static void recordCorrected(LatencyHistogram histogram, long nanos, long expectedIntervalNanos) {
+		histogram.record(nanos);
+		if (expectedIntervalNanos <= 0) {
+			return;
+		}
+		for (long missed = nanos - expectedIntervalNanos; missed >= expectedIntervalNanos; missed -= expectedIntervalNanos) {
+			histogram.record(missed);
+		}
+	}
+
+	/**
+	 * Parses a mix like {@code populate=4,radius=4,airports=1,stats=1}.
+	 */
+	static Map<Operation, Integer> parseMix(String mix) {
+		Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+		for (String entry : mix.split(",")) {
+			String[] keyAndWeight = entry.split("=");
+			if (keyAndWeight.length != 2) {
+				throw new IllegalArgumentException("Expected operation=weight but got " + entry);
+			}
+			weights.put(Operation.ofKey(keyAndWeight[0].trim()), Integer.parseInt(keyAndWeight[1].trim()));
+		}
+		return weights;
+	}
+
+	/** state of one execution */
+	private final class Run {
+
+		private final WebTarget airports;
+
+		private final String[] iataCodes;
+
+		private final LatencyHistogram warmup = new LatencyHistogram();
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+		private final LongAdder[] counts = new LongAdder[OPERATIONS.length];
+
+		private final LongAdder errors = new LongAdder();
+
+		/** next arrival of the open model */
+		private final AtomicLong arrivals = new AtomicLong();
+
+		private final long start = System.nanoTime();
+
+		private final long intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+
+		private volatile long expectedIntervalNanos;
+
+		private volatile boolean measuring;
+
+		private volatile boolean stopped;
+
+		Run(WebTarget airports, String[] iataCodes) {
+			this.airports = airports;
+			this.iataCodes = iataCodes;
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = new LongAdder();
+			}
+		}
+
+		Report execute() throws InterruptedException {
+			List<Thread> workers = new ArrayList<>(threads);
+			for (int i = 0; i < threads; i++) {
+				Thread worker = new Thread(this::work, "load-" + (i + 1));
+				worker.setDaemon(true);
+				workers.add(worker);
+				worker.start();
+			}
+			TimeUnit.NANOSECONDS.sleep(warmupNanos);
+			// the expected interval of a closed-model thread is its typical request
+			expectedIntervalNanos = warmup.snapshot().getValueAtPercentile(50);
+			measuring = true;
+			long measurementStart = System.nanoTime();
+			TimeUnit.NANOSECONDS.sleep(durationNanos);
+			stopped = true;
+			long measurementNanos = System.nanoTime() - measurementStart;
+			for (Thread worker : workers) {
+				worker.join();
+			}
+
+			long[] operationCounts = new long[counts.length];
+			for (int i = 0; i < counts.length; i++) {
+				operationCounts[i] = counts[i].sum();
+			}
+			long scheduled = intervalNanos > 0 ? measurementNanos / intervalNanos : 0;
+			return new Report(rate, threads, measurementNanos, operationCounts, errors.sum(), scheduled,
+					latency.snapshot(), serviceTime.snapshot());
+		}
+
+		private void work() {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			while (!stopped) {
+				long intended;
+				if (intervalNanos > 0) {
+					intended = start + arrivals.getAndIncrement() * intervalNanos;
+					long wait;
+					while ((wait = intended - System.nanoTime()) > 0 && !stopped) {
+						LockSupport.parkNanos(wait);
+					}
+					if (stopped) {
+						return;
+					}
+				} else {
+					intended = System.nanoTime();
+				}
+				boolean measured = measuring;
+				Operation operation = pick(random);
+				long sent = System.nanoTime();
+				boolean ok = send(operation, random);
+				long done = System.nanoTime();
+
+				if (!measured) {
+					warmup.record(done - sent);
+					continue;
+				}
+				serviceTime.record(done - sent);
+				if (intervalNanos > 0) {
+					latency.record(done - intended);
+				} else {
+					recordCorrected(latency, done - sent, expectedIntervalNanos);
+				}
+				counts[operation.ordinal()].increment();
+				if (!ok) {
+					errors.increment();
+				}
+			}
+		}
+
+		private Operation pick(ThreadLocalRandom random) {
+			int value = random.nextInt(mix[mix.length - 1]);
+			for (int i = 0; i < mix.length; i++) {
+				if (value < mix[i]) {
+					return OPERATIONS[i];
+				}
+			}
+			throw new IllegalStateException("Weights changed");
+		}
+
+		/** @return true if the server answered with a success status */
+		private boolean send(Operation operation, ThreadLocalRandom random) {
+			String iata = iataCodes[random.nextInt(iataCodes.length)];
+			Response response;
+			try {
+				switch (operation) {
+				case POPULATE:
+					response = airports.path(iata).path("weather").request()
+							.put(Entity.entity(gson.toJson(dataPoint(random)), MediaType.APPLICATION_JSON));
+					break;
+				case RADIUS_QUERY:
+					response = airports.path(iata).path("weather").path(String.valueOf(radius))
+							.request(MediaType.APPLICATION_JSON).get();
+					break;
+				case LIST_AIRPORTS:
+					response = airports.request(MediaType.APPLICATION_JSON).get();
+					break;
+				case STATS:
+					response = airports.path("stats").request(MediaType.APPLICATION_JSON).get();
+					break;
+				default:
+					throw new IllegalStateException("Unknown operation " + operation);
+				}
+			} catch (ProcessingException e) {
+				log.fine("Request failed: " + e.getMessage());
+				return false;
+			}
+			try {
+				// the body is read, so the connection can be reused
+				response.readEntity(byte[].class);
+				return response.getStatus() < 400;
+			} catch (ProcessingException e) {
+				return false;
+			} finally {
+				response.close();
+			}
+		}
+	}
+
+	private static DataPoint dataPoint(ThreadLocalRandom random) {
+		DataPointType type = TYPES[random.nextInt(TYPES.length)];
+		int first = (int) Math.ceil(type.getMin());
+		int last = (int) Math.floor(type.getMax());
+		int mean = first + random.nextInt(last - first + 1);
+		return new DataPoint.Builder(type).withFirst(first).withSecond(mean).withLast(last).withMean(mean)
+				.withCount(1 + random.nextInt(100)).build();
+	}
+
+	/**
+	 * Results of the measurement.
+	 */
+	public static final class Report {
+
+		private final double rate;
+
+		private final int threads;
+
+		private final long elapsedNanos;
+
+		private final long[] counts;
+
+		private final long errors;
+
+		private final long scheduled;
+
+		private final LatencyHistogram.Snapshot latency;
+
+		private final LatencyHistogram.Snapshot serviceTime;
+
+		private Report(double rate, int threads, long elapsedNanos, long[] counts, long errors, long scheduled,
+				LatencyHistogram.Snapshot latency, LatencyHistogram.Snapshot serviceTime) {
+			this.rate = rate;
+			this.threads = threads;
+			this.elapsedNanos = elapsedNanos;
+			this.counts = counts;
+			this.errors = errors;
+			this.scheduled = scheduled;
+			this.latency = latency;
+			this.serviceTime = serviceTime;
+		}
+
+		public long getRequests() {
+			long sum = 0;
+			for (long count : counts) {
+				sum += count;
+			}
+			return sum;
+		}
+
+		public long getRequests(Operation operation) {
+			return counts[operation.ordinal()];
+		}
+
+		/** requests answered with an error status or not answered */
+		public long getErrors() {
+			return errors;
+		}
+
+		/** requests per second */
+		public double getThroughput() {
+			return getRequests() / (elapsedNanos / 1e9);
+		}
+
+		/** latencies corrected for coordinated omission */
+		public LatencyHistogram.Snapshot getLatency() {
+			return latency;
+		}
+
+		/** time from sending a request to its response */
+		public LatencyHistogram.Snapshot getServiceTime() {
+			return serviceTime;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder();
+			result.append(String.format("%s model with %d threads: %d requests in %.2f s (%.0f/s), %d errors",
+					rate > 0 ? String.format("Open (%.0f/s)", rate) : "Closed", threads, getRequests(),
+					elapsedNanos / 1e9, getThroughput(), errors));
+			if (rate > 0 && scheduled > getRequests()) {
+				result.append(String.format(", %d scheduled requests not sent", scheduled - getRequests()));
+			}
+			result.append("\n  mix:");
+			for (Operation operation : OPERATIONS) {
+				result.append(' ').append(operation.getKey()).append('=').append(getRequests(operation));
+			}
+			result.append("\n  latency      ").append(percentiles(latency));
+			result.append("\n  service time ").append(percentiles(serviceTime));
+			return result.toString();
+		}
+
+		private static String percentiles(LatencyHistogram.Snapshot snapshot) {
+			return String.format("p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+					millis(snapshot.getValueAtPercentile(50)), millis(snapshot.getValueAtPercentile(90)),
+					millis(snapshot.getValueAtPercentile(99)), millis(snapshot.getValueAtPercentile(99.9)),
+					millis(snapshot.getMaxValue()));
+		}
+
+		private static double millis(long nanos) {
+			return nanos / 1e6;
+		}
+	}
+
+	public static class Builder {
+
+		private String baseUrl = "http://localhost:8080";
+
+		private int threads = 8;
+
+		private double rate;
+
+		private long warmupNanos = TimeUnit.SECONDS.toNanos(5);
+
+		private long durationNanos = TimeUnit.SECONDS.toNanos(30);
+
+		private double radius = 100;
+
+		private Map<Operation, Integer> weights = parseMix("populate=4,radius=4,airports=1,stats=1");
+
+		public Builder withBaseUrl(String baseUrl) {
+			this.baseUrl = baseUrl;
+			return this;
+		}
+
+		public Builder withThreads(int threads) {
+			this.threads = threads;
+			return this;
+		}
+
+		/**
+		 * @param rate
+		 *            requests per second of the open model, 0 for the closed
+		 *            model
+		 */
+		public Builder withRate(double rate) {
+			this.rate = rate;
+			return this;
+		}
+
+		public Builder withWarmup(long time, TimeUnit unit) {
+			this.warmupNanos = unit.toNanos(time);
+			return this;
+		}
+
+		public Builder withDuration(long time, TimeUnit unit) {
+			this.durationNanos = unit.toNanos(time);
+			return this;
+		}
+
+		public Builder withRadius(double radius) {
+			this.radius = radius;
+			return this;
+		}
+
+		public Builder withMix(Map<Operation, Integer> weights) {
+			this.weights = new EnumMap<>(weights);
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException
+		 *             if the threads, rate or weights are invalid
+		 */
+		public LoadGenerator build() {
+			if (threads < 1) {
+				throw new IllegalArgumentException("Threads must be positive but were " + threads);
+			}
+			if (rate < 0) {
+				throw new IllegalArgumentException("Rate must not be negative but was " + rate);
+			}
+			if (weights.values().stream().anyMatch(weight -> weight < 0)
+					|| weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+				throw new IllegalArgumentException("Weights must not be negative and not all zero: " + weights);
+			}
+			return new LoadGenerator(this);
+		}
+	}
+
+	/**
+	 * Options: {@code --url <base url>}, {@code --threads <n>},
+	 * {@code --rate <requests per second>} (open model, closed if omitted),
+	 * {@code --warmup <seconds>}, {@code --duration <seconds>},
+	 * {@code --radius <km>} and {@code --mix populate=4,radius=4,airports=1,stats=1}.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		Builder builder = new Builder();
+		String url = option(arguments, "--url");
+		if (url != null) {
+			builder.withBaseUrl(url);
+		}
+		String threads = option(arguments, "--threads");
+		if (threads != null) {
+			builder.withThreads(Integer.parseInt(threads));
+		}
+		String rate = option(arguments, "--rate");
+		if (rate != null) {
+			builder.withRate(Double.parseDouble(rate));
+		}
+		String warmup = option(arguments, "--warmup");
+		if (warmup != null) {
+			builder.withWarmup(Long.parseLong(warmup), TimeUnit.SECONDS);
+		}
+		String duration = option(arguments, "--duration");
+		if (duration != null) {
+			builder.withDuration(Long.parseLong(duration), TimeUnit.SECONDS);
+		}
+		String radius = option(arguments, "--radius");
+		if (radius != null) {
+			builder.withRadius(Double.parseDouble(radius));
+		}
+		String mix = option(arguments, "--mix");
+		if (mix != null) {
+			builder.withMix(parseMix(mix));
+		}
+		if (!arguments.isEmpty()) {
+			throw new IllegalArgumentException("Unknown arguments " + arguments);
+		}
+		LoadGenerator generator = builder.build();
+		// keep a pooled connection per thread, must be set before the first connection
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", String.valueOf(generator.threads));
+		}
+		log.info(generator.run().toString());
+	}
+
+	private static String option(List<String> arguments, String name) {
+		int index = arguments.indexOf(name);
+		if (index < 0) {
+			return null;
+		}
+		arguments.remove(index);
+		if (index >= arguments.size()) {
+			throw new IllegalArgumentException("Missing value of " + name);
+		}
+		return arguments.remove(index);
+	}
+}
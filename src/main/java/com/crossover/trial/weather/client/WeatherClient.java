@@ -1,16 +1,28 @@
 package com.crossover.trial.weather.client;
 
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.logging.Logger;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.glassfish.jersey.filter.LoggingFilter;
 
+import com.crossover.trial.weather.io.WeatherRecords;
 import com.crossover.trial.weather.model.DataPoint;
 import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherUpdate;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A reference implementation for the weather client. Consumers of the REST API
@@ -25,6 +37,8 @@ public class WeatherClient {
 
 	private static final String BASE_URI = "http://localhost:8080";
 
+	private static final Gson gson = new Gson();
+
 	private final WebTarget airportsEndpoint;
 
 	public WeatherClient() {
@@ -44,6 +58,59 @@ public class WeatherClient {
 		path.request().put(Entity.entity(dp, "application/json"));
 	}
 
+	/**
+	 * Sends many updates in one request to the batch endpoint. The body is
+	 * written item by item, so the batch is never held as a single string.
+	 *
+	 * @return the response with a result per update
+	 */
+	public Response updateWeather(Collection<WeatherUpdate> updates) {
+		StreamingOutput body = output -> {
+			try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+				writer.beginArray();
+				for (WeatherUpdate update : updates) {
+					gson.toJson(update, WeatherUpdate.class, writer);
+				}
+				writer.endArray();
+			}
+		};
+		return airportsEndpoint.path("/weather").request(MediaType.APPLICATION_JSON)
+				.put(Entity.entity(body, MediaType.APPLICATION_JSON));
+	}
+
+	/**
+	 * Same as {@link #updateWeather(Collection)} with the compact binary
+	 * encoding of {@link WeatherRecords}.
+	 */
+	public Response updateWeatherRecords(Collection<WeatherUpdate> updates) {
+		StreamingOutput body = output -> {
+			ByteBuffer buffer = ByteBuffer.allocate(WeatherRecords.RECORD_BYTES * 256);
+			for (WeatherUpdate update : updates) {
+				if (buffer.remaining() < WeatherRecords.RECORD_BYTES) {
+					output.write(buffer.array(), 0, buffer.position());
+					buffer.clear();
+				}
+				WeatherRecords.write(buffer, update);
+			}
+			output.write(buffer.array(), 0, buffer.position());
+		};
+		return airportsEndpoint.path("/weather").request(MediaType.APPLICATION_JSON)
+				.put(Entity.entity(body, WeatherRecords.MEDIA_TYPE));
+	}
+
+	public void populateBatch() {
+		DataPoint wind = new DataPoint.Builder(DataPointType.WIND).withFirst(0).withLast(10).withSecond(8).withMean(4).withCount(10).build();
+		DataPoint temperature = new DataPoint.Builder(DataPointType.TEMPERATURE).withFirst(10).withLast(20).withSecond(15).withMean(15).withCount(10).build();
+		updateWeather(Arrays.asList(new WeatherUpdate.Builder().withIata("JFK").withDataPoint(wind).build(),
+				new WeatherUpdate.Builder().withIata("JFK").withDataPoint(temperature).build()));
+	}
+
+	public void populateRecords() {
+		DataPoint humidity = new DataPoint.Builder(DataPointType.HUMIDITY).withFirst(40).withLast(60).withSecond(50).withMean(50).withCount(10).build();
+		updateWeatherRecords(Arrays.asList(new WeatherUpdate.Builder().withIata("BOS").withDataPoint(humidity)
+				.withTimestamp(System.currentTimeMillis()).build()));
+	}
+
 	public void queryWeather() {
 		WebTarget path = airportsEndpoint.path("/BOS/weather/0");
 		path.request().get();
@@ -61,6 +128,8 @@ public class WeatherClient {
 		WeatherClient wc = new WeatherClient();
 		wc.pingAirportsEndpoint();
 		wc.populate();
+		wc.populateBatch();
+		wc.populateRecords();
 		wc.queryWeather();
 		wc.queryAirports();
 		wc.querySingleAirport();
@@ -0,0 +1,249 @@
+package com.crossover.trial.weather.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.DST;
+
+/**
+ * Compiled, memory-mapped airport catalog. The file holds one fixed-width
+ * record per airport and a table of the distinct strings (city, country, UTC
+ * offset), so opening it costs a {@code mmap} and records are only decoded
+ * when they are read. Each distinct string is decoded once and shared by all
+ * airports referencing it.
+ *
+ * <pre>
+ * header   magic, version, airport count, string count (4 ints)
+ * records  per airport: IATA (4 bytes), ICAO (4 bytes), latitude, longitude,
+ *          altitude (doubles), city, country, UTC offset (string indexes,
+ *          -1 for none), DST ordinal (1 byte, -1 for none), 3 bytes padding
+ * strings  the offset of every string (ints), then every string as an
+ *          unsigned short length and UTF-8 bytes
+ * </pre>
+ *
+ * Codes are US-ASCII of at most 4 characters, padded with zeros.
+ */
+public final class AirportCatalog {
+
+	private static final Logger log = Logger.getLogger(AirportCatalog.class.getName());
+
+	private static final int MAGIC = 0x57434154;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 16;
+
+	static final int RECORD_BYTES = 48;
+
+	private static final int CODE_BYTES = 4;
+
+	private static final DST[] DSTS = DST.values();
+
+	private final ByteBuffer content;
+
+	private final int size;
+
+	private final int stringOffsets;
+
+	/** decoded strings, filled on first use; races only decode a string twice */
+	private final String[] strings;
+
+	private AirportCatalog(ByteBuffer content) {
+		if (content.getInt(0) != MAGIC || content.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("Not an airport catalog of version " + VERSION);
+		}
+		this.content = content;
+		this.size = content.getInt(8);
+		this.strings = new String[content.getInt(12)];
+		this.stringOffsets = HEADER_BYTES + size * RECORD_BYTES;
+	}
+
+	/**
+	 * Maps the catalog file, nothing is decoded yet.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the file is not a catalog
+	 */
+	public static AirportCatalog open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new AirportCatalog(content);
+		}
+	}
+
+	/** @return the number of airports */
+	public int size() {
+		return size;
+	}
+
+	public String getIataCode(int index) {
+		return code(recordOf(index));
+	}
+
+	/**
+	 * Decodes the airport at the index.
+	 */
+	public Airport getAirport(int index) {
+		int record = recordOf(index);
+		int dst = content.get(record + 44);
+		return new Airport.Builder()
+				.withIataCode(code(record))
+				.withIcaoCode(code(record + CODE_BYTES))
+				.withLatitude(content.getDouble(record + 8))
+				.withLongitude(content.getDouble(record + 16))
+				.withAltitude(content.getDouble(record + 24))
+				.withCity(string(content.getInt(record + 32)))
+				.withCountry(string(content.getInt(record + 36)))
+				.withUtcOffset(string(content.getInt(record + 40)))
+				.withDst(dst < 0 ? null : DSTS[dst])
+				.build();
+	}
+
+	private int recordOf(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Airport " + index + " of " + size);
+		}
+		return HEADER_BYTES + index * RECORD_BYTES;
+	}
+
+	private String code(int offset) {
+		byte[] bytes = new byte[CODE_BYTES];
+		bytes(offset, bytes);
+		int length = 0;
+		while (length < CODE_BYTES && bytes[length] != 0) {
+			length++;
+		}
+		return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+	}
+
+	/** bulk copy, the shared buffer's position is never moved */
+	private void bytes(int offset, byte[] target) {
+		ByteBuffer source = content.duplicate();
+		source.position(offset);
+		source.get(target);
+	}
+
+	private String string(int index) {
+		if (index < 0) {
+			return null;
+		}
+		String string = strings[index];
+		if (string == null) {
+			int offset = content.getInt(stringOffsets + index * Integer.BYTES);
+			int length = content.getShort(offset) & 0xffff;
+			byte[] bytes = new byte[length];
+			bytes(offset + 2, bytes);
+			string = new String(bytes, StandardCharsets.UTF_8);
+			strings[index] = string;
+		}
+		return string;
+	}
+
+	/**
+	 * Compiles the airports into a catalog file.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a code does not fit a record
+	 */
+	public static void write(List<Airport> airports, Path file) throws IOException {
+		Map<String, Integer> stringIndexes = new HashMap<>();
+		List<byte[]> stringBytes = new ArrayList<>();
+		ByteBuffer records = ByteBuffer.allocate(airports.size() * RECORD_BYTES);
+		for (Airport airport : airports) {
+			putCode(records, airport.getIataCode());
+			putCode(records, airport.getIcaoCode());
+			records.putDouble(airport.getLatitude())
+					.putDouble(airport.getLongitude())
+					.putDouble(airport.getAltitude())
+					.putInt(indexOf(airport.getCity(), stringIndexes, stringBytes))
+					.putInt(indexOf(airport.getCountry(), stringIndexes, stringBytes))
+					.putInt(indexOf(airport.getUtcOffset(), stringIndexes, stringBytes))
+					.put((byte) (airport.getDst() == null ? -1 : airport.getDst().ordinal()))
+					.put(new byte[3]);
+		}
+
+		int stringsBytes = 0;
+		for (byte[] bytes : stringBytes) {
+			stringsBytes += 2 + bytes.length;
+		}
+		int stringOffsets = HEADER_BYTES + records.capacity();
+		ByteBuffer catalog = ByteBuffer.allocate(stringOffsets + stringBytes.size() * Integer.BYTES + stringsBytes);
+		catalog.putInt(MAGIC).putInt(VERSION).putInt(airports.size()).putInt(stringBytes.size());
+		catalog.put((ByteBuffer) records.flip());
+		int offset = stringOffsets + stringBytes.size() * Integer.BYTES;
+		for (byte[] bytes : stringBytes) {
+			catalog.putInt(offset);
+			offset += 2 + bytes.length;
+		}
+		for (byte[] bytes : stringBytes) {
+			catalog.putShort((short) bytes.length).put(bytes);
+		}
+		Files.write(file, catalog.array());
+	}
+
+	private static void putCode(ByteBuffer records, String code) {
+		String value = code == null ? "" : code;
+		if (value.length() > CODE_BYTES || !StandardCharsets.US_ASCII.newEncoder().canEncode(value)) {
+			throw new IllegalArgumentException("Code does not fit a catalog record: " + value);
+		}
+		for (int i = 0; i < CODE_BYTES; i++) {
+			records.put(i < value.length() ? (byte) value.charAt(i) : 0);
+		}
+	}
+
+	private static int indexOf(String value, Map<String, Integer> indexes, List<byte[]> strings) {
+		if (value == null) {
+			return -1;
+		}
+		return indexes.computeIfAbsent(value, key -> {
+			byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > 0xffff) {
+				throw new IllegalArgumentException("String is too long for a catalog: " + key);
+			}
+			strings.add(bytes);
+			return strings.size() - 1;
+		});
+	}
+
+	/**
+	 * Converts an airports file in the OpenFlights csv format to a catalog.
+	 * Lines which can not be parsed are skipped.
+	 *
+	 * @param args
+	 *            the csv file and the catalog file
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: AirportCatalog <airports.csv> <airports.bin>");
+			System.exit(1);
+		}
+		List<Airport> airports;
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+			airports = CsvParser.parse(reader, ForkJoinPool.commonPool(), record -> {
+				try {
+					return AirportCsv.read(record);
+				} catch (IllegalArgumentException e) {
+					log.warning("Skipped. This line doesn't follow required format : " + record.getLine());
+					return null;
+				}
+			});
+		}
+		write(airports, Paths.get(args[1]));
+		log.info("Wrote " + airports.size() + " airports to " + args[1]);
+	}
+}
@@ -0,0 +1,76 @@
+package com.crossover.trial.weather.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.DST;
+
+/**
+ * Parser of airport lines in the OpenFlights airports.dat format:
+ * {@code id,"name","city","country","IATA","ICAO",latitude,longitude,altitude,utcOffset,"DST"}.
+ * Fields may be quoted, names containing commas are read correctly. Shared
+ * by the loaders, the catalog converter and the bulk import endpoint.
+ */
+public final class AirportCsv {
+
+	/** media type of a csv request body */
+	public static final String MEDIA_TYPE = "text/csv";
+
+	private static final int COLUMNS = 11;
+
+	private static final DST[] DSTS = DST.values();
+
+	private AirportCsv() {
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the line does not follow the format
+	 */
+	public static Airport parse(String line) {
+		CsvParser record = CsvParser.of(line);
+		try {
+			if (!record.next()) {
+				throw new IllegalArgumentException("Line is empty");
+			}
+		} catch (IOException e) {
+			// cannot happen for an in-memory input
+			throw new UncheckedIOException(e);
+		}
+		return read(record);
+	}
+
+	/**
+	 * Maps the current record of the parser, only the values kept by the
+	 * airport are allocated.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the record does not follow the format
+	 */
+	public static Airport read(CsvParser record) {
+		if (record.getFieldCount() != COLUMNS) {
+			throw new IllegalArgumentException("Expected " + COLUMNS + " columns but got " + record.getFieldCount());
+		}
+		return new Airport.Builder()
+				.withCity(record.getString(2))
+				.withCountry(record.getString(3))
+				.withIataCode(record.getString(4))
+				.withIcaoCode(record.getString(5))
+				.withLatitude(record.getDouble(6))
+				.withLongitude(record.getDouble(7))
+				.withAltitude(record.getDouble(8))
+				.withUtcOffset(record.getString(9))
+				.withDst(dst(record, 10))
+				.build();
+	}
+
+	private static DST dst(CsvParser record, int field) {
+		for (DST dst : DSTS) {
+			if (record.fieldEquals(field, dst.name())) {
+				return dst;
+			}
+		}
+		throw new IllegalArgumentException("Unknown DST: " + record.getString(field));
+	}
+}
@@ -0,0 +1,439 @@
+package com.crossover.trial.weather.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming csv parser which reuses its buffers. Records are separated by LF
+ * or CRLF, fields by commas; a field in double quotes may contain commas,
+ * line breaks and doubled quotes. Blank lines are skipped.
+ *
+ * The parser only records where the fields of the current record are, values
+ * are read on request: numbers directly from the characters, strings are the
+ * only thing allocated. Large inputs can be split at record boundaries and
+ * parsed in parallel with {@link #parse(Reader, ForkJoinPool, RecordMapper)}.
+ */
+public final class CsvParser {
+
+	/** maps the current record, returns null to drop it */
+	@FunctionalInterface
+	public interface RecordMapper<T> {
+		T map(CsvParser record);
+	}
+
+	private static final int DEFAULT_BUFFER_CHARS = 64 * 1024;
+
+	/** inputs are only split into chunks of at least this size */
+	private static final int MIN_CHUNK_CHARS = 64 * 1024;
+
+	/** returned by {@link #scan(int)} if the record continues after the buffer */
+	private static final int INCOMPLETE = -1;
+
+	/** exact powers of ten for the fast path of {@link #getDouble(int)} */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15 };
+
+	/** null for an in-memory input */
+	private final Reader reader;
+
+	private char[] buffer;
+
+	/** end of the valid characters */
+	private int limit;
+
+	/** start of the next record */
+	private int position;
+
+	private boolean eof;
+
+	private int recordStart;
+
+	private int recordEnd;
+
+	/** line number of the next record's first character, counted from 1 */
+	private int line = 1;
+
+	private int recordLine;
+
+	private int fieldCount;
+
+	private int[] fieldStarts = new int[16];
+
+	private int[] fieldEnds = new int[16];
+
+	/** fields containing doubled quotes, which need unescaping */
+	private boolean[] escaped = new boolean[16];
+
+	public CsvParser(Reader reader) {
+		this(reader, DEFAULT_BUFFER_CHARS);
+	}
+
+	CsvParser(Reader reader, int bufferChars) {
+		this.reader = reader;
+		this.buffer = new char[bufferChars];
+	}
+
+	/**
+	 * Parses the characters between from and to, which are not copied.
+	 */
+	public CsvParser(char[] content, int from, int to) {
+		this.reader = null;
+		this.buffer = content;
+		this.position = from;
+		this.limit = to;
+		this.eof = true;
+	}
+
+	public static CsvParser of(String content) {
+		return new CsvParser(content.toCharArray(), 0, content.length());
+	}
+
+	/**
+	 * Advances to the next record.
+	 *
+	 * @return false if there are no more records
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			if (position == limit) {
+				if (eof) {
+					return false;
+				}
+				fill();
+				continue;
+			}
+			int next = scan(position);
+			if (next == INCOMPLETE) {
+				fill();
+				continue;
+			}
+			recordStart = position;
+			recordLine = line;
+			line += lineBreaks(recordStart, next);
+			position = next;
+			if (fieldCount == 1 && fieldStarts[0] == fieldEnds[0] && buffer[recordStart] != '"') {
+				continue;
+			}
+			return true;
+		}
+	}
+
+	/** @return the number of fields of the current record */
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	/** @return the unquoted value of the field */
+	public String getString(int field) {
+		checkField(field);
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+		if (!escaped[field]) {
+			return new String(buffer, start, end - start);
+		}
+		StringBuilder value = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			value.append(buffer[i]);
+			if (buffer[i] == '"') {
+				i++;
+			}
+		}
+		return value.toString();
+	}
+
+	/**
+	 * Reads the field as a decimal number like {@link Double#parseDouble(String)},
+	 * plain decimals of up to 15 digits are parsed without allocating.
+	 *
+	 * @throws NumberFormatException
+	 *             if the field is not a number
+	 */
+	public double getDouble(int field) {
+		checkField(field);
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+		while (start < end && buffer[start] <= ' ') {
+			start++;
+		}
+		while (end > start && buffer[end - 1] <= ' ') {
+			end--;
+		}
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		for (; i < end; i++) {
+			char c = buffer[i];
+			if (c >= '0' && c <= '9') {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (fractionDigits >= 0) {
+					fractionDigits++;
+				}
+			} else if (c == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			} else {
+				return Double.parseDouble(new String(buffer, start, end - start));
+			}
+		}
+		if (digits == 0 || digits >= POWERS_OF_TEN.length) {
+			return Double.parseDouble(new String(buffer, start, end - start));
+		}
+		// both operands are exact, so the quotient is correctly rounded
+		double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+		return negative ? -value : value;
+	}
+
+	/** @return true if the unquoted value of the field equals the value */
+	public boolean fieldEquals(int field, String value) {
+		checkField(field);
+		int start = fieldStarts[field];
+		int length = fieldEnds[field] - start;
+		if (escaped[field]) {
+			return getString(field).equals(value);
+		}
+		if (length != value.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (buffer[start + i] != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the line the current record starts on, counted from 1 across
+	 *         blank lines and line breaks in quoted fields
+	 */
+	public int getLineNumber() {
+		return recordLine;
+	}
+
+	/** @return the raw text of the current record, e.g. for error messages */
+	public String getLine() {
+		return new String(buffer, recordStart, recordEnd - recordStart);
+	}
+
+	/** counts LF, CRLF and a lone CR once each */
+	private int lineBreaks(int from, int to) {
+		int breaks = 0;
+		for (int i = from; i < to; i++) {
+			if (buffer[i] == '\n' || (buffer[i] == '\r' && (i + 1 >= to || buffer[i + 1] != '\n'))) {
+				breaks++;
+			}
+		}
+		return breaks;
+	}
+
+	private void checkField(int field) {
+		if (field < 0 || field >= fieldCount) {
+			throw new IllegalArgumentException("Expected at least " + (field + 1) + " columns but got " + fieldCount);
+		}
+	}
+
+	/**
+	 * Finds the fields of the record starting at the offset.
+	 *
+	 * @return the start of the following record, or {@link #INCOMPLETE}
+	 */
+	private int scan(int offset) {
+		fieldCount = 0;
+		int i = offset;
+		while (true) {
+			int start;
+			int end;
+			boolean escapedQuotes = false;
+			if (i < limit && buffer[i] == '"') {
+				start = ++i;
+				while (true) {
+					if (i >= limit) {
+						if (!eof) {
+							return INCOMPLETE;
+						}
+						// unterminated quote, the field runs to the end
+						end = i;
+						break;
+					}
+					if (buffer[i] == '"') {
+						if (i + 1 >= limit && !eof) {
+							return INCOMPLETE;
+						}
+						if (i + 1 < limit && buffer[i + 1] == '"') {
+							escapedQuotes = true;
+							i += 2;
+							continue;
+						}
+						end = i++;
+						break;
+					}
+					i++;
+				}
+				// anything between the closing quote and the delimiter is ignored
+				while (i < limit && buffer[i] != ',' && buffer[i] != '\n' && buffer[i] != '\r') {
+					i++;
+				}
+			} else {
+				start = i;
+				while (i < limit && buffer[i] != ',' && buffer[i] != '\n' && buffer[i] != '\r') {
+					i++;
+				}
+				end = i;
+			}
+			addField(start, end, escapedQuotes);
+
+			if (i >= limit) {
+				if (!eof) {
+					return INCOMPLETE;
+				}
+				recordEnd = limit;
+				return limit;
+			}
+			char c = buffer[i];
+			if (c == ',') {
+				i++;
+				continue;
+			}
+			recordEnd = i;
+			if (c == '\r') {
+				if (i + 1 >= limit) {
+					if (!eof) {
+						return INCOMPLETE;
+					}
+					return limit;
+				}
+				return buffer[i + 1] == '\n' ? i + 2 : i + 1;
+			}
+			return i + 1;
+		}
+	}
+
+	private void addField(int start, int end, boolean escapedQuotes) {
+		if (fieldCount == fieldStarts.length) {
+			fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+			fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+			escaped = Arrays.copyOf(escaped, fieldCount * 2);
+		}
+		fieldStarts[fieldCount] = start;
+		fieldEnds[fieldCount] = end;
+		escaped[fieldCount] = escapedQuotes;
+		fieldCount++;
+	}
+
+	/** keeps the unfinished record and reads more characters after it */
+	private void fill() throws IOException {
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		if (limit == buffer.length) {
+			// a record longer than the buffer
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		int read = reader.read(buffer, limit, buffer.length - limit);
+		if (read < 0) {
+			eof = true;
+		} else {
+			limit += read;
+		}
+	}
+
+	/**
+	 * Reads the whole input and maps its records on the pool. The input is
+	 * split into chunks at record boundaries, a line break is only a boundary
+	 * outside of quotes. Records are returned in input order. A pool without
+	 * parallelism streams the input through a single parser instead.
+	 *
+	 * @param mapper
+	 *            called concurrently for records of different chunks
+	 */
+	public static <T> List<T> parse(Reader reader, ForkJoinPool pool, RecordMapper<T> mapper) throws IOException {
+		if (pool.getParallelism() == 1) {
+			return map(new CsvParser(reader), mapper);
+		}
+		char[] content = new char[DEFAULT_BUFFER_CHARS];
+		int length = 0;
+		int read;
+		while ((read = reader.read(content, length, content.length - length)) >= 0) {
+			length += read;
+			if (length == content.length) {
+				content = Arrays.copyOf(content, content.length * 2);
+			}
+		}
+		return parse(content, length, pool, mapper);
+	}
+
+	/**
+	 * Same as {@link #parse(Reader, ForkJoinPool, RecordMapper)} for content
+	 * in memory.
+	 */
+	public static <T> List<T> parse(char[] content, int length, ForkJoinPool pool, RecordMapper<T> mapper)
+			throws IOException {
+		int chunks = Math.max(1, Math.min(pool.getParallelism() * 4, length / MIN_CHUNK_CHARS));
+		if (pool.getParallelism() == 1 || chunks == 1) {
+			return map(new CsvParser(content, 0, length), mapper);
+		}
+
+		List<Callable<List<T>>> tasks = new ArrayList<>(chunks);
+		int chunkChars = length / chunks;
+		int from = 0;
+		boolean quoted = false;
+		for (int i = 0; i < length; i++) {
+			char c = content[i];
+			if (c == '"') {
+				// doubled quotes toggle twice
+				quoted = !quoted;
+			} else if (c == '\n' && !quoted && i + 1 - from >= chunkChars) {
+				int start = from;
+				int end = i + 1;
+				tasks.add(() -> map(new CsvParser(content, start, end), mapper));
+				from = end;
+			}
+		}
+		if (from < length) {
+			int start = from;
+			tasks.add(() -> map(new CsvParser(content, start, length), mapper));
+		}
+
+		List<T> result = new ArrayList<>();
+		try {
+			for (Future<List<T>> chunk : pool.invokeAll(tasks)) {
+				result.addAll(chunk.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		return result;
+	}
+
+	private static <T> List<T> map(CsvParser parser, RecordMapper<T> mapper) throws IOException {
+		List<T> result = new ArrayList<>();
+		while (parser.next()) {
+			T value = mapper.map(parser);
+			if (value != null) {
+				result.add(value);
+			}
+		}
+		return result;
+	}
+}
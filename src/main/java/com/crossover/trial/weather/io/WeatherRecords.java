@@ -0,0 +1,122 @@
+package com.crossover.trial.weather.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherUpdate;
+
+/**
+ * Codec of weather updates as fixed size binary records, a compact
+ * alternative to json for collectors. A record is {@value #RECORD_BYTES}
+ * bytes in network byte order:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     3  IATA code, US-ASCII
+ *      3     1  DataPointType ordinal
+ *      4     8  mean, IEEE 754 double
+ *     12     4  first quartile
+ *     16     4  second quartile
+ *     20     4  third quartile
+ *     24     4  count
+ *     28     8  timestamp in millis since the epoch, 0 for the time of receipt
+ * </pre>
+ *
+ * A body is a plain sequence of records.
+ */
+public final class WeatherRecords {
+
+	/** media type of a request body of records */
+	public static final String MEDIA_TYPE = "application/x-weather-record";
+
+	public static final int RECORD_BYTES = 36;
+
+	private static final int IATA_BYTES = 3;
+
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	private WeatherRecords() {
+	}
+
+	/**
+	 * Writes the update at the position of the buffer and advances it.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the airport code is not 3 ASCII characters or the data
+	 *             point has no type
+	 */
+	public static void write(ByteBuffer buffer, WeatherUpdate update) {
+		String iata = update.getIata();
+		if (!isEncodable(iata)) {
+			throw new IllegalArgumentException("Airport code must have " + IATA_BYTES + " ASCII characters: " + iata);
+		}
+		DataPoint dataPoint = update.getDataPoint();
+		if (dataPoint.getType() == null) {
+			throw new IllegalArgumentException("Data point type is missing");
+		}
+		for (int i = 0; i < IATA_BYTES; i++) {
+			buffer.put((byte) iata.charAt(i));
+		}
+		buffer.put((byte) dataPoint.getType().ordinal())
+				.putDouble(dataPoint.getMean())
+				.putInt(dataPoint.getFirst())
+				.putInt(dataPoint.getSecond())
+				.putInt(dataPoint.getThird())
+				.putInt(dataPoint.getCount())
+				.putLong(update.getTimestamp());
+	}
+
+	/**
+	 * @return true if the airport code fits a record
+	 */
+	public static boolean isEncodable(String iata) {
+		if (iata == null || iata.length() != IATA_BYTES) {
+			return false;
+		}
+		for (int i = 0; i < IATA_BYTES; i++) {
+			if (iata.charAt(i) > 0x7f) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the record at the position of the buffer and advances it past the
+	 * record, also if the record is not valid. The data point is validated with
+	 * the rules of its {@link DataPointType}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the record is not valid
+	 */
+	public static WeatherUpdate read(ByteBuffer buffer) {
+		int start = buffer.position();
+		buffer.position(start + RECORD_BYTES);
+
+		int ordinal = buffer.get(start + 3) & 0xff;
+		if (ordinal >= TYPES.length) {
+			throw new IllegalArgumentException("Unknown data point type " + ordinal);
+		}
+		DataPointType type = TYPES[ordinal];
+		double mean = buffer.getDouble(start + 4);
+		type.validate(mean);
+
+		byte[] iata = new byte[IATA_BYTES];
+		for (int i = 0; i < IATA_BYTES; i++) {
+			iata[i] = buffer.get(start + i);
+		}
+		return new WeatherUpdate.Builder()
+				.withIata(new String(iata, StandardCharsets.US_ASCII))
+				.withDataPoint(new DataPoint.Builder(type)
+						.withMean(mean)
+						.withFirst(buffer.getInt(start + 12))
+						.withSecond(buffer.getInt(start + 16))
+						.withLast(buffer.getInt(start + 20))
+						.withCount(buffer.getInt(start + 24))
+						.build())
+				.withTimestamp(buffer.getLong(start + 28))
+				.build();
+	}
+}
@@ -0,0 +1,99 @@
+package com.crossover.trial.weather.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of {@link RouteMetrics} by route, exported in the Prometheus text
+ * exposition format.
+ */
+public class EndpointMetrics {
+
+	/** route of responses to requests which did not match any resource */
+	public static final String UNMATCHED_ROUTE = "unmatched";
+
+	/** content type of {@link #writePrometheus(Writer)} */
+	public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4";
+
+	/** latency buckets are exported up to 2^MAX_EXPORTED_EXPONENT ns, about 34 seconds */
+	private static final int MIN_EXPORTED_EXPONENT = 10;
+
+	private static final int MAX_EXPORTED_EXPONENT = 35;
+
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	private final String prefix;
+
+	private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+	/**
+	 * @param prefix
+	 *            prefix of the exported metric names, e.g. "weather_http"
+	 */
+	public EndpointMetrics(String prefix) {
+		this.prefix = prefix;
+	}
+
+	/**
+	 * @return the metrics of the route, registered on first use
+	 */
+	public RouteMetrics route(String route) {
+		RouteMetrics metrics = routes.get(route);
+		if (metrics == null) {
+			metrics = routes.computeIfAbsent(route, RouteMetrics::new);
+		}
+		return metrics;
+	}
+
+	public void writePrometheus(Writer out) throws IOException {
+		List<RouteMetrics> sorted = new ArrayList<>(routes.values());
+		sorted.sort(Comparator.comparing(RouteMetrics::getRoute));
+
+		String inFlight = prefix + "_requests_in_flight";
+		header(out, inFlight, "gauge", "Requests currently being processed.");
+		for (RouteMetrics route : sorted) {
+			out.write(inFlight + "{route=\"" + escape(route.getRoute()) + "\"} " + route.getInFlight() + "\n");
+		}
+
+		String responses = prefix + "_responses_total";
+		header(out, responses, "counter", "Responses by route and status code.");
+		for (RouteMetrics route : sorted) {
+			for (int status = 0; status < route.statusSlots(); status++) {
+				long count = route.getStatusCount(status);
+				if (count != 0) {
+					out.write(responses + "{route=\"" + escape(route.getRoute()) + "\",code=\""
+							+ (status == 0 ? "invalid" : String.valueOf(status)) + "\"} " + count + "\n");
+				}
+			}
+		}
+
+		String duration = prefix + "_request_duration_seconds";
+		header(out, duration, "histogram", "Request latency from resource matching to the response.");
+		for (RouteMetrics route : sorted) {
+			LatencyHistogram.Snapshot latency = route.getLatency();
+			String label = "route=\"" + escape(route.getRoute()) + "\"";
+			for (int exponent = MIN_EXPORTED_EXPONENT; exponent <= MAX_EXPORTED_EXPONENT; exponent++) {
+				long bound = 1L << exponent;
+				out.write(duration + "_bucket{" + label + ",le=\"" + bound / NANOS_PER_SECOND + "\"} "
+						+ latency.getCountBelow(bound) + "\n");
+			}
+			out.write(duration + "_bucket{" + label + ",le=\"+Inf\"} " + latency.getCount() + "\n");
+			out.write(duration + "_sum{" + label + "} " + latency.getTotalNanos() / NANOS_PER_SECOND + "\n");
+			out.write(duration + "_count{" + label + "} " + latency.getCount() + "\n");
+		}
+	}
+
+	private static void header(Writer out, String name, String type, String help) throws IOException {
+		out.write("# HELP " + name + " " + help + "\n");
+		out.write("# TYPE " + name + " " + type + "\n");
+	}
+
+	private static String escape(String label) {
+		return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,152 @@
+package com.crossover.trial.weather.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent log-linear latency histogram in the spirit of HdrHistogram.
+ * Values are nanoseconds; every power of two range is split into
+ * {@link #SUB_BUCKETS} linear buckets, so a recorded value is known within
+ * 1 / {@link #SUB_BUCKETS} of its magnitude. Bucket boundaries fall on powers of
+ * two, so counts at those boundaries are exact.
+ *
+ * Recording is a couple of bit operations and two atomic additions on
+ * preallocated counters, it never allocates.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/** linear buckets per power of two */
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** values from 2^MAX_EXPONENT ns (about 4.9 hours) on are counted in the last bucket */
+	private static final int MAX_EXPONENT = 44;
+
+	static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	/**
+	 * @param nanos
+	 *            the latency in nanoseconds, negative values are counted as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucketOf(value));
+		totalNanos.add(value);
+	}
+
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			copy[i] = counts.get(i);
+		}
+		return new Snapshot(copy, totalNanos.sum());
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent >= MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int shift = exponent - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/** inclusive lower bound of the bucket */
+	static long lowerBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+	}
+
+	/** exclusive upper bound of the bucket */
+	static long upperBoundOf(int bucket) {
+		return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : lowerBoundOf(bucket + 1);
+	}
+
+	/**
+	 * Point in time copy of a histogram. Counts of different buckets are read
+	 * one by one while recording goes on, so a snapshot may be off by the
+	 * values recorded during the copy.
+	 */
+	public static final class Snapshot {
+
+		private final long[] counts;
+
+		private final long count;
+
+		private final long totalNanos;
+
+		private Snapshot(long[] counts, long totalNanos) {
+			this.counts = counts;
+			long sum = 0;
+			for (long c : counts) {
+				sum += c;
+			}
+			this.count = sum;
+			this.totalNanos = totalNanos;
+		}
+
+		/** number of recorded values */
+		public long getCount() {
+			return count;
+		}
+
+		/** sum of the recorded values in nanoseconds */
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		/**
+		 * @return the number of values lower than the given value, exact if the
+		 *         value is a power of two
+		 */
+		public long getCountBelow(long nanos) {
+			long result = 0;
+			for (int i = 0; i < counts.length && upperBoundOf(i) <= nanos; i++) {
+				result += counts[i];
+			}
+			return result;
+		}
+
+		/**
+		 * @param percentile
+		 *            in (0, 100]
+		 * @return the upper bound of the bucket containing the percentile in
+		 *         nanoseconds, 0 if nothing was recorded
+		 */
+		public long getValueAtPercentile(double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return upperBoundOf(i) - 1;
+				}
+			}
+			return upperBoundOf(counts.length - 1) - 1;
+		}
+
+		/** largest recorded value, within the bucket precision */
+		public long getMaxValue() {
+			for (int i = counts.length - 1; i >= 0; i--) {
+				if (counts[i] != 0) {
+					return upperBoundOf(i) - 1;
+				}
+			}
+			return 0;
+		}
+	}
+}
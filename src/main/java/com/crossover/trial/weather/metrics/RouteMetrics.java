@@ -0,0 +1,71 @@
+package com.crossover.trial.weather.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency, response status counts and requests in flight of a single route.
+ * All recording methods are allocation free.
+ */
+public final class RouteMetrics {
+
+	/** status codes outside of [100, 600) are counted in slot 0 */
+	private static final int STATUS_SLOTS = 600;
+
+	private final String route;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private final AtomicLongArray statusCounts = new AtomicLongArray(STATUS_SLOTS);
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	RouteMetrics(String route) {
+		this.route = route;
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	public void started() {
+		inFlight.incrementAndGet();
+	}
+
+	/**
+	 * Records a request which was counted by {@link #started()} before.
+	 */
+	public void completed(int status, long nanos) {
+		inFlight.decrementAndGet();
+		latency.record(nanos);
+		recordStatus(status);
+	}
+
+	/**
+	 * Records only the status of a response, e.g. of a request which never
+	 * reached a resource.
+	 */
+	public void recordStatus(int status) {
+		statusCounts.incrementAndGet(status >= 100 && status < STATUS_SLOTS ? status : 0);
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return the number of responses with the status, 0 for the count of
+	 *         invalid status codes
+	 */
+	public long getStatusCount(int status) {
+		return status >= 0 && status < STATUS_SLOTS ? statusCounts.get(status) : 0;
+	}
+
+	public LatencyHistogram.Snapshot getLatency() {
+		return latency.snapshot();
+	}
+
+	int statusSlots() {
+		return STATUS_SLOTS;
+	}
+}
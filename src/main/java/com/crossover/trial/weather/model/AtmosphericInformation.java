@@ -9,111 +9,122 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 
 /**
  * encapsulates sensor information for a particular location
+ *
+ * Instances are immutable snapshots: an update produces a new instance with a
+ * higher {@link #getVersion() version}, so they can be shared with readers
+ * (e.g. serialized) while other threads apply new data points.
  */
-public class AtmosphericInformation {
+public final class AtmosphericInformation {
 
 	/** temperature in degrees celsius */
-	private DataPoint temperature;
+	private final DataPoint temperature;
 
 	/** wind speed in km/h */
-	private DataPoint wind;
+	private final DataPoint wind;
 
 	/** humidity in percent */
-	private DataPoint humidity;
+	private final DataPoint humidity;
 
 	/** precipitation in cm */
-	private DataPoint precipitation;
+	private final DataPoint precipitation;
 
 	/** pressure in mmHg */
-	private DataPoint pressure;
+	private final DataPoint pressure;
 
 	/** cloud cover percent from 0 - 100 (integer) */
-	private DataPoint cloudCover;
+	private final DataPoint cloudCover;
 
 	/** the last time this data was updated, in milliseconds since UTC epoch */
-	private long lastUpdateTime;
+	private final long lastUpdateTime;
+
+	/** version of this snapshot, not part of the JSON representation */
+	private final transient long version;
+
+	/**
+	 * update time of each data point by type ordinal, not part of the JSON
+	 * representation, null if deserialized
+	 */
+	private final transient long[] dataPointTimes;
 
 	private AtmosphericInformation(Builder builder) {
-		builder.temperature.ifPresent(value -> setTemperature(value));
-		builder.wind.ifPresent(value -> setWind(value));
-		builder.humidity.ifPresent(value -> setHumidity(value));
-		builder.precipitation.ifPresent(value -> setPrecipitation(value));
-		builder.pressure.ifPresent(value -> setPressure(value));
-		builder.cloudCover.ifPresent(value -> setCloudCover(value));
+		this.temperature = validated(DataPointType.TEMPERATURE, builder.temperature);
+		this.wind = validated(DataPointType.WIND, builder.wind);
+		this.humidity = validated(DataPointType.HUMIDITY, builder.humidity);
+		this.precipitation = validated(DataPointType.PRECIPITATION, builder.precipitation);
+		this.pressure = validated(DataPointType.PRESSURE, builder.pressure);
+		this.cloudCover = validated(DataPointType.CLOUDCOVER, builder.cloudCover);
+		this.lastUpdateTime = builder.lastUpdateTime;
+		this.version = builder.version;
+		this.dataPointTimes = builder.dataPointTimes.clone();
 	}
 
-	public DataPoint getTemperature() {
-		return temperature;
+	private static DataPoint validated(DataPointType type, Optional<DataPoint> dataPoint) {
+		dataPoint.ifPresent(type::validate);
+		return dataPoint.orElse(null);
 	}
 
-	public void setTemperature(DataPoint temperature) {
-		if (temperature.getMean() < DataPointType.TEMPERATURE.getMin() || temperature.getMean() > DataPointType.TEMPERATURE.getMax()) {
-			throw new IllegalArgumentException("Temperature is out of allowed range");
-		}
-		this.temperature = temperature;
+	public DataPoint getTemperature() {
+		return temperature;
 	}
 
 	public DataPoint getWind() {
 		return wind;
 	}
 
-	public void setWind(DataPoint wind) {
-		if (wind.getMean() < DataPointType.WIND.getMin() || wind.getMean() > DataPointType.WIND.getMax()) {
-			throw new IllegalArgumentException("Wind is out of allowed range");
-		}
-		this.wind = wind;
-	}
-
 	public DataPoint getHumidity() {
 		return humidity;
 	}
 
-	public void setHumidity(DataPoint humidity) {
-		if (humidity.getMean() < DataPointType.HUMIDITY.getMin() || humidity.getMean() > DataPointType.HUMIDITY.getMax()) {
-			throw new IllegalArgumentException("Humidity is out of allowed range");
-		}
-		this.humidity = humidity;
-	}
-
 	public DataPoint getPrecipitation() {
 		return precipitation;
 	}
 
-	public void setPrecipitation(DataPoint precipitation) {
-		if (precipitation.getMean() < DataPointType.PRECIPITATION.getMin() || precipitation.getMean() > DataPointType.PRECIPITATION.getMax()) {
-			throw new IllegalArgumentException("Precipitation is out of allowed range");
-		}
-		this.precipitation = precipitation;
-	}
-
 	public DataPoint getPressure() {
 		return pressure;
 	}
 
-	public void setPressure(DataPoint pressure) {
-		if (pressure.getMean() < DataPointType.PRESSURE.getMin() || pressure.getMean() > DataPointType.PRESSURE.getMax()) {
-			throw new IllegalArgumentException("Pressure is out of allowed range");
-		}
-		this.pressure = pressure;
-	}
-
 	public DataPoint getCloudCover() {
 		return cloudCover;
 	}
 
-	public void setCloudCover(DataPoint cloudCover) {
-		if (cloudCover.getMean() < DataPointType.CLOUDCOVER.getMin() || cloudCover.getMean() > DataPointType.CLOUDCOVER.getMax()) {
-			throw new IllegalArgumentException("Cloudcover is out of allowed range");
-		}
-		this.cloudCover = cloudCover;
-	}
-
 	public long getLastUpdateTime() {
 		return this.lastUpdateTime;
 	}
 
-	public void setLastUpdateTime(long lastUpdateTime) {
-		this.lastUpdateTime = lastUpdateTime;
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the update time of the data point of the type, 0 if there is
+	 *         none, the last update time if this snapshot was deserialized
+	 */
+	public long getDataPointTime(DataPointType type) {
+		return dataPointTimes == null ? lastUpdateTime : dataPointTimes[type.ordinal()];
+	}
+
+	/**
+	 * Creates a new snapshot with the data point applied for its type. The
+	 * last update time never goes backwards.
+	 *
+	 * @param dataPoint
+	 *            the actual data point
+	 * @param updateTime
+	 *            the update time in milliseconds since UTC epoch
+	 * @param version
+	 *            the version of the new snapshot
+	 * @return the updated copy, or this instance if the stored data point of
+	 *         the type is newer than the update time
+	 * @throws IllegalArgumentException
+	 *             if the data point has no type or is out of allowed range
+	 */
+	public AtmosphericInformation withDataPoint(DataPoint dataPoint, long updateTime, long version) {
+		Builder builder = new Builder(this).withDataPoint(dataPoint);
+		dataPoint.getType().validate(dataPoint);
+		if (updateTime < getDataPointTime(dataPoint.getType())) {
+			return this;
+		}
+		return builder.withDataPointTime(dataPoint.getType(), updateTime).withLastUpdateTime(Math.max(lastUpdateTime, updateTime)).withVersion(version).build();
 	}
 
 	@Override
@@ -139,6 +150,26 @@ public class AtmosphericInformation {
 		private Optional<DataPoint> precipitation = Optional.empty();
 		private Optional<DataPoint> pressure = Optional.empty();
 		private Optional<DataPoint> cloudCover = Optional.empty();
+		private long lastUpdateTime;
+		private long version;
+		private long[] dataPointTimes = new long[DataPointType.values().length];
+
+		public Builder() {
+		}
+
+		public Builder(AtmosphericInformation from) {
+			this.temperature = Optional.ofNullable(from.temperature);
+			this.wind = Optional.ofNullable(from.wind);
+			this.humidity = Optional.ofNullable(from.humidity);
+			this.precipitation = Optional.ofNullable(from.precipitation);
+			this.pressure = Optional.ofNullable(from.pressure);
+			this.cloudCover = Optional.ofNullable(from.cloudCover);
+			this.lastUpdateTime = from.lastUpdateTime;
+			this.version = from.version;
+			for (DataPointType type : DataPointType.values()) {
+				this.dataPointTimes[type.ordinal()] = from.getDataPointTime(type);
+			}
+		}
 
 		public Builder withTemperature(DataPoint temperature) {
 			this.temperature = Optional.of(temperature);
@@ -170,6 +201,49 @@ public class AtmosphericInformation {
 			return this;
 		}
 
+		/**
+		 * Sets the data point for its type.
+		 *
+		 * @throws IllegalArgumentException
+		 *             if the data point has no type
+		 */
+		public Builder withDataPoint(DataPoint dataPoint) {
+			if (dataPoint.getType() == null) {
+				throw new IllegalArgumentException("Data point type is missing");
+			}
+			switch (dataPoint.getType()) {
+			case WIND:
+				return withWind(dataPoint);
+			case TEMPERATURE:
+				return withTemperature(dataPoint);
+			case HUMIDITY:
+				return withHumidity(dataPoint);
+			case PRESSURE:
+				return withPressure(dataPoint);
+			case CLOUDCOVER:
+				return withCloudCover(dataPoint);
+			case PRECIPITATION:
+				return withPrecipitation(dataPoint);
+			default:
+				throw new IllegalArgumentException("Unknown data point type " + dataPoint.getType());
+			}
+		}
+
+		public Builder withDataPointTime(DataPointType type, long updateTime) {
+			this.dataPointTimes[type.ordinal()] = updateTime;
+			return this;
+		}
+
+		public Builder withLastUpdateTime(long lastUpdateTime) {
+			this.lastUpdateTime = lastUpdateTime;
+			return this;
+		}
+
+		public Builder withVersion(long version) {
+			this.version = version;
+			return this;
+		}
+
 		public AtmosphericInformation build() {
 			return new AtmosphericInformation(this);
 		}
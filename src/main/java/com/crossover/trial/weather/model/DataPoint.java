@@ -80,7 +80,7 @@ public class DataPoint {
 	public static class Builder {
 		private int first;
 		private int second;
-		private int mean;
+		private double mean;
 		private int last;
 		private int count;
 		private DataPointType type;
@@ -109,6 +109,11 @@ public class DataPoint {
 			return this;
 		}
 
+		public Builder withMean(double mean) {
+			this.mean = mean;
+			return this;
+		}
+
 		public Builder withCount(int count) {
 			this.count = count;
 			return this;
@@ -4,16 +4,42 @@ package com.crossover.trial.weather.model;
  * The various types of data points we can collect.
  */
 public enum DataPointType {
-	WIND(0, 1000), TEMPERATURE(-50, 100), HUMIDITY(0, 100), PRESSURE(650, 800), CLOUDCOVER(0, 100), PRECIPITATION(0, 100);
+	WIND("Wind", 0, 1000), TEMPERATURE("Temperature", -50, 100), HUMIDITY("Humidity", 0, 100), 
+	PRESSURE("Pressure", 650, 800), CLOUDCOVER("Cloudcover", 0, 100), PRECIPITATION("Precipitation", 0, 100);
 
+	private String label;
 	private double min;
 	private double max;
 
-	private DataPointType(double min, double max) {
+	private DataPointType(String label, double min, double max) {
+		this.label = label;
 		this.min = min;
 		this.max = max;
 	}
 
+	/**
+	 * Checks that the data point's mean is in the allowed range of this type.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the mean is out of range
+	 */
+	public void validate(DataPoint dataPoint) {
+		validate(dataPoint.getMean());
+	}
+
+	/**
+	 * Checks that the mean is in the allowed range of this type.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the mean is out of range
+	 */
+	public void validate(double mean) {
+		// also rejects NaN
+		if (!(mean >= min && mean <= max)) {
+			throw new IllegalArgumentException(label + " is out of allowed range");
+		}
+	}
+
 	public double getMax() {
 		return max;
 	}
@@ -0,0 +1,82 @@
+package com.crossover.trial.weather.model;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * A single item of a batch weather update: a data point for an airport.
+ */
+public class WeatherUpdate {
+
+	private String iata;
+
+	private DataPoint dataPoint;
+
+	private long timestamp;
+
+	private WeatherUpdate(Builder builder) {
+		this.iata = builder.iata;
+		this.dataPoint = builder.dataPoint;
+		this.timestamp = builder.timestamp;
+	}
+
+	/** the 3 letter airport code */
+	public String getIata() {
+		return iata;
+	}
+
+	public DataPoint getDataPoint() {
+		return dataPoint;
+	}
+
+	/** the time in millis the data point was collected, 0 for the time it is received */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public static class Builder {
+
+		private String iata;
+		private DataPoint dataPoint;
+		private long timestamp;
+
+		public Builder() {
+		}
+
+		public Builder withIata(String iata) {
+			this.iata = iata;
+			return this;
+		}
+
+		public Builder withDataPoint(DataPoint dataPoint) {
+			this.dataPoint = dataPoint;
+			return this;
+		}
+
+		public Builder withTimestamp(long timestamp) {
+			this.timestamp = timestamp;
+			return this;
+		}
+
+		public WeatherUpdate build() {
+			return new WeatherUpdate(this);
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return EqualsBuilder.reflectionEquals(this, obj);
+	}
+
+	@Override
+	public int hashCode() {
+		return HashCodeBuilder.reflectionHashCode(this, false);
+	}
+
+	@Override
+	public String toString() {
+		return ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE);
+	}
+}
@@ -0,0 +1,195 @@
+package com.crossover.trial.weather.server;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+
+/**
+ * Selector threads and worker pool of the Grizzly transport. Requests are
+ * read by the selector threads and handed to the workers, which run the
+ * resource methods.
+ *
+ * In the {@link ExecutionMode#VIRTUAL} mode every request runs on a new
+ * virtual thread, so a blocked resource method only blocks a virtual thread.
+ * Virtual threads are looked up at runtime, on a JDK without them the bounded
+ * pool of the {@link ExecutionMode#POOL} mode is used instead.
+ */
+public final class TransportConfig {
+
+	private static final Logger log = Logger.getLogger(TransportConfig.class.getName());
+
+	/** selector threads, the Grizzly default if not set */
+	public static final String SELECTOR_THREADS_PROPERTY = "weather.selector.threads";
+
+	/** "pool" (default) or "virtual", see {@link ExecutionMode} */
+	public static final String WORKER_MODE_PROPERTY = "weather.worker.mode";
+
+	/** threads of the worker pool, the Grizzly default if not set */
+	public static final String WORKER_THREADS_PROPERTY = "weather.worker.threads";
+
+	/** requests waiting for a pool thread, unbounded if not set */
+	public static final String WORKER_QUEUE_PROPERTY = "weather.worker.queue";
+
+	/** how resource methods are executed */
+	public enum ExecutionMode {
+		/** on a fixed pool of platform threads */
+		POOL,
+		/** on a virtual thread per request if the JDK has them, else like {@link #POOL} */
+		VIRTUAL
+	}
+
+	private final int selectorThreads;
+
+	private final ExecutionMode mode;
+
+	private final int workerThreads;
+
+	private final int queueLimit;
+
+	private TransportConfig(Builder builder) {
+		this.selectorThreads = builder.selectorThreads;
+		this.mode = builder.mode;
+		this.workerThreads = builder.workerThreads;
+		this.queueLimit = builder.queueLimit;
+	}
+
+	/**
+	 * @return the configuration given by the system properties
+	 */
+	public static TransportConfig fromSystemProperties() {
+		return new Builder()
+				.withSelectorThreads(Integer.getInteger(SELECTOR_THREADS_PROPERTY, 0))
+				.withMode(ExecutionMode.valueOf(System.getProperty(WORKER_MODE_PROPERTY, "pool").toUpperCase(Locale.ROOT)))
+				.withWorkerThreads(Integer.getInteger(WORKER_THREADS_PROPERTY, 0))
+				.withQueueLimit(Integer.getInteger(WORKER_QUEUE_PROPERTY, -1))
+				.build();
+	}
+
+	/**
+	 * Creates a server for the resources, configured but not started.
+	 */
+	public HttpServer createHttpServer(URI uri, ResourceConfig resourceConfig) {
+		HttpServer server = GrizzlyHttpServerFactory.createHttpServer(uri, resourceConfig, false);
+		for (NetworkListener listener : server.getListeners()) {
+			apply(listener.getTransport());
+		}
+		return server;
+	}
+
+	private void apply(TCPNIOTransport transport) {
+		if (selectorThreads > 0) {
+			transport.setSelectorRunnersCount(selectorThreads);
+		}
+		if (mode == ExecutionMode.VIRTUAL) {
+			ExecutorService executor = newVirtualThreadPerTaskExecutor();
+			if (executor != null) {
+				// virtual threads do not keep the JVM alive, so the executor needs no shutdown
+				transport.setWorkerThreadPool(executor);
+				log.info("Running requests on virtual threads");
+				return;
+			}
+			log.info("Virtual threads are not supported by this JDK, running requests on a pool");
+		}
+		ThreadPoolConfig pool = transport.getWorkerThreadPoolConfig().copy().setPoolName("weather-worker");
+		if (workerThreads > 0) {
+			pool.setCorePoolSize(workerThreads).setMaxPoolSize(workerThreads);
+		}
+		pool.setQueueLimit(queueLimit);
+		transport.setWorkerThreadPoolConfig(pool);
+		log.info("Running requests on a pool of " + pool.getMaxPoolSize() + " threads with "
+				+ (queueLimit < 0 ? "an unbounded queue" : "a queue of " + queueLimit));
+	}
+
+	/**
+	 * @return an executor starting a virtual thread per task, null if the JDK
+	 *         does not support them
+	 */
+	static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// not there before Java 21, or a disabled preview feature
+			return null;
+		}
+	}
+
+	public int getSelectorThreads() {
+		return selectorThreads;
+	}
+
+	public ExecutionMode getMode() {
+		return mode;
+	}
+
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	public int getQueueLimit() {
+		return queueLimit;
+	}
+
+	public static class Builder {
+
+		private int selectorThreads;
+
+		private ExecutionMode mode = ExecutionMode.POOL;
+
+		private int workerThreads;
+
+		private int queueLimit = -1;
+
+		/**
+		 * @param selectorThreads
+		 *            0 for the Grizzly default
+		 */
+		public Builder withSelectorThreads(int selectorThreads) {
+			this.selectorThreads = selectorThreads;
+			return this;
+		}
+
+		public Builder withMode(ExecutionMode mode) {
+			this.mode = mode;
+			return this;
+		}
+
+		/**
+		 * @param workerThreads
+		 *            threads of the pool, 0 for the Grizzly default
+		 */
+		public Builder withWorkerThreads(int workerThreads) {
+			this.workerThreads = workerThreads;
+			return this;
+		}
+
+		/**
+		 * @param queueLimit
+		 *            requests waiting for a pool thread, -1 for no limit
+		 */
+		public Builder withQueueLimit(int queueLimit) {
+			this.queueLimit = queueLimit;
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException
+		 *             if a thread count is negative
+		 */
+		public TransportConfig build() {
+			if (selectorThreads < 0 || workerThreads < 0) {
+				throw new IllegalArgumentException("Thread counts must not be negative but were " + selectorThreads
+						+ " selector and " + workerThreads + " worker threads");
+			}
+			return new TransportConfig(this);
+		}
+	}
+}
@@ -1,23 +1,45 @@
 package com.crossover.trial.weather.server;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.glassfish.grizzly.http.server.HttpServer;
-import org.glassfish.jersey.filter.LoggingFilter;
-import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 
 import com.crossover.trial.weather.client.WeatherClient;
+import com.crossover.trial.weather.io.AirportCatalog;
+import com.crossover.trial.weather.io.CsvParser;
+import com.crossover.trial.weather.metrics.EndpointMetrics;
 import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.server.data.ColumnarRepository;
 import com.crossover.trial.weather.server.data.DummyRepository;
+import com.crossover.trial.weather.server.data.DurableRepository;
+import com.crossover.trial.weather.server.data.HashRing;
 import com.crossover.trial.weather.server.data.Repository;
+import com.crossover.trial.weather.ws.AccessLog;
+import com.crossover.trial.weather.ws.AccessLogFilter;
+import com.crossover.trial.weather.ws.MetricsEndpoint;
+import com.crossover.trial.weather.ws.MetricsFilter;
+import com.crossover.trial.weather.ws.RequestExecutor;
 import com.crossover.trial.weather.ws.RestAirportsEndpoint;
+import com.crossover.trial.weather.ws.ShardRouter;
 
 /**
  * A main method used to test the Weather Application locally -- live deployment
@@ -29,25 +51,112 @@ public class WeatherServer {
 	// TODO : configure logger formatting
 	public static final Logger log = Logger.getLogger(WeatherClient.class.getName());
 
-	private static final String BASE_URL = "http://localhost:8080/";
+	/** port the server listens on, 8080 if not set */
+	public static final String PORT_PROPERTY = "weather.port";
 
-	private static final Repository repository = DummyRepository.getInstance();
+	private static final String BASE_URL = "http://localhost:" + Integer.getInteger(PORT_PROPERTY, 8080) + "/";
+
+	/** selects the repository implementation, "dummy" (default) or "columnar" */
+	public static final String REPOSITORY_PROPERTY = "weather.repository";
+
+	/** if set, the repository is persisted to this directory, see {@link DurableRepository} */
+	public static final String DATA_DIRECTORY_PROPERTY = "weather.data.dir";
+
+	/** if set, airports are loaded from this compiled {@link AirportCatalog} instead of airports.dat */
+	public static final String CATALOG_PROPERTY = "weather.catalog";
+
+	/** seconds between snapshots of a persisted repository */
+	public static final String SNAPSHOT_INTERVAL_PROPERTY = "weather.snapshot.interval";
+
+	/** file the access log is appended to, standard output if not set */
+	public static final String ACCESS_LOG_PROPERTY = "weather.access.log";
+
+	/** fraction of the successful requests which are logged, errors and slow requests always are */
+	public static final String ACCESS_LOG_SAMPLE_PROPERTY = "weather.access.log.sample";
+
+	/** milliseconds from which a request is logged as slow */
+	public static final String ACCESS_LOG_SLOW_PROPERTY = "weather.access.log.slow";
+
+	/** threads running weather queries, and likewise "weather.write.threads" for weather updates */
+	public static final String READ_THREADS_PROPERTY = "weather.read.threads";
+
+	public static final String WRITE_THREADS_PROPERTY = "weather.write.threads";
+
+	/** waiting weather queries from which further ones are rejected, likewise "weather.write.queue" */
+	public static final String READ_QUEUE_PROPERTY = "weather.read.queue";
+
+	public static final String WRITE_QUEUE_PROPERTY = "weather.write.queue";
+
+	/** milliseconds after which a waiting request is rejected instead of run */
+	public static final String QUEUE_TIMEOUT_PROPERTY = "weather.queue.timeout";
+
+	/** seconds a rejected client is asked to wait */
+	public static final String RETRY_AFTER_PROPERTY = "weather.retry.after";
+
+	/**
+	 * comma separated base URLs of all shards, like
+	 * "http://localhost:8081/,http://localhost:8082/"; if set, the server is
+	 * the router in front of them unless "weather.shard" is set, see
+	 * {@link ShardRouter}
+	 */
+	public static final String SHARDS_PROPERTY = "weather.shards";
+
+	/** the base URL of this server among "weather.shards", if it is a shard */
+	public static final String SHARD_PROPERTY = "weather.shard";
+
+	private static final HashRing<String> shards = createShardRing();
+
+	private static final Repository repository = createRepository();
 
 	public static void main(String[] args) throws Exception {
 		log.info("Starting Weather App local testing server: " + BASE_URL);
 		log.info("Not for production use");
 
-		init();
+		final boolean router = shards != null && System.getProperty(SHARD_PROPERTY) == null;
+		if (!router && repository.getAirports().isEmpty()) {
+			String catalog = System.getProperty(CATALOG_PROPERTY);
+			if (catalog == null) {
+				init();
+			} else {
+				loadCatalog(Paths.get(catalog));
+			}
+		}
 
-		final ResourceConfig resourceConfig = new ResourceConfig(RestAirportsEndpoint.class, LoggingFilter.class);
+		final EndpointMetrics metrics = new EndpointMetrics("weather_http");
+		final AccessLog accessLog = createAccessLog();
+		final RequestExecutor reads = createRequestExecutor("weather-read", READ_THREADS_PROPERTY, READ_QUEUE_PROPERTY);
+		final RequestExecutor writes = createRequestExecutor("weather-write", WRITE_THREADS_PROPERTY, WRITE_QUEUE_PROPERTY);
+		final ShardRouter shardRouter = router ? new ShardRouter(shards) : null;
+		final ResourceConfig resourceConfig = new ResourceConfig()
+				.register(new AccessLogFilter(accessLog))
+				.register(new MetricsFilter(metrics))
+				.register(new MetricsEndpoint(metrics))
+				.register(router ? shardRouter : new RestAirportsEndpoint(repository, reads, writes));
 	
-		final HttpServer server = GrizzlyHttpServerFactory.createHttpServer(
-				URI.create(BASE_URL), resourceConfig, false);
+		final HttpServer server = TransportConfig.fromSystemProperties().createHttpServer(
+				URI.create(BASE_URL), resourceConfig);
 
 		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
 			@Override
 			public void run() {
 				server.shutdownNow();
+				if (shardRouter != null) {
+					shardRouter.close();
+				}
+				reads.close();
+				writes.close();
+				try {
+					accessLog.close();
+				} catch (IOException e) {
+					log.log(Level.WARNING, "Failed to close the access log", e);
+				}
+				if (repository instanceof DurableRepository) {
+					try {
+						((DurableRepository) repository).close();
+					} catch (IOException e) {
+						log.log(Level.WARNING, "Failed to close the repository", e);
+					}
+				}
 			}
 		}));
 
@@ -57,24 +166,118 @@ public class WeatherServer {
 		// Thread.currentThread().join();
 	}
 
+	/**
+	 * @return the ring of the shards, null if the server is not sharded
+	 */
+	private static HashRing<String> createShardRing() {
+		String urls = System.getProperty(SHARDS_PROPERTY);
+		if (urls == null || urls.trim().isEmpty()) {
+			return null;
+		}
+		HashRing<String> ring = HashRing.of(Arrays.asList(urls.trim().split("\\s*,\\s*")));
+		String shard = System.getProperty(SHARD_PROPERTY);
+		if (shard != null && !ring.getNodes().contains(shard)) {
+			throw new IllegalArgumentException(SHARD_PROPERTY + " " + shard + " is not one of " + ring.getNodes());
+		}
+		log.info(shard == null ? "Routing to the shards " + ring.getNodes()
+				: "Serving shard " + shard + " of " + ring.getNodes());
+		return ring;
+	}
+
+	/**
+	 * @return true if the airport belongs to this server, always if it is not sharded
+	 */
+	private static boolean isOwned(Airport airport) {
+		return isOwned(airport.getIataCode());
+	}
+
+	private static boolean isOwned(String iataCode) {
+		return shards == null || shards.nodeOf(iataCode).equals(System.getProperty(SHARD_PROPERTY));
+	}
+
+	private static Repository createRepository() {
+		Repository inMemory = createInMemoryRepository();
+		String directory = System.getProperty(DATA_DIRECTORY_PROPERTY);
+		if (directory == null) {
+			return inMemory;
+		}
+		long interval = Long.getLong(SNAPSHOT_INTERVAL_PROPERTY, TimeUnit.MINUTES.toSeconds(5));
+		try {
+			return new DurableRepository(inMemory, Paths.get(directory), TimeUnit.SECONDS.toMillis(interval));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to recover the repository from " + directory, e);
+		}
+	}
+
+	private static AccessLog createAccessLog() throws IOException {
+		String file = System.getProperty(ACCESS_LOG_PROPERTY);
+		Writer out = file == null ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+				: Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+						StandardOpenOption.APPEND);
+		double sampleRate = Double.parseDouble(System.getProperty(ACCESS_LOG_SAMPLE_PROPERTY, "1"));
+		long slowMillis = Long.getLong(ACCESS_LOG_SLOW_PROPERTY, 100);
+		return new AccessLog(out, AccessLog.DEFAULT_CAPACITY, sampleRate, slowMillis);
+	}
+
+	private static RequestExecutor createRequestExecutor(String name, String threadsProperty, String queueProperty) {
+		int threads = Integer.getInteger(threadsProperty, Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+		int queueLimit = Integer.getInteger(queueProperty, 256);
+		long queueTimeout = Long.getLong(QUEUE_TIMEOUT_PROPERTY, 1000);
+		int retryAfter = Integer.getInteger(RETRY_AFTER_PROPERTY, 1);
+		return new RequestExecutor(name, threads, queueLimit, queueTimeout, retryAfter);
+	}
+
+	private static Repository createInMemoryRepository() {
+		String type = System.getProperty(REPOSITORY_PROPERTY, "dummy");
+		switch (type) {
+		case "columnar":
+			return new ColumnarRepository();
+		case "dummy":
+			return DummyRepository.getInstance();
+		default:
+			throw new IllegalArgumentException("Unknown repository type: " + type);
+		}
+	}
+
+	private static void loadCatalog(Path file) throws IOException {
+		long start = System.nanoTime();
+		AirportCatalog catalog = AirportCatalog.open(file);
+		int loaded = 0;
+		for (int i = 0; i < catalog.size(); i++) {
+			// only the airports of this shard are decoded
+			if (isOwned(catalog.getIataCode(i))) {
+				repository.saveAirport(catalog.getAirport(i));
+				loaded++;
+			}
+		}
+		log.info("Loaded " + loaded + " of " + catalog.size() + " airports from " + file + " in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+	}
+
 	/**
 	 * A dummy init method that loads hard coded data
 	 */
 	private static void init() {
 		InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream("airports.dat");
 
-		try (BufferedReader buffer = new BufferedReader(new InputStreamReader(is))) {
-			buffer.lines().forEach(line -> repository.saveAirport(buildAirportFromCSV(line)));
+		try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+			CsvParser.parse(reader, ForkJoinPool.commonPool(), WeatherServer::buildAirportFromCSV)
+					.stream().filter(WeatherServer::isOwned).forEach(repository::saveAirport);
 		} catch(IOException e) {
 			log.log(Level.WARNING, "Failed to load dummy data", e);
 		}
 	}
 
-	private static Airport buildAirportFromCSV(String line) {
-		String[] parts = line.split(",");
-		return new Airport.Builder().withIataCode(parts[0])
-				.withLatitude(Double.parseDouble(parts[1]))
-				.withLongitude(Double.parseDouble(parts[2]))
-				.build();
+	/** a line of IATA code, latitude and longitude */
+	private static Airport buildAirportFromCSV(CsvParser record) {
+		try {
+			return new Airport.Builder().withIataCode(record.getString(0))
+					.withLatitude(record.getDouble(1))
+					.withLongitude(record.getDouble(2))
+					.build();
+		} catch (IllegalArgumentException e) {
+			log.warning("Skipped. This line doesn't follow required format : " + record.getLine());
+			return null;
+		}
 	}
 }
@@ -0,0 +1,224 @@
+package com.crossover.trial.weather.server.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+
+/**
+ * Airport catalog, spatial index and request statistics shared by the
+ * in-memory repositories. Subclasses only decide how atmospheric information
+ * is stored.
+ */
+public abstract class AbstractRepository implements Repository {
+
+	protected static final AtmosphericInformation NO_INFORMATION = new AtmosphericInformation.Builder().build();
+
+	private final ConcurrentMap<String, Airport> airports = new ConcurrentHashMap<>();
+
+	/** airports by {@link IataCodec} code, for lookups without hashing */
+	private final AtomicReferenceArray<Airport> airportsByCode = new AtomicReferenceArray<>(IataCodec.CAPACITY);
+
+	private final AirportGridIndex airportIndex = new AirportGridIndex();
+
+	/** incremented after every change of the catalog, under the index lock */
+	private final AtomicLong catalogVersion = new AtomicLong();
+
+	private volatile long catalogLastModified = System.currentTimeMillis();
+
+	/** source of atmospheric information versions, unique across all airports */
+	protected final AtomicLong versions = new AtomicLong();
+
+	/** airports with atmospheric information updated in the last day, with minute resolution */
+	private final RecentUpdateCounter recentUpdates = new RecentUpdateCounter(TimeUnit.DAYS.toMillis(1), TimeUnit.MINUTES.toMillis(1));
+
+	/**
+	 * Internal performance counter to better understand most requested
+	 * information, this map can be improved but for now provides the basis for
+	 * future performance optimizations. Due to the stateless deployment
+	 * architecture we don't want to write this to disk, but will pull it off
+	 * using a REST request and aggregate with other performance metrics
+	 * {@link #ping()}
+	 * 
+	 * Counters are {@link LongAdder}s so concurrent queries for the same
+	 * airport don't serialize on a single monitor. Counters of valid IATA codes
+	 * are indexed by {@link IataCodec} code, the map only holds the others.
+	 */
+	private final AtomicReferenceArray<LongAdder> requestCountsByCode = new AtomicReferenceArray<>(IataCodec.CAPACITY);
+
+	private final ConcurrentMap<String, LongAdder> otherRequestCounts = new ConcurrentHashMap<>();
+
+	private final RadiusHistogram radiusHistogram = new RadiusHistogram();
+
+	@Override
+	public void saveAirport(Airport airport) {
+		synchronized (airportIndex) {
+			Airport previous = airports.put(airport.getIataCode(), airport);
+			int code = IataCodec.encode(airport.getIataCode());
+			if (code != IataCodec.INVALID) {
+				airportsByCode.set(code, airport);
+			}
+			if (previous != null) {
+				airportIndex.remove(previous);
+			}
+			airportIndex.add(airport);
+			catalogLastModified = System.currentTimeMillis();
+			catalogVersion.incrementAndGet();
+		}
+	}
+
+	@Override
+	public Airport getAirport(String iataCode) {
+		int code = IataCodec.encode(iataCode);
+		if (code != IataCodec.INVALID) {
+			return airportsByCode.get(code);
+		}
+		return iataCode == null ? null : airports.get(iataCode);
+	}
+
+	@Override
+	public Collection<Airport> getAirports() {
+		return airports.values();
+	}
+
+	@Override
+	public long getCatalogVersion() {
+		return catalogVersion.get();
+	}
+
+	@Override
+	public long getCatalogLastModified() {
+		return catalogLastModified;
+	}
+
+	/**
+	 * Reads the atmospheric information, subclasses which materialize it on
+	 * read should override.
+	 */
+	@Override
+	public long getAtmosphericInformationVersion(String iataCode) {
+		return getAtmosphericInformationByIataCode(iataCode).getVersion();
+	}
+
+	/**
+	 * Reads the atmospheric information, subclasses which materialize it on
+	 * read should override.
+	 */
+	@Override
+	public long getAtmosphericInformationLastUpdateTime(String iataCode) {
+		return getAtmosphericInformationByIataCode(iataCode).getLastUpdateTime();
+	}
+
+	@Override
+	public Collection<Airport> getAirportsAround(Airport airport, double radius) {
+		return airportIndex.findWithin(airport, radius);
+	}
+
+	@Override
+	public boolean airportExists(String iataCode) {
+		return getAirport(iataCode) != null;
+	}
+
+	@Override
+	public void deleteAirport(String iata) {
+		synchronized (airportIndex) {
+			if (iata == null) {
+				return;
+			}
+			Airport removed = airports.remove(iata);
+			int code = IataCodec.encode(iata);
+			if (code != IataCodec.INVALID) {
+				airportsByCode.set(code, null);
+			}
+			if (removed != null) {
+				airportIndex.remove(removed);
+				catalogLastModified = System.currentTimeMillis();
+				catalogVersion.incrementAndGet();
+			}
+		}
+	}
+
+	@Override
+	public Map<String, Long> getRequestCounts() {
+		Map<String, Long> snapshot = new HashMap<>();
+		for (int code = 0; code < IataCodec.CAPACITY; code++) {
+			LongAdder counter = requestCountsByCode.get(code);
+			if (counter != null) {
+				snapshot.put(IataCodec.decode(code), counter.sum());
+			}
+		}
+		otherRequestCounts.forEach((key, counter) -> snapshot.put(key, counter.sum()));
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	@Override
+	public long[] getRadiusHistogram() {
+		return radiusHistogram.snapshot();
+	}
+
+	@Override
+	public long getRequestCount(String iataCode) {
+		int code = IataCodec.encode(iataCode);
+		LongAdder counter = code != IataCodec.INVALID ? requestCountsByCode.get(code) : otherRequestCounts.get(iataCode);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	@Override
+	public void incrementRequestCount(String iataCode) {
+		int code = IataCodec.encode(iataCode);
+		if (code != IataCodec.INVALID) {
+			LongAdder counter = requestCountsByCode.get(code);
+			if (counter == null) {
+				requestCountsByCode.compareAndSet(code, null, new LongAdder());
+				counter = requestCountsByCode.get(code);
+			}
+			counter.increment();
+		} else {
+			// get first to avoid computeIfAbsent locking the bin on the hot path
+			LongAdder counter = otherRequestCounts.get(iataCode);
+			if (counter == null) {
+				counter = otherRequestCounts.computeIfAbsent(iataCode, k -> new LongAdder());
+			}
+			counter.increment();
+		}
+	}
+
+	@Override
+	public void incrementRadiusCount(double radius) {
+		radiusHistogram.record(radius);
+	}
+
+	@Override
+	public void updateAtmosphericInformation(String iataCode, DataPoint dataPoint) {
+		updateAtmosphericInformation(iataCode, dataPoint, System.currentTimeMillis());
+	}
+
+	@Override
+	public long getDataSize() {
+		return recentUpdates.count(System.currentTimeMillis());
+	}
+
+	/**
+	 * Must be called by subclasses after atmospheric information of the airport was updated.
+	 */
+	protected void onAtmosphericInformationUpdated(String iataCode, long updateTime) {
+		recentUpdates.record(iataCode, updateTime);
+	}
+
+	/**
+	 * Must be called by subclasses after atmospheric information of the airport was dropped.
+	 */
+	protected void onAtmosphericInformationRemoved(String iataCode) {
+		recentUpdates.remove(iataCode);
+	}
+}
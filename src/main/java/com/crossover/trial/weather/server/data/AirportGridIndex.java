@@ -0,0 +1,132 @@
+package com.crossover.trial.weather.server.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.crossover.trial.weather.model.Airport;
+
+/**
+ * Spatial index over airport coordinates. The globe is split into a fixed
+ * latitude/longitude grid and every airport is kept in the cell that contains
+ * it. A radius query only visits the cells intersecting the bounding box of the
+ * spherical cap around the requested point and then applies the exact
+ * haversine check, so the result is the same as a linear scan over all
+ * airports.
+ *
+ * Cells are copy-on-write {@link CoordinateBlock}s: writers (rare)
+ * synchronize on the index, readers never block.
+ */
+public class AirportGridIndex {
+
+	/** cell size in degrees */
+	private static final double CELL_DEGREES = 1.0;
+
+	private static final int ROWS = (int) (180 / CELL_DEGREES);
+
+	private static final int COLUMNS = (int) (360 / CELL_DEGREES);
+
+	/** safety margin in degrees added to the bounding box to absorb rounding errors */
+	private static final double MARGIN_DEGREES = 1e-6;
+
+	private final AtomicReferenceArray<CoordinateBlock> cells = new AtomicReferenceArray<>(ROWS * COLUMNS);
+
+	/** airports with coordinates outside of the valid range, always checked linearly */
+	private volatile CoordinateBlock outliers = CoordinateBlock.EMPTY;
+
+	public synchronized void add(Airport airport) {
+		if (GeoDistance.isValidCoordinate(airport.getLatitude(), airport.getLongitude())) {
+			int cell = cellOf(airport.getLatitude(), airport.getLongitude());
+			CoordinateBlock block = cells.get(cell);
+			cells.set(cell, (block == null ? CoordinateBlock.EMPTY : block).with(airport));
+		} else {
+			outliers = outliers.with(airport);
+		}
+	}
+
+	public synchronized void remove(Airport airport) {
+		if (GeoDistance.isValidCoordinate(airport.getLatitude(), airport.getLongitude())) {
+			int cell = cellOf(airport.getLatitude(), airport.getLongitude());
+			CoordinateBlock block = cells.get(cell);
+			if (block != null) {
+				block = block.without(airport);
+				cells.set(cell, block.size() == 0 ? null : block);
+			}
+		} else {
+			outliers = outliers.without(airport);
+		}
+	}
+
+	/**
+	 * Finds all airports whose haversine distance to the given airport is not
+	 * greater than the radius.
+	 *
+	 * @param center
+	 *            the airport in the middle of the searched area
+	 * @param radius
+	 *            the radius in km
+	 * @return airports within the radius, including the center itself
+	 */
+	public List<Airport> findWithin(Airport center, double radius) {
+		List<Airport> result = new ArrayList<>();
+		double latitude = center.getLatitude();
+		double longitude = center.getLongitude();
+
+		double delta = radius / GeoDistance.EARTH_RADIUS_KM;
+		CoordinateBlock.Query exact = CoordinateBlock.Query.exact(latitude, longitude, radius);
+		if (!(delta >= 0) || delta >= Math.PI || !GeoDistance.isValidCoordinate(latitude, longitude)) {
+			for (int cell = 0; cell < cells.length(); cell++) {
+				collect(cells.get(cell), exact, result);
+			}
+			outliers.collectWithin(exact, result);
+			return result;
+		}
+
+		double deltaDegrees = Math.toDegrees(delta);
+		double minLatitude = latitude - deltaDegrees - MARGIN_DEGREES;
+		double maxLatitude = latitude + deltaDegrees + MARGIN_DEGREES;
+
+		int firstColumn = 0;
+		int columnCount = COLUMNS;
+		if (minLatitude > -90 && maxLatitude < 90) {
+			// the cap does not contain a pole, so longitudes are bounded as well
+			double sinDeltaLon = Math.sin(delta) / Math.cos(Math.toRadians(latitude));
+			if (sinDeltaLon < 1) {
+				double deltaLon = Math.toDegrees(Math.asin(sinDeltaLon)) + MARGIN_DEGREES;
+				firstColumn = columnOf(longitude - deltaLon);
+				columnCount = Math.min(COLUMNS, columnOf(longitude + deltaLon) - firstColumn + 1);
+			}
+		}
+
+		CoordinateBlock.Query query = CoordinateBlock.Query.around(latitude, longitude, radius);
+		int firstRow = rowOf(Math.max(-90, minLatitude));
+		int lastRow = rowOf(Math.min(90, maxLatitude));
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int i = 0; i < columnCount; i++) {
+				int column = Math.floorMod(firstColumn + i, COLUMNS);
+				collect(cells.get(row * COLUMNS + column), query, result);
+			}
+		}
+		outliers.collectWithin(exact, result);
+		return result;
+	}
+
+	private static void collect(CoordinateBlock block, CoordinateBlock.Query query, List<Airport> result) {
+		if (block != null) {
+			block.collectWithin(query, result);
+		}
+	}
+
+	private static int cellOf(double latitude, double longitude) {
+		return rowOf(latitude) * COLUMNS + Math.floorMod(columnOf(longitude), COLUMNS);
+	}
+
+	private static int rowOf(double latitude) {
+		return Math.min(ROWS - 1, (int) Math.floor((latitude + 90) / CELL_DEGREES));
+	}
+
+	/** unwrapped column, may be negative or beyond {@link #COLUMNS} */
+	private static int columnOf(double longitude) {
+		return (int) Math.floor((longitude + 180) / CELL_DEGREES);
+	}
+}
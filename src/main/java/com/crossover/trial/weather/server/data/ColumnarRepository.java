@@ -0,0 +1,289 @@
+package com.crossover.trial.weather.server.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+
+/**
+ * Repository keeping atmospheric information in primitive columns instead of
+ * object graphs. Every airport gets a dense id, its {@link IataCodec} code for
+ * valid IATA codes or an id allocated after them for any other code. Such ids
+ * are only allocated for airports of the catalog and are reused once the
+ * airport is deleted, so unknown codes cannot use up the capacity. Data point
+ * fields live in arrays indexed by {@code id * TYPE_COUNT + type.ordinal()}.
+ * {@link AtmosphericInformation} objects are only materialized when read.
+ *
+ * Each airport row is guarded by a sequence lock: a writer makes the sequence
+ * odd while it updates the columns, readers retry if the sequence was odd or
+ * changed while they were reading, so they never block and never see a
+ * half-applied update.
+ */
+public class ColumnarRepository extends AbstractRepository {
+
+	/** default number of rows for codes which are not valid IATA codes */
+	public static final int DEFAULT_EXTRA_CAPACITY = 1024;
+
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	private static final int TYPE_COUNT = TYPES.length;
+
+	private final int capacity;
+
+	/** ids of codes which are not valid IATA codes */
+	private final ConcurrentMap<String, Integer> otherAirportIds = new ConcurrentHashMap<>();
+
+	private final AtomicInteger nextOtherId = new AtomicInteger(IataCodec.CAPACITY);
+
+	/** ids released by deleted airports, allocated before new ones */
+	private final Queue<Integer> freeOtherIds = new ConcurrentLinkedQueue<>();
+
+	// columns indexed by id * TYPE_COUNT + type ordinal
+	private final AtomicLongArray means;
+	private final AtomicIntegerArray firsts;
+	private final AtomicIntegerArray seconds;
+	private final AtomicIntegerArray thirds;
+	private final AtomicIntegerArray counts;
+	private final AtomicLongArray pointTimes;
+
+	// columns indexed by id
+	/** bit mask of populated data point types */
+	private final AtomicIntegerArray populated;
+	private final AtomicLongArray lastUpdateTimes;
+	private final AtomicLongArray rowVersions;
+	private final AtomicLongArray sequences;
+
+	public ColumnarRepository() {
+		this(DEFAULT_EXTRA_CAPACITY);
+	}
+
+	/**
+	 * @param extraCapacity
+	 *            maximum number of airports with codes which are not valid IATA
+	 *            codes
+	 */
+	public ColumnarRepository(int extraCapacity) {
+		this.capacity = IataCodec.CAPACITY + extraCapacity;
+		this.means = new AtomicLongArray(capacity * TYPE_COUNT);
+		this.firsts = new AtomicIntegerArray(capacity * TYPE_COUNT);
+		this.seconds = new AtomicIntegerArray(capacity * TYPE_COUNT);
+		this.thirds = new AtomicIntegerArray(capacity * TYPE_COUNT);
+		this.counts = new AtomicIntegerArray(capacity * TYPE_COUNT);
+		this.pointTimes = new AtomicLongArray(capacity * TYPE_COUNT);
+		this.populated = new AtomicIntegerArray(capacity);
+		this.lastUpdateTimes = new AtomicLongArray(capacity);
+		this.rowVersions = new AtomicLongArray(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+	}
+
+	@Override
+	public Collection<AtmosphericInformation> getAllAtmosphericInformation() {
+		int size = Math.min(nextOtherId.get(), capacity);
+		List<AtmosphericInformation> result = new ArrayList<>();
+		for (int id = 0; id < size; id++) {
+			// rows are written at least once when their version is set
+			if (rowVersions.get(id) != 0) {
+				result.add(read(id));
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	@Override
+	public AtmosphericInformation getAtmosphericInformationByIataCode(String iataCode) {
+		int id = existingIdOf(iataCode);
+		return id == IataCodec.INVALID || rowVersions.get(id) == 0 ? NO_INFORMATION : read(id);
+	}
+
+	@Override
+	public long getAtmosphericInformationVersion(String iataCode) {
+		int id = existingIdOf(iataCode);
+		return id == IataCodec.INVALID ? 0 : rowVersions.get(id);
+	}
+
+	@Override
+	public long getAtmosphericInformationLastUpdateTime(String iataCode) {
+		int id = existingIdOf(iataCode);
+		return id == IataCodec.INVALID ? 0 : lastUpdateTimes.get(id);
+	}
+
+	/**
+	 * @return the id of the code without allocating one, {@link IataCodec#INVALID} if it has none
+	 */
+	private int existingIdOf(String iataCode) {
+		int code = IataCodec.encode(iataCode);
+		if (code != IataCodec.INVALID) {
+			return code;
+		}
+		Integer id = iataCode == null ? null : otherAirportIds.get(iataCode);
+		return id == null ? IataCodec.INVALID : id;
+	}
+
+	@Override
+	public void updateAtmosphericInformation(String iataCode, DataPoint dataPoint, long updateTime) {
+		DataPointType type = dataPoint.getType();
+		if (type == null) {
+			throw new IllegalArgumentException("Data point type is missing");
+		}
+		type.validate(dataPoint);
+
+		while (!update(idOf(iataCode), iataCode, dataPoint, updateTime)) {
+			// the id was released by a concurrent delete, the airport may have been saved again
+		}
+
+		onAtmosphericInformationUpdated(iataCode, updateTime);
+	}
+
+	/**
+	 * Ignores a data point older than the stored one of its type.
+	 *
+	 * @return false if the id is no longer the id of the code
+	 */
+	private boolean update(int id, String iataCode, DataPoint dataPoint, long updateTime) {
+		DataPointType type = dataPoint.getType();
+		int slot = id * TYPE_COUNT + type.ordinal();
+
+		long sequence = lock(id);
+		try {
+			// checked under the row lock, which a delete takes to clear the row
+			if (!isIdOf(id, iataCode)) {
+				return false;
+			}
+			if (updateTime < pointTimes.get(slot)) {
+				// older than the stored data point
+				return true;
+			}
+			means.lazySet(slot, Double.doubleToRawLongBits(dataPoint.getMean()));
+			firsts.lazySet(slot, dataPoint.getFirst());
+			seconds.lazySet(slot, dataPoint.getSecond());
+			thirds.lazySet(slot, dataPoint.getThird());
+			counts.lazySet(slot, dataPoint.getCount());
+			pointTimes.lazySet(slot, updateTime);
+			populated.lazySet(id, populated.get(id) | (1 << type.ordinal()));
+			lastUpdateTimes.lazySet(id, Math.max(lastUpdateTimes.get(id), updateTime));
+			rowVersions.lazySet(id, versions.incrementAndGet());
+			return true;
+		} finally {
+			sequences.set(id, sequence + 2);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the code is not a valid IATA code and has no airport
+	 */
+	private int idOf(String iataCode) {
+		int code = IataCodec.encode(iataCode);
+		if (code != IataCodec.INVALID) {
+			return code;
+		}
+		Integer id = iataCode == null ? null : otherAirportIds.get(iataCode);
+		if (id == null) {
+			if (!airportExists(iataCode)) {
+				throw new IllegalArgumentException("Unknown airport: " + iataCode);
+			}
+			id = otherAirportIds.computeIfAbsent(iataCode, k -> {
+				Integer free = freeOtherIds.poll();
+				if (free != null) {
+					return free;
+				}
+				int next = nextOtherId.getAndIncrement();
+				if (next >= capacity) {
+					throw new IllegalStateException("Repository capacity of " + (capacity - IataCodec.CAPACITY) + " non IATA airport codes exceeded");
+				}
+				return next;
+			});
+		}
+		return id;
+	}
+
+	private boolean isIdOf(int id, String iataCode) {
+		return id < IataCodec.CAPACITY || Integer.valueOf(id).equals(otherAirportIds.get(iataCode));
+	}
+
+	/**
+	 * Also drops the atmospheric information of a code which is not a valid
+	 * IATA code and releases its id.
+	 */
+	@Override
+	public void deleteAirport(String iata) {
+		super.deleteAirport(iata);
+		if (iata == null || IataCodec.encode(iata) != IataCodec.INVALID) {
+			return;
+		}
+		Integer id = otherAirportIds.remove(iata);
+		if (id == null) {
+			return;
+		}
+		long sequence = lock(id);
+		try {
+			for (int slot = id * TYPE_COUNT; slot < (id + 1) * TYPE_COUNT; slot++) {
+				pointTimes.lazySet(slot, 0);
+			}
+			populated.lazySet(id, 0);
+			lastUpdateTimes.lazySet(id, 0);
+			rowVersions.lazySet(id, 0);
+		} finally {
+			sequences.set(id, sequence + 2);
+		}
+		onAtmosphericInformationRemoved(iata);
+		freeOtherIds.add(id);
+	}
+
+	/**
+	 * Makes the row's sequence odd.
+	 *
+	 * @return the even sequence before locking
+	 */
+	private long lock(int id) {
+		while (true) {
+			long sequence = sequences.get(id);
+			if ((sequence & 1) == 0 && sequences.compareAndSet(id, sequence, sequence + 1)) {
+				return sequence;
+			}
+			Thread.yield();
+		}
+	}
+
+	private AtmosphericInformation read(int id) {
+		while (true) {
+			long sequence = sequences.get(id);
+			if ((sequence & 1) != 0) {
+				Thread.yield();
+				continue;
+			}
+
+			int mask = populated.get(id);
+			AtmosphericInformation.Builder builder = new AtmosphericInformation.Builder();
+			for (DataPointType type : TYPES) {
+				if ((mask & (1 << type.ordinal())) != 0) {
+					int slot = id * TYPE_COUNT + type.ordinal();
+					builder.withDataPoint(new DataPoint.Builder(type)
+							.withMean(Double.longBitsToDouble(means.get(slot)))
+							.withFirst(firsts.get(slot))
+							.withSecond(seconds.get(slot))
+							.withLast(thirds.get(slot))
+							.withCount(counts.get(slot))
+							.build())
+							.withDataPointTime(type, pointTimes.get(slot));
+				}
+			}
+			builder.withLastUpdateTime(lastUpdateTimes.get(id)).withVersion(rowVersions.get(id));
+
+			if (sequences.get(id) == sequence) {
+				return builder.build();
+			}
+		}
+	}
+}
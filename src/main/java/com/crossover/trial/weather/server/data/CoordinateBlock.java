@@ -0,0 +1,160 @@
+package com.crossover.trial.weather.server.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.crossover.trial.weather.model.Airport;
+
+/**
+ * Immutable structure-of-arrays block of airports: coordinates and the cosine
+ * of the latitude are kept in parallel primitive arrays, so a radius query is
+ * a tight loop over contiguous memory without touching the {@link Airport}
+ * objects or recomputing cosines.
+ *
+ * The haversine term is computed with exactly the same operations as
+ * {@link GeoDistance#calculateDistance(double, double, double, double)}, so
+ * the results are identical to it. The expensive arc sine is only evaluated for
+ * candidates whose haversine is too close to the threshold to decide.
+ */
+final class CoordinateBlock {
+
+	static final CoordinateBlock EMPTY = new CoordinateBlock(new Airport[0], new double[0], new double[0], new double[0]);
+
+	/** relative width of the band around the threshold decided by the exact formula */
+	private static final double HAVERSINE_TOLERANCE = 1e-9;
+
+	private final Airport[] airports;
+
+	private final double[] latitudes;
+
+	private final double[] longitudes;
+
+	private final double[] cosLatitudes;
+
+	private CoordinateBlock(Airport[] airports, double[] latitudes, double[] longitudes, double[] cosLatitudes) {
+		this.airports = airports;
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.cosLatitudes = cosLatitudes;
+	}
+
+	int size() {
+		return airports.length;
+	}
+
+	CoordinateBlock with(Airport airport) {
+		int size = airports.length;
+		CoordinateBlock block = new CoordinateBlock(Arrays.copyOf(airports, size + 1), Arrays.copyOf(latitudes, size + 1),
+				Arrays.copyOf(longitudes, size + 1), Arrays.copyOf(cosLatitudes, size + 1));
+		block.airports[size] = airport;
+		block.latitudes[size] = airport.getLatitude();
+		block.longitudes[size] = airport.getLongitude();
+		block.cosLatitudes[size] = Math.cos(Math.toRadians(airport.getLatitude()));
+		return block;
+	}
+
+	CoordinateBlock without(Airport airport) {
+		for (int i = 0; i < airports.length; i++) {
+			if (airports[i] == airport) {
+				return new CoordinateBlock(remove(airports, i, new Airport[airports.length - 1]), remove(latitudes, i),
+						remove(longitudes, i), remove(cosLatitudes, i));
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Adds airports of this block within the query's radius to the result.
+	 */
+	void collectWithin(Query query, List<Airport> result) {
+		double latitude = query.latitude;
+		double longitude = query.longitude;
+		double cosLatitude = query.cosLatitude;
+		for (int i = 0; i < airports.length; i++) {
+			double lat = latitudes[i];
+			if (lat < query.minLatitude || lat > query.maxLatitude) {
+				continue;
+			}
+			double sinLat = Math.sin(Math.toRadians(lat - latitude) / 2);
+			double sinLon = Math.sin(Math.toRadians(longitudes[i] - longitude) / 2);
+			double a = sinLat * sinLat + sinLon * sinLon * cosLatitude * cosLatitudes[i];
+			if (a <= query.acceptBelow
+					|| (a <= query.rejectAbove && GeoDistance.distanceOfHaversine(a) <= query.radius)) {
+				result.add(airports[i]);
+			}
+		}
+	}
+
+	private static Airport[] remove(Airport[] source, int index, Airport[] target) {
+		System.arraycopy(source, 0, target, 0, index);
+		System.arraycopy(source, index + 1, target, index, source.length - index - 1);
+		return target;
+	}
+
+	private static double[] remove(double[] source, int index) {
+		double[] target = new double[source.length - 1];
+		System.arraycopy(source, 0, target, 0, index);
+		System.arraycopy(source, index + 1, target, index, source.length - index - 1);
+		return target;
+	}
+
+	/**
+	 * A radius query around a point, with the thresholds precomputed once for
+	 * all candidates.
+	 */
+	static final class Query {
+
+		private final double latitude;
+		private final double longitude;
+		private final double cosLatitude;
+		private final double radius;
+
+		/** latitude prefilter */
+		private final double minLatitude;
+		private final double maxLatitude;
+
+		/** haversine values decided without the exact formula */
+		private final double acceptBelow;
+		private final double rejectAbove;
+
+		private Query(double latitude, double longitude, double radius, boolean prefilter) {
+			this.latitude = latitude;
+			this.longitude = longitude;
+			this.cosLatitude = Math.cos(Math.toRadians(latitude));
+			this.radius = radius;
+
+			double delta = radius / GeoDistance.EARTH_RADIUS_KM;
+			if (prefilter && delta >= 0 && delta < Math.PI / 2) {
+				// a great circle distance is never shorter than the latitude difference
+				double deltaDegrees = Math.toDegrees(delta) * (1 + HAVERSINE_TOLERANCE) + 1e-9;
+				this.minLatitude = latitude - deltaDegrees;
+				this.maxLatitude = latitude + deltaDegrees;
+				double sinHalfDelta = Math.sin(delta / 2);
+				double threshold = sinHalfDelta * sinHalfDelta;
+				this.acceptBelow = threshold * (1 - HAVERSINE_TOLERANCE);
+				this.rejectAbove = threshold * (1 + HAVERSINE_TOLERANCE) + Double.MIN_NORMAL;
+			} else {
+				// decide every candidate with the exact formula
+				this.minLatitude = Double.NEGATIVE_INFINITY;
+				this.maxLatitude = Double.POSITIVE_INFINITY;
+				this.acceptBelow = Double.NEGATIVE_INFINITY;
+				this.rejectAbove = Double.POSITIVE_INFINITY;
+			}
+		}
+
+		/**
+		 * A query for a center with valid coordinates using the prefilters.
+		 */
+		static Query around(double latitude, double longitude, double radius) {
+			return new Query(latitude, longitude, radius, true);
+		}
+
+		/**
+		 * A query deciding every candidate with the exact formula, for
+		 * coordinates outside of the valid range.
+		 */
+		static Query exact(double latitude, double longitude, double radius) {
+			return new Query(latitude, longitude, radius, false);
+		}
+	}
+}
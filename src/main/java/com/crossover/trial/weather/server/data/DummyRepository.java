@@ -1,33 +1,31 @@
 package com.crossover.trial.weather.server.data;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-import com.crossover.trial.weather.model.Airport;
 import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
 
-public class DummyRepository implements Repository {
+public class DummyRepository extends AbstractRepository {
 
 	// Just a singleton for simplicity
 	private static final Repository instance = new DummyRepository();
 
-	private Map<String, Airport> airports = Collections.synchronizedMap(new HashMap<>());
-
-	private Map<String, AtmosphericInformation> atmosphericInformation = Collections.synchronizedMap(new HashMap<>());
-
 	/**
-	 * Internal performance counter to better understand most requested
-	 * information, this map can be improved but for now provides the basis for
-	 * future performance optimizations. Due to the stateless deployment
-	 * architecture we don't want to write this to disk, but will pull it off
-	 * using a REST request and aggregate with other performance metrics
-	 * {@link #ping()}
+	 * Immutable weather snapshots per airport. Writers swap in a new snapshot
+	 * with a CAS, readers never block and never see a half-applied update.
+	 * Snapshots of valid IATA codes are indexed by {@link IataCodec} code, the
+	 * map only holds the others.
 	 */
-	private Map<String, Integer> requestCounts = Collections.synchronizedMap(new HashMap<>());
+	private final AtomicReferenceArray<AtmosphericInformation> atmosphericInformationByCode = new AtomicReferenceArray<>(IataCodec.CAPACITY);
 
-	private Map<Double, Integer> radiusCounts = new HashMap<Double, Integer>();
+	private final ConcurrentMap<String, AtomicReference<AtmosphericInformation>> otherAtmosphericInformation = new ConcurrentHashMap<>();
 
 	private DummyRepository() {
 	}
@@ -36,68 +34,61 @@ public class DummyRepository implements Repository {
 		return instance;
 	}
 
-	@Override
-	public void saveAirport(Airport airport) {
-		airports.put(airport.getIataCode(), airport);
-	}
-
-	@Override
-	public Airport getAirport(String iataCode) {
-		return airports.get(iataCode);
-	}
-
-	@Override
-	public Collection<Airport> getAirports() {
-		return airports.values();
-	}
-
 	@Override
 	public Collection<AtmosphericInformation> getAllAtmosphericInformation() {
-		return Collections.unmodifiableCollection(atmosphericInformation.values());
-	}
-
-	@Override
-	public Map<String, Integer> getRequestCounts() {
-		return Collections.unmodifiableMap(requestCounts);
-	}
-
-	@Override
-	public Map<Double, Integer> getRadiusCounts() {
-		return Collections.unmodifiableMap(radiusCounts);
+		List<AtmosphericInformation> result = new ArrayList<>();
+		for (int code = 0; code < IataCodec.CAPACITY; code++) {
+			AtmosphericInformation ai = atmosphericInformationByCode.get(code);
+			if (ai != null) {
+				result.add(ai);
+			}
+		}
+		otherAtmosphericInformation.values().forEach(reference -> result.add(reference.get()));
+		return Collections.unmodifiableList(result);
 	}
 
 	@Override
 	public AtmosphericInformation getAtmosphericInformationByIataCode(String iataCode) {
-		return atmosphericInformation.getOrDefault(iataCode, new AtmosphericInformation.Builder().build());
-	}
-
-	@Override
-	public int getRequestCount(String iataCode) {
-		return requestCounts.getOrDefault(iataCode, 0);
-	}
-
-	@Override
-	public void updateRequestCount(String iataCode, int count) {
-		requestCounts.put(iataCode, count);
-	}
-
-	@Override
-	public void updateRadiusCount(Double radius, int count) {
-		radiusCounts.put(radius, count);
-	}
-
-	@Override
-	public int getRadiusCount(Double radius) {
-		return radiusCounts.getOrDefault(radius, 0);
-	}
-
-	@Override
-	public boolean airportExists(String iataCode) {
-		return airports.containsKey(iataCode);
+		int code = IataCodec.encode(iataCode);
+		if (code != IataCodec.INVALID) {
+			AtmosphericInformation ai = atmosphericInformationByCode.get(code);
+			return ai == null ? NO_INFORMATION : ai;
+		}
+		AtomicReference<AtmosphericInformation> reference = otherAtmosphericInformation.get(iataCode);
+		return reference == null ? NO_INFORMATION : reference.get();
 	}
 
 	@Override
-	public void deleteAirport(String iata) {
-		airports.remove(iata);
+	public void updateAtmosphericInformation(String iataCode, DataPoint dataPoint, long updateTime) {
+		int code = IataCodec.encode(iataCode);
+		if (code != IataCodec.INVALID) {
+			AtmosphericInformation current;
+			AtmosphericInformation updated;
+			do {
+				current = atmosphericInformationByCode.get(code);
+				AtmosphericInformation base = current == null ? NO_INFORMATION : current;
+				updated = base.withDataPoint(dataPoint, updateTime, versions.incrementAndGet());
+				if (updated == base) {
+					// older than the stored data point
+					return;
+				}
+			} while (!atmosphericInformationByCode.compareAndSet(code, current, updated));
+		} else {
+			AtomicReference<AtmosphericInformation> reference = otherAtmosphericInformation.get(iataCode);
+			if (reference == null) {
+				reference = otherAtmosphericInformation.computeIfAbsent(iataCode, k -> new AtomicReference<>(NO_INFORMATION));
+			}
+			AtmosphericInformation current;
+			AtmosphericInformation updated;
+			do {
+				current = reference.get();
+				updated = current.withDataPoint(dataPoint, updateTime, versions.incrementAndGet());
+				if (updated == current) {
+					return;
+				}
+			} while (!reference.compareAndSet(current, updated));
+		}
+
+		onAtmosphericInformationUpdated(iataCode, updateTime);
 	}
 }
@@ -0,0 +1,310 @@
+package com.crossover.trial.weather.server.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.io.WeatherRecords;
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.WeatherUpdate;
+import com.google.gson.Gson;
+
+/**
+ * Makes the airport catalog and the atmospheric information of another
+ * repository survive restarts. Every mutation is appended to a
+ * {@link WriteAheadLog}, which writes in the background, and then applied to
+ * the delegate, so updates do not wait for the disk and a mutation the log
+ * rejects is not applied. Snapshots of the state are written periodically and
+ * truncate the log. Request statistics are not persisted.
+ *
+ * Mutations of the same airport are appended and applied under the same lock,
+ * so the log has them in the order they were applied.
+ */
+public class DurableRepository implements Repository, Closeable {
+
+	private static final Logger log = Logger.getLogger(DurableRepository.class.getName());
+
+	private static final byte SAVE_AIRPORT = 1;
+
+	private static final byte DELETE_AIRPORT = 2;
+
+	/** a {@link WeatherRecords} record, its timestamp is the update time */
+	private static final byte UPDATE_WEATHER = 3;
+
+	/** a json {@link WeatherUpdate}, for codes which do not fit a binary record */
+	private static final byte UPDATE_WEATHER_JSON = 4;
+
+	private static final int STRIPES = 64;
+
+	private static final Gson gson = new Gson();
+
+	private final Repository delegate;
+
+	private final WriteAheadLog wal;
+
+	private final Object[] stripes = new Object[STRIPES];
+
+	/** codes with atmospheric information, also those missing in the catalog */
+	private final Set<String> weatherCodes = ConcurrentHashMap.newKeySet();
+
+	private final ScheduledExecutorService snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "repository-snapshot");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Restores the state from the directory into the delegate.
+	 *
+	 * @param delegate
+	 *            an empty repository holding the state in memory
+	 * @param directory
+	 *            the log and snapshot directory
+	 * @param snapshotIntervalMillis
+	 *            the time between snapshots
+	 */
+	public DurableRepository(Repository delegate, Path directory, long snapshotIntervalMillis) throws IOException {
+		this.delegate = delegate;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+		long start = System.nanoTime();
+		this.wal = WriteAheadLog.open(directory, this::replay);
+		log.info("Recovered " + delegate.getAirports().size() + " airports and weather of " + weatherCodes.size()
+				+ " airports in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+
+		snapshots.scheduleWithFixedDelay(() -> {
+			try {
+				snapshot();
+			} catch (IOException | RuntimeException e) {
+				log.log(Level.SEVERE, "Failed to write a snapshot", e);
+			}
+		}, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void replay(byte type, ByteBuffer payload) {
+		switch (type) {
+		case SAVE_AIRPORT:
+			delegate.saveAirport(gson.fromJson(StandardCharsets.UTF_8.decode(payload).toString(), Airport.class));
+			break;
+		case DELETE_AIRPORT:
+			delegate.deleteAirport(StandardCharsets.UTF_8.decode(payload).toString());
+			break;
+		case UPDATE_WEATHER:
+		case UPDATE_WEATHER_JSON:
+			WeatherUpdate update = type == UPDATE_WEATHER ? WeatherRecords.read(payload)
+					: gson.fromJson(StandardCharsets.UTF_8.decode(payload).toString(), WeatherUpdate.class);
+			try {
+				delegate.updateAtmosphericInformation(update.getIata(), update.getDataPoint(), update.getTimestamp());
+				weatherCodes.add(update.getIata());
+			} catch (IllegalArgumentException e) {
+				// logs of earlier versions may have weather of airports which were never saved
+				log.warning("Ignoring a log record the repository rejects: " + e.getMessage());
+			}
+			break;
+		default:
+			log.warning("Ignoring a log record of unknown type " + type);
+		}
+	}
+
+	/**
+	 * Writes a snapshot now and truncates the log.
+	 */
+	public void snapshot() throws IOException {
+		long start = System.nanoTime();
+		wal.snapshot(sink -> {
+			// mutations appended before the switch to the new segment are applied once their lock is free
+			for (Object stripe : stripes) {
+				synchronized (stripe) {
+				}
+			}
+			for (Airport airport : delegate.getAirports()) {
+				sink.write(SAVE_AIRPORT, gson.toJson(airport).getBytes(StandardCharsets.UTF_8));
+			}
+			for (String iataCode : weatherCodes) {
+				AtmosphericInformation ai = delegate.getAtmosphericInformationByIataCode(iataCode);
+				for (DataPoint dataPoint : Arrays.asList(ai.getTemperature(), ai.getWind(), ai.getHumidity(),
+						ai.getPrecipitation(), ai.getPressure(), ai.getCloudCover())) {
+					if (dataPoint != null) {
+						// the time of the type, replay ignores later records older than the stored point
+						WeatherUpdate update = weatherUpdate(iataCode, dataPoint, ai.getDataPointTime(dataPoint.getType()));
+						sink.write(weatherRecordType(update), weatherRecord(update));
+					}
+				}
+			}
+		});
+		log.info("Wrote a snapshot in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+	}
+
+	/**
+	 * Waits until all mutations applied so far are on disk.
+	 */
+	public void sync() throws IOException {
+		wal.sync();
+	}
+
+	/**
+	 * Stops writing snapshots and writes the remaining log.
+	 */
+	@Override
+	public void close() throws IOException {
+		snapshots.shutdownNow();
+		wal.close();
+	}
+
+	private static WeatherUpdate weatherUpdate(String iataCode, DataPoint dataPoint, long updateTime) {
+		return new WeatherUpdate.Builder().withIata(iataCode).withDataPoint(dataPoint).withTimestamp(updateTime).build();
+	}
+
+	private static byte weatherRecordType(WeatherUpdate update) {
+		return WeatherRecords.isEncodable(update.getIata()) ? UPDATE_WEATHER : UPDATE_WEATHER_JSON;
+	}
+
+	private static byte[] weatherRecord(WeatherUpdate update) {
+		if (!WeatherRecords.isEncodable(update.getIata())) {
+			return gson.toJson(update).getBytes(StandardCharsets.UTF_8);
+		}
+		ByteBuffer record = ByteBuffer.allocate(WeatherRecords.RECORD_BYTES);
+		WeatherRecords.write(record, update);
+		return record.array();
+	}
+
+	private Object stripeOf(String iataCode) {
+		return stripes[(iataCode == null ? 0 : iataCode.hashCode()) & (STRIPES - 1)];
+	}
+
+	@Override
+	public void saveAirport(Airport airport) {
+		byte[] payload = gson.toJson(airport).getBytes(StandardCharsets.UTF_8);
+		synchronized (stripeOf(airport.getIataCode())) {
+			wal.append(SAVE_AIRPORT, payload);
+			delegate.saveAirport(airport);
+		}
+	}
+
+	@Override
+	public void deleteAirport(String iata) {
+		synchronized (stripeOf(iata)) {
+			if (iata != null) {
+				wal.append(DELETE_AIRPORT, iata.getBytes(StandardCharsets.UTF_8));
+			}
+			delegate.deleteAirport(iata);
+		}
+	}
+
+	@Override
+	public void updateAtmosphericInformation(String iataCode, DataPoint dataPoint) {
+		updateAtmosphericInformation(iataCode, dataPoint, System.currentTimeMillis());
+	}
+
+	@Override
+	public void updateAtmosphericInformation(String iataCode, DataPoint dataPoint, long updateTime) {
+		// validates the data point before anything is logged
+		if (dataPoint.getType() == null) {
+			throw new IllegalArgumentException("Data point type is missing");
+		}
+		dataPoint.getType().validate(dataPoint);
+		WeatherUpdate update = weatherUpdate(iataCode, dataPoint, updateTime);
+		byte[] record = weatherRecord(update);
+		synchronized (stripeOf(iataCode)) {
+			wal.append(weatherRecordType(update), record);
+			// a record the delegate still rejects, such as weather of an unknown airport, is skipped on replay
+			delegate.updateAtmosphericInformation(iataCode, dataPoint, updateTime);
+			weatherCodes.add(iataCode);
+		}
+	}
+
+	@Override
+	public Airport getAirport(String iataCode) {
+		return delegate.getAirport(iataCode);
+	}
+
+	@Override
+	public boolean airportExists(String iataCode) {
+		return delegate.airportExists(iataCode);
+	}
+
+	@Override
+	public Collection<Airport> getAirports() {
+		return delegate.getAirports();
+	}
+
+	@Override
+	public long getCatalogVersion() {
+		return delegate.getCatalogVersion();
+	}
+
+	@Override
+	public long getCatalogLastModified() {
+		return delegate.getCatalogLastModified();
+	}
+
+	@Override
+	public Collection<Airport> getAirportsAround(Airport airport, double radius) {
+		return delegate.getAirportsAround(airport, radius);
+	}
+
+	@Override
+	public Collection<AtmosphericInformation> getAllAtmosphericInformation() {
+		return delegate.getAllAtmosphericInformation();
+	}
+
+	@Override
+	public Map<String, Long> getRequestCounts() {
+		return delegate.getRequestCounts();
+	}
+
+	@Override
+	public long[] getRadiusHistogram() {
+		return delegate.getRadiusHistogram();
+	}
+
+	@Override
+	public AtmosphericInformation getAtmosphericInformationByIataCode(String iataCode) {
+		return delegate.getAtmosphericInformationByIataCode(iataCode);
+	}
+
+	@Override
+	public long getAtmosphericInformationVersion(String iataCode) {
+		return delegate.getAtmosphericInformationVersion(iataCode);
+	}
+
+	@Override
+	public long getAtmosphericInformationLastUpdateTime(String iataCode) {
+		return delegate.getAtmosphericInformationLastUpdateTime(iataCode);
+	}
+
+	@Override
+	public long getDataSize() {
+		return delegate.getDataSize();
+	}
+
+	@Override
+	public long getRequestCount(String iataCode) {
+		return delegate.getRequestCount(iataCode);
+	}
+
+	@Override
+	public void incrementRequestCount(String iataCode) {
+		delegate.incrementRequestCount(iataCode);
+	}
+
+	@Override
+	public void incrementRadiusCount(double radius) {
+		delegate.incrementRadiusCount(radius);
+	}
+}
@@ -0,0 +1,58 @@
+package com.crossover.trial.weather.server.data;
+
+import com.crossover.trial.weather.model.Airport;
+
+/**
+ * Great-circle distance helpers shared by the repository and the REST layer.
+ */
+public final class GeoDistance {
+
+	public static final double EARTH_RADIUS_KM = 6372.8;
+
+	private GeoDistance() {
+	}
+
+	/**
+	 * Haversine distance between two airports.
+	 *
+	 * @param ad1
+	 *            airport 1
+	 * @param ad2
+	 *            airport 2
+	 * @return the distance in KM
+	 */
+	public static double calculateDistance(Airport ad1, Airport ad2) {
+		return calculateDistance(ad1.getLatitude(), ad1.getLongitude(), ad2.getLatitude(), ad2.getLongitude());
+	}
+
+	/**
+	 * Haversine distance between two points given in degrees.
+	 *
+	 * @return the distance in KM
+	 */
+	public static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
+		double deltaLat = Math.toRadians(lat2 - lat1);
+		double deltaLon = Math.toRadians(lon2 - lon1);
+		double sinLat = Math.sin(deltaLat / 2);
+		double sinLon = Math.sin(deltaLon / 2);
+		double a = sinLat * sinLat + sinLon * sinLon * Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2));
+		return distanceOfHaversine(a);
+	}
+
+	/**
+	 * @param a
+	 *            the haversine of the central angle between two points
+	 * @return the distance in KM
+	 */
+	static double distanceOfHaversine(double a) {
+		double c = 2 * Math.asin(Math.sqrt(Math.min(1.0, a)));
+		return EARTH_RADIUS_KM * c;
+	}
+
+	/**
+	 * @return true if the coordinates are finite and inside [-90, 90] x [-180, 180]
+	 */
+	public static boolean isValidCoordinate(double latitude, double longitude) {
+		return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+	}
+}
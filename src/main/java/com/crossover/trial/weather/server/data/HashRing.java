@@ -0,0 +1,124 @@
+package com.crossover.trial.weather.server.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Consistent hash ring assigning keys, such as IATA codes, to nodes. Every
+ * node is placed at many points of the ring (virtual nodes) and a key belongs
+ * to the node of the first point at or after the key's hash, wrapping around.
+ * Adding or removing a node only moves the keys of its points, about
+ * {@code 1 / nodes} of all keys, and the virtual nodes keep the share of
+ * every node close to even.
+ *
+ * The placement only depends on the node names, so every process building a
+ * ring of the same names agrees on the owner of a key.
+ */
+public final class HashRing<T> {
+
+	public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final List<T> nodes;
+
+	/** sorted hashes of the points */
+	private final long[] points;
+
+	/** node of the point at the same index */
+	private final int[] owners;
+
+	/**
+	 * @param nodes
+	 *            the nodes, with distinct names
+	 * @param virtualNodes
+	 *            points per node
+	 * @param name
+	 *            the name of a node, which places it on the ring
+	 * @throws IllegalArgumentException
+	 *             if there are no nodes or two have the same name
+	 */
+	public HashRing(List<T> nodes, int virtualNodes, Function<? super T, String> name) {
+		if (nodes.isEmpty() || virtualNodes < 1) {
+			throw new IllegalArgumentException("A ring needs nodes and virtual nodes but had " + nodes.size()
+					+ " and " + virtualNodes);
+		}
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+		// a tree map resolves the rare colliding points the same way in every process
+		TreeMap<Long, Integer> ring = new TreeMap<>();
+		for (int node = 0; node < nodes.size(); node++) {
+			String nodeName = name.apply(nodes.get(node));
+			for (int i = 0; i < node; i++) {
+				if (nodeName.equals(name.apply(nodes.get(i)))) {
+					throw new IllegalArgumentException("Node names must be distinct: " + nodeName);
+				}
+			}
+			for (int point = 0; point < virtualNodes; point++) {
+				long hash = hash(nodeName + "#" + point);
+				Integer owner = ring.get(hash);
+				if (owner == null || nodeName.compareTo(name.apply(nodes.get(owner))) < 0) {
+					ring.put(hash, node);
+				}
+			}
+		}
+		this.points = new long[ring.size()];
+		this.owners = new int[ring.size()];
+		int index = 0;
+		for (Map.Entry<Long, Integer> point : ring.entrySet()) {
+			points[index] = point.getKey();
+			owners[index] = point.getValue();
+			index++;
+		}
+	}
+
+	/**
+	 * A ring of nodes which are their own names.
+	 */
+	public static HashRing<String> of(List<String> names) {
+		return new HashRing<>(names, DEFAULT_VIRTUAL_NODES, Function.identity());
+	}
+
+	/**
+	 * @return the node owning the key
+	 */
+	public T nodeOf(String key) {
+		return nodes.get(indexOf(key));
+	}
+
+	/**
+	 * @return the position of the node owning the key in {@link #getNodes()}
+	 */
+	public int indexOf(String key) {
+		int point = Arrays.binarySearch(points, hash(key));
+		if (point < 0) {
+			point = -point - 1;
+		}
+		return owners[point == points.length ? 0 : point];
+	}
+
+	public List<T> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * 64 bit FNV-1a of the UTF-8 bytes, followed by the MurmurHash3 finalizer
+	 * since FNV alone spreads short keys like IATA codes poorly.
+	 */
+	static long hash(String key) {
+		long hash = FNV_OFFSET_BASIS;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+		}
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+}
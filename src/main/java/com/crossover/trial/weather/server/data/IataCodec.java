@@ -0,0 +1,45 @@
+package com.crossover.trial.weather.server.data;
+
+/**
+ * Maps three letter IATA codes to dense integers in {@code [0, CAPACITY)}, so
+ * per airport data can be kept in arrays instead of hash maps.
+ */
+public final class IataCodec {
+
+	private static final int LETTERS = 26;
+
+	/** number of distinct three letter codes */
+	public static final int CAPACITY = LETTERS * LETTERS * LETTERS;
+
+	/** returned by {@link #encode(String)} for codes which are not three uppercase letters */
+	public static final int INVALID = -1;
+
+	private IataCodec() {
+	}
+
+	/**
+	 * @return the dense code of the IATA code or {@link #INVALID} if it is not
+	 *         made of three uppercase letters
+	 */
+	public static int encode(String iataCode) {
+		if (iataCode == null || iataCode.length() != 3) {
+			return INVALID;
+		}
+		int first = iataCode.charAt(0) - 'A';
+		int second = iataCode.charAt(1) - 'A';
+		int third = iataCode.charAt(2) - 'A';
+		if ((first | second | third) < 0 || first >= LETTERS || second >= LETTERS || third >= LETTERS) {
+			return INVALID;
+		}
+		return (first * LETTERS + second) * LETTERS + third;
+	}
+
+	public static String decode(int code) {
+		if (code < 0 || code >= CAPACITY) {
+			throw new IllegalArgumentException("Not a valid IATA code: " + code);
+		}
+		char[] letters = { (char) ('A' + code / (LETTERS * LETTERS)), (char) ('A' + code / LETTERS % LETTERS),
+				(char) ('A' + code % LETTERS) };
+		return new String(letters);
+	}
+}
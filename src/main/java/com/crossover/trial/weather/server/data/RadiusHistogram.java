@@ -0,0 +1,61 @@
+package com.crossover.trial.weather.server.data;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming histogram of requested radii with a fixed number of buckets.
+ * Bucket {@code i} counts radii in {@code [i * BUCKET_WIDTH_KM, (i + 1) * BUCKET_WIDTH_KM)},
+ * the last bucket also collects everything beyond the covered range. Memory and
+ * read cost are constant regardless of how many distinct radii are recorded.
+ */
+public class RadiusHistogram {
+
+	/** width of a single bucket in km */
+	public static final double BUCKET_WIDTH_KM = 10;
+
+	/** 100 buckets covering 0 - 1000 km and one overflow bucket */
+	public static final int BUCKET_COUNT = 101;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+	public RadiusHistogram() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(double radius) {
+		buckets[bucketOf(radius)].increment();
+	}
+
+	/**
+	 * @return the bucket counts, a copy of length {@link #BUCKET_COUNT}
+	 */
+	public long[] snapshot() {
+		long[] counts = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets[i].sum();
+		}
+		return counts;
+	}
+
+	/**
+	 * Adds bucket counts taken from another histogram, e.g. from another node.
+	 */
+	public void merge(long[] counts) {
+		if (counts.length != BUCKET_COUNT) {
+			throw new IllegalArgumentException("Expected " + BUCKET_COUNT + " buckets but got " + counts.length);
+		}
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i].add(counts[i]);
+		}
+	}
+
+	static int bucketOf(double radius) {
+		if (!(radius > 0)) {
+			return 0;
+		}
+		double bucket = radius / BUCKET_WIDTH_KM;
+		return bucket >= BUCKET_COUNT - 1 ? BUCKET_COUNT - 1 : (int) bucket;
+	}
+}
@@ -0,0 +1,132 @@
+package com.crossover.trial.weather.server.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts keys updated within a sliding time window without scanning them.
+ * Updates are kept in a ring of fixed time buckets (a simple timer wheel), each
+ * key is counted in the bucket of its latest update only. Reading sums the
+ * buckets still in the window, so it depends on the resolution of the window,
+ * not on the number of keys. The window is accurate to one bucket.
+ *
+ * Recording never blocks: the latest update per key lives in a concurrent map
+ * and every slot of the wheel is a single atomic word holding its bucket and
+ * count, which a writer of a newer bucket resets with a CAS. The moves of a
+ * key between buckets commute, so the count is exact again once concurrent
+ * updates of the same key have returned.
+ */
+public class RecentUpdateCounter {
+
+	private final long bucketMillis;
+
+	/** per slot the bucket number in the high and a signed count in the low 32 bits */
+	private final AtomicLongArray slots;
+
+	private final ConcurrentMap<String, Long> lastUpdates = new ConcurrentHashMap<>();
+
+	/**
+	 * @param windowMillis
+	 *            length of the window
+	 * @param bucketMillis
+	 *            resolution of the window
+	 */
+	public RecentUpdateCounter(long windowMillis, long bucketMillis) {
+		this.bucketMillis = bucketMillis;
+		this.slots = new AtomicLongArray((int) (windowMillis / bucketMillis));
+	}
+
+	/**
+	 * Records an update of the key at the given time. An update older than the
+	 * latest recorded one for the same key is ignored.
+	 */
+	public void record(String key, long time) {
+		while (true) {
+			Long previous = lastUpdates.get(key);
+			if (previous == null) {
+				if (lastUpdates.putIfAbsent(key, time) == null) {
+					add(bucketOf(time), 1);
+					return;
+				}
+			} else if (previous >= time) {
+				return;
+			} else if (lastUpdates.replace(key, previous, time)) {
+				int previousBucket = bucketOf(previous);
+				int bucket = bucketOf(time);
+				if (previousBucket != bucket) {
+					add(previousBucket, -1);
+					add(bucket, 1);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Stops counting the key, e.g. when its data is removed.
+	 */
+	public void remove(String key) {
+		Long previous = lastUpdates.remove(key);
+		if (previous != null) {
+			add(bucketOf(previous), -1);
+		}
+	}
+
+	/**
+	 * @return the number of keys updated within the window ending at the given time
+	 */
+	public long count(long now) {
+		int newest = bucketOf(now);
+		long total = 0;
+		for (int i = 0; i < slots.length(); i++) {
+			long slot = slots.get(i);
+			int age = newest - bucketOfSlot(slot);
+			if (age >= 0 && age < slots.length()) {
+				total += countOf(slot);
+			}
+		}
+		// a decrement may briefly run ahead of its increment
+		return Math.max(0, total);
+	}
+
+	/**
+	 * Adds to the count of the bucket, resetting its slot if it still holds
+	 * an older bucket, which is out of the window. A bucket whose slot already
+	 * holds a newer one is out of the window itself and left alone.
+	 */
+	private void add(int bucket, int delta) {
+		int index = Math.floorMod(bucket, slots.length());
+		while (true) {
+			long slot = slots.get(index);
+			int age = bucket - bucketOfSlot(slot);
+			long updated;
+			if (age == 0) {
+				updated = pack(bucket, countOf(slot) + delta);
+			} else if (age > 0) {
+				updated = pack(bucket, delta);
+			} else {
+				return;
+			}
+			if (slots.compareAndSet(index, slot, updated)) {
+				return;
+			}
+		}
+	}
+
+	private int bucketOf(long time) {
+		return (int) Math.floorDiv(time, bucketMillis);
+	}
+
+	private static long pack(int bucket, int count) {
+		return ((long) bucket << 32) | (count & 0xffffffffL);
+	}
+
+	private static int bucketOfSlot(long slot) {
+		return (int) (slot >>> 32);
+	}
+
+	private static int countOf(long slot) {
+		return (int) slot;
+	}
+}
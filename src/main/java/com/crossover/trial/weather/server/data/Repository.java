@@ -5,6 +5,7 @@ import java.util.Map;
 
 import com.crossover.trial.weather.model.Airport;
 import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
 
 public interface Repository {
 
@@ -18,20 +19,97 @@ public interface Repository {
 
 	Collection<Airport> getAirports();
 
+	/**
+	 * @return a counter incremented on every change of the airport catalog,
+	 *         read it before the catalog to never attribute older content to
+	 *         a newer version
+	 */
+	long getCatalogVersion();
+
+	/**
+	 * @return the time in millis of the latest change of the airport catalog
+	 */
+	long getCatalogLastModified();
+
+	/**
+	 * Finds airports located within the given radius around the airport.
+	 * 
+	 * @param airport
+	 *            the airport in the middle of the searched area
+	 * @param radius
+	 *            the radius in km
+	 * @return airports within the radius, including the given airport
+	 */
+	Collection<Airport> getAirportsAround(Airport airport, double radius);
+
 	Collection<AtmosphericInformation> getAllAtmosphericInformation();
 
-	Map<String, Integer> getRequestCounts();
+	/**
+	 * @return a point-in-time copy of the request counters per IATA code
+	 */
+	Map<String, Long> getRequestCounts();
 
-	Map<Double, Integer> getRadiusCounts();
+	/**
+	 * @return a point-in-time copy of the requested radius histogram buckets,
+	 *         see {@link RadiusHistogram}
+	 */
+	long[] getRadiusHistogram();
 
 	AtmosphericInformation getAtmosphericInformationByIataCode(String iataCode);
 
-	int getRequestCount(String iataCode);
+	/**
+	 * Same as the version of {@link #getAtmosphericInformationByIataCode(String)}
+	 * without materializing the atmospheric information.
+	 *
+	 * @return the version, 0 if there is no atmospheric information
+	 */
+	long getAtmosphericInformationVersion(String iataCode);
+
+	/**
+	 * Same as the lastUpdateTime of
+	 * {@link #getAtmosphericInformationByIataCode(String)} without
+	 * materializing the atmospheric information.
+	 *
+	 * @return the time in millis, 0 if there is no atmospheric information
+	 */
+	long getAtmosphericInformationLastUpdateTime(String iataCode);
+
+	/**
+	 * Applies the data point to the airport's atmospheric information and marks
+	 * it as updated now.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the data point is not valid
+	 */
+	void updateAtmosphericInformation(String iataCode, DataPoint dataPoint);
+
+	/**
+	 * Same as {@link #updateAtmosphericInformation(String, DataPoint)} but marks
+	 * the information as updated at the given time. A data point older than
+	 * the stored one of its type is ignored and the last update time never
+	 * goes backwards.
+	 *
+	 * @param updateTime
+	 *            the time in millis
+	 */
+	void updateAtmosphericInformation(String iataCode, DataPoint dataPoint, long updateTime);
+
+	/**
+	 * @return the number of airports with atmospheric information updated
+	 *         within the last day
+	 */
+	long getDataSize();
 
-	void updateRequestCount(String iataCode, int count);
+	long getRequestCount(String iataCode);
 
-	void updateRadiusCount(Double radius, int count);
+	/**
+	 * Atomically increments the number of weather requests for the airport.
+	 */
+	void incrementRequestCount(String iataCode);
 
-	int getRadiusCount(Double radius);
+	/**
+	 * Records a weather request for the radius in the radius histogram.
+	 */
+	void incrementRadiusCount(double radius);
 	
 }
@@ -0,0 +1,437 @@
+package com.crossover.trial.weather.server.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of typed binary records in a directory, with snapshots.
+ *
+ * Appends only enqueue the record. A single writer thread drains whatever
+ * has been enqueued meanwhile, writes it with one {@link FileChannel} write
+ * and forces it to disk once for the whole batch (group commit), so callers
+ * never wait for the disk. An append returns before its record is durable: a
+ * crash loses every record still queued or being written, up to
+ * {@link #QUEUE_CAPACITY} (65536) acknowledged records plus the batch in progress.
+ * Callers needing durability wait for {@link #sync()}.
+ *
+ * The log is split into numbered segments. A snapshot is written after
+ * switching to a new segment and records the number of that segment, so the
+ * state is the snapshot followed by the replay of that and all later
+ * segments; older segments are deleted. Every record is framed as
+ * {@code length, type, payload, crc32} and replay stops at the first torn or
+ * corrupt record of a segment.
+ */
+public class WriteAheadLog implements Closeable {
+
+	private static final Logger log = Logger.getLogger(WriteAheadLog.class.getName());
+
+	/** consumer of replayed records, the payload is only valid during the call */
+	@FunctionalInterface
+	public interface RecordHandler {
+		void handle(byte type, ByteBuffer payload);
+	}
+
+	@FunctionalInterface
+	public interface RecordSink {
+		void write(byte type, byte[] payload) throws IOException;
+	}
+
+	/** writes the complete state as records */
+	@FunctionalInterface
+	public interface SnapshotWriter {
+		void writeTo(RecordSink sink) throws IOException;
+	}
+
+	private static final String SNAPSHOT = "snapshot.dat";
+
+	private static final String SEGMENT_PREFIX = "wal-";
+
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	/** length and type */
+	private static final int HEADER_BYTES = 5;
+
+	private static final int CRC_BYTES = 4;
+
+	private static final int BUFFER_BYTES = 1 << 20;
+
+	/** the largest payload a frame fits in the write buffer */
+	private static final int MAX_PAYLOAD_BYTES = BUFFER_BYTES - HEADER_BYTES - CRC_BYTES;
+
+	/** records enqueued beyond this block the appending thread */
+	private static final int QUEUE_CAPACITY = 1 << 16;
+
+	/** enqueued by close(), the writer stops after writing everything before */
+	private static final Object STOP = new Object();
+
+	private final Path directory;
+
+	/** {@link Record}s and {@link Barrier}s in append order */
+	private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+	private final Thread writer;
+
+	/** accessed by the writer thread only, after opening */
+	private FileChannel channel;
+
+	private long segment;
+
+	private volatile IOException failure;
+
+	private volatile boolean closed;
+
+	/** set by the writer before it fails the entries enqueued after it stopped */
+	private volatile boolean writerStopped;
+
+	private WriteAheadLog(Path directory, long segment) throws IOException {
+		this.directory = directory;
+		this.segment = segment;
+		this.channel = openSegment(segment);
+		this.writer = new Thread(this::writeLoop, "write-ahead-log");
+		this.writer.setDaemon(true);
+	}
+
+	/**
+	 * Replays the latest snapshot and the log behind it and opens the log for
+	 * appending in a new segment.
+	 *
+	 * @param directory
+	 *            the log directory, created if missing
+	 * @param handler
+	 *            receives every recovered record in order
+	 */
+	public static WriteAheadLog open(Path directory, RecordHandler handler) throws IOException {
+		Files.createDirectories(directory);
+		Files.deleteIfExists(directory.resolve(SNAPSHOT + ".tmp"));
+
+		long firstSegment = 0;
+		Path snapshot = directory.resolve(SNAPSHOT);
+		if (Files.exists(snapshot)) {
+			firstSegment = replay(snapshot, Long.BYTES, handler).getLong(0);
+		}
+		long lastSegment = firstSegment - 1;
+		for (Map.Entry<Long, Path> entry : segments(directory).entrySet()) {
+			if (entry.getKey() >= firstSegment) {
+				replay(entry.getValue(), 0, handler);
+				lastSegment = entry.getKey();
+			}
+		}
+
+		// a torn tail stays where it is, appending continues in a fresh segment
+		WriteAheadLog wal = new WriteAheadLog(directory, lastSegment + 1);
+		wal.writer.start();
+		return wal;
+	}
+
+	/**
+	 * Enqueues the record, it is written to disk asynchronously.
+	 *
+	 * @throws UncheckedIOException
+	 *             if the log failed to write earlier records
+	 * @throws IllegalStateException
+	 *             if the log is closed
+	 * @throws IllegalArgumentException
+	 *             if the record does not fit a write buffer, it is rejected
+	 *             here since the writer would fail the whole log on it
+	 */
+	public void append(byte type, byte[] payload) {
+		checkOpen();
+		if (payload.length > MAX_PAYLOAD_BYTES) {
+			throw new IllegalArgumentException("Record of " + payload.length + " bytes is too large for the log");
+		}
+		try {
+			queue.put(new Record(type, payload));
+			if (writerStopped) {
+				throw new IllegalStateException("The log is closed");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while appending to the log", e);
+		}
+	}
+
+	/**
+	 * Waits until all records appended before are on disk.
+	 */
+	public void sync() throws IOException {
+		await(new Barrier(false));
+	}
+
+	/**
+	 * Writes a snapshot of the state and deletes the log it covers. Appends
+	 * may continue while the snapshot is written, records appended after the
+	 * switch to the new segment are replayed on top of it, so the snapshot
+	 * only needs to be consistent per record key.
+	 */
+	public void snapshot(SnapshotWriter contents) throws IOException {
+		long firstSegment = await(new Barrier(true));
+
+		Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+		try (FileChannel output = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			buffer.putLong(firstSegment);
+			CRC32 crc = new CRC32();
+			contents.writeTo((type, payload) -> frame(output, buffer, crc, type, payload));
+			drain(output, buffer);
+			output.force(true);
+		}
+		Files.move(temporary, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+
+		for (Map.Entry<Long, Path> entry : segments(directory).entrySet()) {
+			if (entry.getKey() < firstSegment) {
+				Files.delete(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Writes all appended records and stops the writer.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			queue.put(STOP);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing the log", e);
+		} finally {
+			channel.close();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("The log is closed");
+		}
+		if (failure != null) {
+			throw new UncheckedIOException("The log failed", failure);
+		}
+	}
+
+	/** @return the segment current after the barrier */
+	private long await(Barrier barrier) throws IOException {
+		checkOpen();
+		try {
+			queue.put(barrier);
+			if (writerStopped) {
+				// enqueued behind STOP by a racing close(), the writer may have missed it
+				barrier.done.completeExceptionally(new IOException("The log is closed"));
+			}
+			return barrier.done.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the log", e);
+		} catch (ExecutionException e) {
+			throw new IOException("The log failed", e.getCause());
+		}
+	}
+
+	private void writeLoop() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+		CRC32 crc = new CRC32();
+		List<Object> batch = new ArrayList<>();
+		boolean stopped = false;
+		while (!stopped) {
+			try {
+				batch.add(queue.take());
+				queue.drainTo(batch);
+			} catch (InterruptedException e) {
+				// only close() may stop the writer
+				continue;
+			}
+			try {
+				if (failure != null) {
+					throw failure;
+				}
+				for (Object entry : batch) {
+					if (entry instanceof Record) {
+						Record record = (Record) entry;
+						frame(channel, buffer, crc, record.type, record.payload);
+					} else if (entry instanceof Barrier) {
+						drain(channel, buffer);
+						channel.force(false);
+						Barrier barrier = (Barrier) entry;
+						if (barrier.rotate) {
+							channel.close();
+							segment++;
+							channel = openSegment(segment);
+						}
+						barrier.done.complete(segment);
+					}
+				}
+				drain(channel, buffer);
+				channel.force(false);
+			} catch (IOException e) {
+				if (failure == null) {
+					log.log(Level.SEVERE, "Failed to write the log, further appends are rejected", e);
+					failure = e;
+				}
+				for (Object entry : batch) {
+					if (entry instanceof Barrier) {
+						((Barrier) entry).done.completeExceptionally(e);
+					}
+				}
+				buffer.clear();
+			}
+			stopped = batch.contains(STOP);
+			batch.clear();
+		}
+		writerStopped = true;
+		rejectQueued();
+	}
+
+	/** fails the barriers and drops the records enqueued after STOP */
+	private void rejectQueued() {
+		List<Object> late = new ArrayList<>();
+		queue.drainTo(late);
+		IOException closedLog = new IOException("The log is closed");
+		int dropped = 0;
+		for (Object entry : late) {
+			if (entry instanceof Barrier) {
+				((Barrier) entry).done.completeExceptionally(closedLog);
+			} else if (entry instanceof Record) {
+				dropped++;
+			}
+		}
+		if (dropped > 0) {
+			log.warning("Dropped " + dropped + " records appended while the log was closing");
+		}
+	}
+
+	private FileChannel openSegment(long number) throws IOException {
+		return FileChannel.open(directory.resolve(String.format("%s%016x%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX)),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/** @return the segments of the directory by number */
+	private static TreeMap<Long, Path> segments(Path directory) throws IOException {
+		TreeMap<Long, Path> segments = new TreeMap<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				try {
+					segments.put(Long.parseUnsignedLong(
+							name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()), 16), file);
+				} catch (NumberFormatException e) {
+					log.warning("Ignoring unexpected file in the log directory: " + file);
+				}
+			}
+		}
+		return segments;
+	}
+
+	private static void frame(FileChannel output, ByteBuffer buffer, CRC32 crc, byte type, byte[] payload)
+			throws IOException {
+		int size = HEADER_BYTES + payload.length + CRC_BYTES;
+		if (buffer.remaining() < size) {
+			drain(output, buffer);
+			if (buffer.remaining() < size) {
+				throw new IOException("Record of " + payload.length + " bytes is too large for the log");
+			}
+		}
+		crc.reset();
+		crc.update(type);
+		crc.update(payload, 0, payload.length);
+		buffer.putInt(payload.length).put(type).put(payload).putInt((int) crc.getValue());
+	}
+
+	private static void drain(FileChannel output, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			output.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Replays the records of the file after the given offset.
+	 *
+	 * @return the mapped file
+	 */
+	private static MappedByteBuffer replay(Path file, int offset, RecordHandler handler) throws IOException {
+		try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer content = input.map(FileChannel.MapMode.READ_ONLY, 0, input.size());
+			CRC32 crc = new CRC32();
+			int position = offset;
+			int records = 0;
+			while (content.limit() - position >= HEADER_BYTES + CRC_BYTES) {
+				int length = content.getInt(position);
+				if (length < 0 || length > content.limit() - position - HEADER_BYTES - CRC_BYTES) {
+					break;
+				}
+				byte type = content.get(position + 4);
+				ByteBuffer payload = content.duplicate();
+				payload.limit(position + HEADER_BYTES + length).position(position + HEADER_BYTES);
+				crc.reset();
+				crc.update(type);
+				crc.update(payload.duplicate());
+				if ((int) crc.getValue() != content.getInt(position + HEADER_BYTES + length)) {
+					break;
+				}
+				handler.handle(type, payload.slice());
+				position += HEADER_BYTES + length + CRC_BYTES;
+				records++;
+			}
+			if (position != content.limit()) {
+				log.warning("Ignoring " + (content.limit() - position) + " torn or corrupt bytes at the end of " + file);
+			}
+			log.info("Replayed " + records + " records of " + file);
+			return content;
+		}
+	}
+
+	private static final class Record {
+
+		private final byte type;
+
+		private final byte[] payload;
+
+		private Record(byte type, byte[] payload) {
+			this.type = type;
+			this.payload = payload;
+		}
+	}
+
+	/** completed once the records before are on disk */
+	private static final class Barrier {
+
+		/** switch to the next segment */
+		private final boolean rotate;
+
+		private final CompletableFuture<Long> done = new CompletableFuture<>();
+
+		private Barrier(boolean rotate) {
+			this.rotate = rotate;
+		}
+	}
+}
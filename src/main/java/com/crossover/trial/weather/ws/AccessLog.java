@@ -0,0 +1,228 @@
+package com.crossover.trial.weather.ws;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Access log which keeps formatting and I/O off the request threads. A
+ * request only decides whether it is logged and copies a few fields into a
+ * preallocated slot of a bounded ring buffer; a background thread formats the
+ * records as lines like
+ *
+ * <pre>
+ * 2016-03-01T10:15:30.123Z GET /airports/BOS/weather/0 200 1.234ms
+ * </pre>
+ *
+ * and writes them in batches. If the writer falls behind and the buffer is
+ * full, records are dropped and counted instead of blocking the request.
+ *
+ * Requests are sampled at a fixed rate, error responses (4xx and 5xx) and
+ * requests slower than a threshold are always logged.
+ *
+ * The buffer takes many producers and one consumer: a producer claims a slot
+ * by a compare-and-set of the tail, and publishes it by advancing the slot's
+ * sequence, which the writer waits for before reading the slot.
+ */
+public class AccessLog implements Closeable {
+
+	private static final Logger log = Logger.getLogger(AccessLog.class.getName());
+
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/** how long the writer sleeps when the buffer is empty */
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final Writer out;
+
+	private final double sampleRate;
+
+	private final long slowNanos;
+
+	private final int mask;
+
+	/** sequence of every slot, equal to the position it can be claimed at and one more once it is published */
+	private final AtomicLongArray sequences;
+
+	private final long[] times;
+
+	private final long[] durations;
+
+	private final int[] statuses;
+
+	private final String[] methods;
+
+	private final URI[] uris;
+
+	private final AtomicLong tail = new AtomicLong();
+
+	/** only accessed by the writer */
+	private long head;
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final Thread writer;
+
+	private volatile boolean closed;
+
+	/**
+	 * @param out
+	 *            receives the lines, only written by the background thread
+	 * @param capacity
+	 *            records buffered for the writer, rounded up to a power of two
+	 * @param sampleRate
+	 *            fraction of the successful, fast requests which are logged
+	 * @param slowMillis
+	 *            requests taking at least this long are always logged
+	 */
+	public AccessLog(Writer out, int capacity, double sampleRate, long slowMillis) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive but was " + capacity);
+		}
+		if (!(sampleRate >= 0 && sampleRate <= 1)) {
+			throw new IllegalArgumentException("Sample rate must be in [0, 1] but was " + sampleRate);
+		}
+		int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.out = out;
+		this.sampleRate = sampleRate;
+		this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+		this.mask = size - 1;
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		this.times = new long[size];
+		this.durations = new long[size];
+		this.statuses = new int[size];
+		this.methods = new String[size];
+		this.uris = new URI[size];
+
+		this.writer = new Thread(this::drainUntilClosed, "access-log");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Logs the request if it is sampled, an error or slow. Never blocks.
+	 *
+	 * @return false if the request is not logged, because it was not sampled
+	 *         or the buffer is full
+	 */
+	public boolean log(String method, URI uri, int status, long durationNanos) {
+		if (status < 400 && durationNanos < slowNanos
+				&& (sampleRate == 0 || sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		while (true) {
+			long position = tail.get();
+			int slot = (int) position & mask;
+			long sequence = sequences.get(slot);
+			if (sequence == position) {
+				if (tail.compareAndSet(position, position + 1)) {
+					times[slot] = now;
+					durations[slot] = durationNanos;
+					statuses[slot] = status;
+					methods[slot] = method;
+					uris[slot] = uri;
+					sequences.lazySet(slot, position + 1);
+					return true;
+				}
+			} else if (sequence < position) {
+				// the slot of the previous round was not written yet
+				dropped.increment();
+				return false;
+			}
+			// another producer claimed the position, retry with the new tail
+		}
+	}
+
+	/** @return the number of records dropped because the buffer was full */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Stops the writer after it wrote the records logged so far and flushes the
+	 * output. The output is not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing the access log", e);
+		}
+	}
+
+	private void drainUntilClosed() {
+		long reportedDrops = 0;
+		StringBuilder line = new StringBuilder(128);
+		while (true) {
+			// read before draining, so nothing logged before close is missed
+			boolean last = closed;
+			try {
+				if (drain(line) > 0) {
+					out.flush();
+				}
+			} catch (IOException | RuntimeException e) {
+				log.log(Level.WARNING, "Failed to write the access log", e);
+			}
+			long drops = dropped.sum();
+			if (drops != reportedDrops) {
+				log.warning("Dropped " + (drops - reportedDrops) + " access log records, the writer is behind");
+				reportedDrops = drops;
+			}
+			if (last) {
+				return;
+			}
+			LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+		}
+	}
+
+	/** @return the number of records written */
+	private int drain(StringBuilder line) throws IOException {
+		int count = 0;
+		while (true) {
+			int slot = (int) head & mask;
+			if (sequences.get(slot) != head + 1) {
+				return count;
+			}
+			line.setLength(0);
+			line.append(Instant.ofEpochMilli(times[slot])).append(' ').append(methods[slot]).append(' ');
+			URI uri = uris[slot];
+			line.append(uri.getRawPath());
+			if (uri.getRawQuery() != null) {
+				line.append('?').append(uri.getRawQuery());
+			}
+			long micros = TimeUnit.NANOSECONDS.toMicros(durations[slot]);
+			line.append(' ').append(statuses[slot]).append(' ').append(micros / 1000).append('.');
+			long fraction = micros % 1000;
+			if (fraction < 100) {
+				line.append(fraction < 10 ? "00" : "0");
+			}
+			line.append(fraction).append("ms\n");
+			// the references are released before the slot is reused
+			methods[slot] = null;
+			uris[slot] = null;
+			sequences.lazySet(slot, head + mask + 1);
+			head++;
+
+			out.append(line);
+			count++;
+		}
+	}
+}
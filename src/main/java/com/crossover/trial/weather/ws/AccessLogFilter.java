@@ -0,0 +1,66 @@
+package com.crossover.trial.weather.ws;
+
+import java.io.IOException;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Hands every completed request to an {@link AccessLog}, including requests
+ * which did not match a resource. Like {@link MetricsFilter}, a response with
+ * an entity is only complete once the entity was written.
+ */
+@PreMatching
+public class AccessLogFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+	private static final String START_PROPERTY = AccessLogFilter.class.getName() + ".start";
+
+	private static final String REQUEST_PROPERTY = AccessLogFilter.class.getName() + ".request";
+
+	private static final String RESPONSE_PROPERTY = AccessLogFilter.class.getName() + ".response";
+
+	private final AccessLog accessLog;
+
+	public AccessLogFilter(AccessLog accessLog) {
+		this.accessLog = accessLog;
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext) {
+		requestContext.setProperty(START_PROPERTY, System.nanoTime());
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+		if (responseContext.hasEntity()) {
+			requestContext.setProperty(REQUEST_PROPERTY, requestContext);
+			requestContext.setProperty(RESPONSE_PROPERTY, responseContext);
+		} else {
+			complete(requestContext, responseContext);
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		try {
+			context.proceed();
+		} finally {
+			ContainerResponseContext responseContext = (ContainerResponseContext) context.getProperty(RESPONSE_PROPERTY);
+			if (responseContext != null) {
+				complete((ContainerRequestContext) context.getProperty(REQUEST_PROPERTY), responseContext);
+			}
+		}
+	}
+
+	private void complete(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+		Object start = requestContext.getProperty(START_PROPERTY);
+		long duration = start == null ? 0 : System.nanoTime() - (Long) start;
+		accessLog.log(requestContext.getMethod(), requestContext.getUriInfo().getRequestUri(),
+				responseContext.getStatus(), duration);
+	}
+}
@@ -1,15 +1,23 @@
 package com.crossover.trial.weather.ws;
 
+import java.io.InputStream;
+
 import javax.ws.rs.PathParam;
+import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.core.Response;
 
+import com.crossover.trial.weather.io.WeatherRecords;
 import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.WeatherUpdate;
 
 /**
  * Airports web-service endpoint.
  */
 public interface AirportsEndpoint {
 
+	/** media type of a body with one json object per line */
+	String JSON_LINES = "application/x-ndjson";
+
 	/**
 	 * A liveliness check for the collection endpoint.
 	 * 
@@ -18,11 +26,18 @@ public interface AirportsEndpoint {
 	Response ping();
 
 	/**
-	 * Returns a list of known airports 
+	 * Returns a list of known airports. The encoded list is cached until the
+	 * catalog changes and served with a strong ETag.
 	 *
-	 * @return HTTP Response 
+	 * @param ifNoneMatch
+	 *            the If-None-Match header, may be null
+	 * @param acceptEncoding
+	 *            the Accept-Encoding header, the list is sent gzipped if it
+	 *            allows gzip
+	 * @return HTTP Response with the list of IATA codes, or 304 Not Modified
+	 *         if the client has the current list already
 	 */
-	Response getAirports();
+	Response getAirports(String ifNoneMatch, String acceptEncoding);
 
 	/**
 	 * Retrieve airport data, including latitude and longitude for a particular
@@ -54,9 +69,31 @@ public interface AirportsEndpoint {
 	 *
 	 * @param airport
 	 *            JSON representation of {@link Airport}
-	 * @return HTTP 201 Created if Airport was added and HTTP 409 Conflict if Airport with specified iataCode already exists in system
+	 * @return HTTP 201 Created if Airport was added, HTTP 409 Conflict if Airport with specified iataCode already exists in system
+	 *         and HTTP 400 if it has no iataCode
 	 */
 	Response createAirport(String airport);
+
+	/**
+	 * Add many airports from a csv body in the OpenFlights airports.dat format.
+	 * Records are parsed and inserted while the body is streamed in, a quoted
+	 * field may contain line breaks. Every airport is validated like
+	 * {@link #createAirport(String)} and one whose iataCode already exists is
+	 * not replaced.
+	 *
+	 * @param airports
+	 *            the csv records
+	 * @return HTTP 200 with the number of created airports, the codes which
+	 *         conflicted with existing airports and the lines on which the
+	 *         rejected records start
+	 */
+	Response importAirportsCsv(InputStream airports);
+
+	/**
+	 * Same as {@link #importAirportsCsv(InputStream)} for a body with one JSON
+	 * representation of {@link Airport} per line.
+	 */
+	Response importAirportsJsonLines(InputStream airports);
 	
 	/**
 	 * Remove an airport from the known airport list
@@ -71,7 +108,9 @@ public interface AirportsEndpoint {
 	 * Retrieve health and status information for the the query api. Returns
 	 * information about how the number of datapoints currently held in memory,
 	 * the frequency of requests for each IATA code and the frequency of
-	 * requests for each radius.
+	 * requests for each radius. Radius frequencies are reported as a fixed
+	 * size histogram of 10 km wide buckets, the last bucket collects all
+	 * radii of 1000 km and more.
 	 *
 	 * @return a Response with health information.
 	 */
@@ -85,11 +124,27 @@ public interface AirportsEndpoint {
 	 *            the three letter airport code
 	 * @param radiusString
 	 *            the radius, in km, from which to collect weather data
+	 * @param ifNoneMatch
+	 *            the If-None-Match header, may be null
+	 * @param ifModifiedSince
+	 *            the If-Modified-Since header, may be null, ignored if
+	 *            If-None-Match is given
 	 *
 	 * @return an HTTP Response and a list of {@link AtmosphericInformation}
-	 *         from the requested airport and airports in the given radius
+	 *         from the requested airport and airports in the given radius,
+	 *         with an ETag derived from the versions of their information and
+	 *         the catalog, or 304 Not Modified if the client has the current
+	 *         list already
+	 */
+	Response getWeatherAround(String iata, String radiusString, String ifNoneMatch, String ifModifiedSince);
+
+	/**
+	 * Runs {@link #getWeatherAround(String, String, String, String)} on the
+	 * executor of the queries and resumes the response with its result, or
+	 * with 503 Service Unavailable if the executor is overloaded.
 	 */
-	Response getWeatherAround(String iata, String radiusString);
+	void getWeatherAround(AsyncResponse response, String iata, String radiusString, String ifNoneMatch,
+			String ifModifiedSince);
 	
 	/**
 	 * Update the airports atmospheric information for a particular pointType
@@ -106,4 +161,55 @@ public interface AirportsEndpoint {
 	 * @return HTTP Response code
 	 */
 	Response updateWeather(String iataCode, String dataPoint);
+
+	/**
+	 * Runs {@link #updateWeather(String, String)} on the executor of the
+	 * updates, which is separate from the one of the queries, and resumes the
+	 * response with its result, or with 503 Service Unavailable if the
+	 * executor is overloaded.
+	 */
+	void updateWeather(AsyncResponse response, String iataCode, String dataPoint);
+
+	/**
+	 * Update the atmospheric information of many airports at once. The body is
+	 * a json array of {@link WeatherUpdate} objects, e.g.
+	 * {@code [{"iata": "BOS", "dataPoint": {...}}, ...]}, which is read and
+	 * applied item by item while it is streamed in. Every item is validated
+	 * like a single update and fails on its own.
+	 *
+	 * @param updates
+	 *            the json array of updates
+	 *
+	 * @return HTTP 200 with the number of accepted and rejected items and a
+	 *         result per item, each with the status of the equivalent single
+	 *         update and an error message if it failed, or HTTP 400 if the body
+	 *         is not a json array; items before the malformed part are applied
+	 */
+	Response updateWeather(InputStream updates);
+
+	/**
+	 * Same as {@link #updateWeather(AsyncResponse, String, String)} for
+	 * {@link #updateWeather(InputStream)}.
+	 */
+	void updateWeather(AsyncResponse response, InputStream updates);
+
+	/**
+	 * Same as {@link #updateWeather(InputStream)} for a body of binary
+	 * records in the {@link WeatherRecords} format, which are decoded without
+	 * reflection. A record may carry the time its data point was collected.
+	 *
+	 * @param records
+	 *            the records
+	 *
+	 * @return HTTP 200 with the number of accepted and rejected records and
+	 *         the index and error message of every rejected one, or HTTP 400
+	 *         if the body ends within a record; records before it are applied
+	 */
+	Response updateWeatherRecords(InputStream records);
+
+	/**
+	 * Same as {@link #updateWeather(AsyncResponse, String, String)} for
+	 * {@link #updateWeatherRecords(InputStream)}.
+	 */
+	void updateWeatherRecords(AsyncResponse response, InputStream records);
 }
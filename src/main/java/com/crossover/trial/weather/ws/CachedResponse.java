@@ -0,0 +1,78 @@
+package com.crossover.trial.weather.ws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+/**
+ * An encoded response body for one version of the data it was built from,
+ * together with its gzipped form and entity tags. Immutable, so it can be
+ * shared by all requests until the version changes.
+ *
+ * The gzipped body is a different representation, so it has its own strong
+ * tag (RFC 7232 section 2.3.3) and a revalidation only matches the tag of the
+ * representation the request would get.
+ */
+final class CachedResponse {
+
+	private final long version;
+
+	private final String etag;
+
+	private final String gzipEtag;
+
+	private final byte[] identity;
+
+	private final byte[] gzip;
+
+	private CachedResponse(long version, String etag, byte[] identity, byte[] gzip) {
+		this.version = version;
+		this.etag = etag;
+		this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+		this.identity = identity;
+		this.gzip = gzip;
+	}
+
+	static CachedResponse of(long version, byte[] body) {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(body);
+		} catch (IOException e) {
+			// cannot happen for an in-memory stream
+			throw new UncheckedIOException(e);
+		}
+		return new CachedResponse(version, EntityTags.of(body), body, compressed.toByteArray());
+	}
+
+	long getVersion() {
+		return version;
+	}
+
+	/** @return the tag of the identity representation */
+	String getEtag() {
+		return etag;
+	}
+
+	/**
+	 * @return 304 if the client has the selected representation already,
+	 *         otherwise 200 with the body, gzipped if the client accepts it
+	 */
+	Response toResponse(String ifNoneMatch, String acceptEncoding) {
+		boolean gzipped = EntityTags.acceptsGzip(acceptEncoding);
+		String selectedEtag = gzipped ? gzipEtag : etag;
+		if (EntityTags.matches(ifNoneMatch, selectedEtag)) {
+			return Response.status(Response.Status.NOT_MODIFIED).header(HttpHeaders.ETAG, selectedEtag)
+					.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+		}
+		Response.ResponseBuilder response = Response.status(Response.Status.OK).header(HttpHeaders.ETAG, selectedEtag)
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (gzipped) {
+			return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").entity(gzip).build();
+		}
+		return response.entity(identity).build();
+	}
+}
@@ -0,0 +1,103 @@
+package com.crossover.trial.weather.ws;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Entity tag helpers for conditional requests.
+ */
+final class EntityTags {
+
+	/** bytes of the content digest used in a tag */
+	private static final int TAG_BYTES = 16;
+
+	private EntityTags() {
+	}
+
+	/**
+	 * @return a strong, quoted entity tag derived from the content, equal for
+	 *         equal content on every node and across restarts
+	 */
+	static String of(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+			return quote(Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, TAG_BYTES)));
+		} catch (NoSuchAlgorithmException e) {
+			// every JRE has to provide SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String quote(String value) {
+		return "\"" + value + "\"";
+	}
+
+	/**
+	 * Weak comparison of the If-None-Match header against the current tag.
+	 *
+	 * @param ifNoneMatch
+	 *            the header value, may be null
+	 * @param etag
+	 *            the quoted tag of the current representation
+	 * @return true if the client already has the current representation
+	 */
+	static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			String tag = candidate.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals("*") || tag.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Evaluates the If-Modified-Since header with the one second precision of
+	 * HTTP dates.
+	 *
+	 * @param ifModifiedSince
+	 *            the header value, may be null
+	 * @param lastModified
+	 *            the modification time in millis, 0 if unknown
+	 * @return true if the representation was not modified after the date, false
+	 *         if the header is missing or invalid or the time is unknown
+	 */
+	static boolean notModifiedSince(String ifModifiedSince, long lastModified) {
+		if (ifModifiedSince == null || lastModified <= 0) {
+			return false;
+		}
+		try {
+			long since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+			return lastModified / 1000 <= since;
+		} catch (DateTimeParseException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return true if the Accept-Encoding header allows gzip
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String candidate : acceptEncoding.split(",")) {
+			String[] parts = candidate.trim().split(";");
+			if (parts[0].trim().equalsIgnoreCase("gzip")) {
+				return !(parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?"));
+			}
+		}
+		return false;
+	}
+}
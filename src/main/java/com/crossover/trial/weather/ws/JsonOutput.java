@@ -0,0 +1,35 @@
+package com.crossover.trial.weather.ws;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A response body written straight into the response stream with a
+ * {@link JsonWriter}, so large responses are never held as a whole. The body
+ * runs when Jersey writes the response, after the resource method returned.
+ */
+@FunctionalInterface
+interface JsonOutput {
+
+	void writeTo(JsonWriter writer) throws IOException;
+
+	/**
+	 * @return the body as entity of a response, written with the settings of
+	 *         the given gson
+	 */
+	static StreamingOutput of(Gson gson, JsonOutput body) {
+		return output -> {
+			JsonWriter writer = gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+			body.writeTo(writer);
+			// the container owns the stream, flush without closing it
+			writer.flush();
+		};
+	}
+}
@@ -0,0 +1,33 @@
+package com.crossover.trial.weather.ws;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import com.crossover.trial.weather.metrics.EndpointMetrics;
+
+/**
+ * Exposes the request metrics collected by {@link MetricsFilter} for
+ * Prometheus, next to the application statistics at /airports/stats.
+ */
+@Path("/airports/metrics")
+public class MetricsEndpoint {
+
+	private final EndpointMetrics metrics;
+
+	public MetricsEndpoint(EndpointMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@GET
+	@Produces(EndpointMetrics.PROMETHEUS_CONTENT_TYPE)
+	public Response metrics() throws IOException {
+		StringWriter out = new StringWriter();
+		metrics.writePrometheus(out);
+		return Response.status(Response.Status.OK).entity(out.toString()).build();
+	}
+}
@@ -0,0 +1,123 @@
+package com.crossover.trial.weather.ws;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import com.crossover.trial.weather.metrics.EndpointMetrics;
+import com.crossover.trial.weather.metrics.RouteMetrics;
+
+/**
+ * Records latency, status and requests in flight of every matched resource
+ * method, keyed by route, e.g. {@code GET /airports/{iata}}. Responses of
+ * requests which did not match any resource are counted under
+ * {@link EndpointMetrics#UNMATCHED_ROUTE}.
+ *
+ * Response bodies are streamed after the response filters ran, so a response
+ * with an entity is only recorded once the entity was written.
+ */
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+	private static final String START_PROPERTY = MetricsFilter.class.getName() + ".start";
+
+	private static final String ROUTE_PROPERTY = MetricsFilter.class.getName() + ".route";
+
+	private static final String RESPONSE_PROPERTY = MetricsFilter.class.getName() + ".response";
+
+	private final EndpointMetrics metrics;
+
+	/** routes by resource method, resolved once per method */
+	private final ConcurrentMap<Method, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+	@Context
+	private ResourceInfo resourceInfo;
+
+	public MetricsFilter(EndpointMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	MetricsFilter(EndpointMetrics metrics, ResourceInfo resourceInfo) {
+		this(metrics);
+		this.resourceInfo = resourceInfo;
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext) {
+		Method method = resourceInfo.getResourceMethod();
+		if (method == null) {
+			return;
+		}
+		RouteMetrics route = routes.get(method);
+		if (route == null) {
+			route = routes.computeIfAbsent(method, m -> metrics.route(routeOf(resourceInfo.getResourceClass(), m)));
+		}
+		route.started();
+		requestContext.setProperty(ROUTE_PROPERTY, route);
+		requestContext.setProperty(START_PROPERTY, System.nanoTime());
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+		RouteMetrics route = (RouteMetrics) requestContext.getProperty(ROUTE_PROPERTY);
+		if (route == null) {
+			metrics.route(EndpointMetrics.UNMATCHED_ROUTE).recordStatus(responseContext.getStatus());
+			return;
+		}
+		if (responseContext.hasEntity()) {
+			requestContext.setProperty(RESPONSE_PROPERTY, responseContext);
+		} else {
+			complete(route, requestContext.getProperty(START_PROPERTY), responseContext);
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		try {
+			context.proceed();
+		} finally {
+			ContainerResponseContext responseContext = (ContainerResponseContext) context.getProperty(RESPONSE_PROPERTY);
+			if (responseContext != null) {
+				complete((RouteMetrics) context.getProperty(ROUTE_PROPERTY), context.getProperty(START_PROPERTY), responseContext);
+			}
+		}
+	}
+
+	private static void complete(RouteMetrics route, Object start, ContainerResponseContext responseContext) {
+		route.completed(responseContext.getStatus(), System.nanoTime() - (Long) start);
+	}
+
+	/**
+	 * @return the HTTP method and the path template of the resource method
+	 */
+	static String routeOf(Class<?> resourceClass, Method method) {
+		String httpMethod = "*";
+		for (Annotation annotation : method.getAnnotations()) {
+			HttpMethod designator = annotation.annotationType().getAnnotation(HttpMethod.class);
+			if (designator != null) {
+				httpMethod = designator.value();
+			}
+		}
+		return httpMethod + " " + pathOf(resourceClass.getAnnotation(Path.class)) + pathOf(method.getAnnotation(Path.class));
+	}
+
+	private static String pathOf(Path path) {
+		if (path == null || path.value().isEmpty() || path.value().equals("/")) {
+			return "";
+		}
+		String value = path.value();
+		return value.startsWith("/") ? value : "/" + value;
+	}
+}
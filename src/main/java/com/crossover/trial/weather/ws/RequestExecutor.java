@@ -0,0 +1,141 @@
+package com.crossover.trial.weather.ws;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Runs the handlers of suspended requests on a bounded pool, so one kind of
+ * request cannot take all threads from another. An overloaded pool sheds load
+ * early instead of letting the queue, and with it the latency, grow: a
+ * request which finds the queue full, or which waited longer than the
+ * maximum queue time, is answered with 503 Service Unavailable and a
+ * Retry-After header.
+ */
+public class RequestExecutor implements Closeable {
+
+	private static final RequestExecutor DIRECT = new RequestExecutor();
+
+	private final ThreadPoolExecutor executor;
+
+	private final long maxQueueNanos;
+
+	private final int retryAfterSeconds;
+
+	private final LongAdder rejected = new LongAdder();
+
+	private RequestExecutor() {
+		this.executor = null;
+		this.maxQueueNanos = 0;
+		this.retryAfterSeconds = 0;
+	}
+
+	/**
+	 * @param name
+	 *            prefix of the thread names
+	 * @param threads
+	 *            threads of the pool
+	 * @param queueLimit
+	 *            requests waiting for a thread, further requests are rejected
+	 * @param maxQueueMillis
+	 *            requests waiting longer are rejected when their turn comes,
+	 *            0 for no limit
+	 * @param retryAfterSeconds
+	 *            the Retry-After of a rejected request
+	 */
+	public RequestExecutor(String name, int threads, int queueLimit, long maxQueueMillis, int retryAfterSeconds) {
+		if (threads < 1 || queueLimit < 1) {
+			throw new IllegalArgumentException("Threads and queue limit must be positive but were " + threads
+					+ " and " + queueLimit);
+		}
+		AtomicInteger count = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueLimit), runnable -> {
+					Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueMillis);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * @return an executor running handlers on the calling thread, which never
+	 *         rejects a request
+	 */
+	public static RequestExecutor direct() {
+		return DIRECT;
+	}
+
+	/**
+	 * Resumes the response with the result of the handler, or with the
+	 * exception it threw, unless the request is rejected.
+	 */
+	public void execute(AsyncResponse response, Supplier<Response> handler) {
+		if (executor == null) {
+			resume(response, handler);
+			return;
+		}
+		long queued = System.nanoTime();
+		try {
+			executor.execute(() -> {
+				if (maxQueueNanos > 0 && System.nanoTime() - queued > maxQueueNanos) {
+					reject(response);
+				} else if (!response.isDone()) {
+					resume(response, handler);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			reject(response);
+		}
+	}
+
+	private static void resume(AsyncResponse response, Supplier<Response> handler) {
+		Response result;
+		try {
+			result = handler.get();
+		} catch (RuntimeException e) {
+			response.resume(e);
+			return;
+		}
+		response.resume(result);
+	}
+
+	private void reject(AsyncResponse response) {
+		rejected.increment();
+		response.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+				.type(MediaType.TEXT_PLAIN)
+				.entity("The server is overloaded, retry later").build());
+	}
+
+	/** @return the number of rejected requests */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/** @return the number of requests waiting for a thread */
+	public int getQueued() {
+		return executor == null ? 0 : executor.getQueue().size();
+	}
+
+	/**
+	 * Stops the threads, waiting requests are not answered.
+	 */
+	@Override
+	public void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -1,32 +1,61 @@
 package com.crossover.trial.weather.ws;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
-import com.crossover.trial.weather.WeatherException;
+import com.crossover.trial.weather.io.AirportCsv;
+import com.crossover.trial.weather.io.CsvParser;
+import com.crossover.trial.weather.io.WeatherRecords;
 import com.crossover.trial.weather.model.Airport;
 import com.crossover.trial.weather.model.AtmosphericInformation;
 import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.WeatherUpdate;
 import com.crossover.trial.weather.server.data.DummyRepository;
+import com.crossover.trial.weather.server.data.GeoDistance;
 import com.crossover.trial.weather.server.data.Repository;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A REST implementation of the WeatherCollector API. Accessible only to airport weather collection
@@ -39,9 +68,24 @@ public class RestAirportsEndpoint implements AirportsEndpoint {
     
 	public final static Logger log = Logger.getLogger(RestAirportsEndpoint.class.getName());
 
-	public static final double EARTH_RADIUS_KM = 6372.8;
+	public static final double EARTH_RADIUS_KM = GeoDistance.EARTH_RADIUS_KM;
 	
 	private final Repository repository;
+
+	/** runs weather queries */
+	private final RequestExecutor reads;
+
+	/** runs weather updates, so a burst of queries cannot stall them */
+	private final RequestExecutor writes;
+
+	/**
+	 * part of every weather tag, versions restart with the repository so tags
+	 * of an earlier run must not match
+	 */
+	private static final long TAG_EPOCH = new Random().nextLong();
+
+	/** encoded airport list of the latest catalog version seen */
+	private final AtomicReference<CachedResponse> airportsResponse = new AtomicReference<>();
 	
     public final static Gson gson = new Gson();
 
@@ -51,7 +95,13 @@ public class RestAirportsEndpoint implements AirportsEndpoint {
     }
     
     public RestAirportsEndpoint(Repository repository) {
+    	this(repository, RequestExecutor.direct(), RequestExecutor.direct());
+	}
+
+    public RestAirportsEndpoint(Repository repository, RequestExecutor reads, RequestExecutor writes) {
     	this.repository = repository;
+    	this.reads = reads;
+    	this.writes = writes;
 	}
     
     @HEAD
@@ -63,10 +113,35 @@ public class RestAirportsEndpoint implements AirportsEndpoint {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Override
-    public Response getAirports() {
-    	List<String> iataCodes = repository.getAirports()
-    			.stream().map(sc -> sc.getIataCode()).collect(Collectors.toList());
-        return Response.status(Response.Status.OK).entity(gson.toJson(iataCodes)).build();
+    public Response getAirports(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+    		@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+    	// the version is read before the catalog, so cached content is never older than its version
+    	long version = repository.getCatalogVersion();
+    	CachedResponse cached = airportsResponse.get();
+    	if (cached == null || cached.getVersion() != version) {
+    		CachedResponse rebuilt = CachedResponse.of(version, airportsJson());
+    		// concurrent rebuilds keep the newest one
+    		cached = airportsResponse.accumulateAndGet(rebuilt,
+    				(current, candidate) -> current == null || candidate.getVersion() > current.getVersion() ? candidate : current);
+    	}
+    	return cached.toResponse(ifNoneMatch, acceptEncoding);
+    }
+
+    private byte[] airportsJson() {
+    	ByteArrayOutputStream body = new ByteArrayOutputStream();
+    	try {
+    		JsonOutput.of(gson, writer -> {
+    			writer.beginArray();
+    			for (Airport airport : repository.getAirports()) {
+    				writer.value(airport.getIataCode());
+    			}
+    			writer.endArray();
+    		}).write(body);
+    	} catch (IOException e) {
+    		// cannot happen for an in-memory stream
+    		throw new UncheckedIOException(e);
+    	}
+    	return body.toByteArray();
     }
 
     @GET
@@ -79,7 +154,8 @@ public class RestAirportsEndpoint implements AirportsEndpoint {
         if(airport == null) {
         	return Response.status(Status.NOT_FOUND).build();
         } else {
-        	return Response.status(Response.Status.OK).entity(gson.toJson(airport)).build();
+        	return Response.status(Response.Status.OK)
+        			.entity(JsonOutput.of(gson, writer -> gson.toJson(airport, Airport.class, writer))).build();
         }
     }
 
@@ -87,14 +163,104 @@ public class RestAirportsEndpoint implements AirportsEndpoint {
     @Override
     public Response createAirport(String airportJson) {
     	Airport airport = gson.fromJson(airportJson, Airport.class);
+		String invalid = invalidAirport(airport);
+		if (invalid != null) {
+			return Response.status(Response.Status.BAD_REQUEST).entity(invalid).build();
+		}
 		if (repository.airportExists(airport.getIataCode())) {
 			return Response.status(Response.Status.CONFLICT).build();
-		} else {
+		}
+		try {
 			repository.saveAirport(airport);
-			return Response.status(Response.Status.CREATED).build();
+		} catch (IllegalArgumentException e) {
+			log.log(Level.FINE, "Airport cannot be stored", e);
+			return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
 		}
+		return Response.status(Response.Status.CREATED).build();
     }
-    
+
+	/**
+	 * The validation shared by {@link #createAirport(String)} and the imports.
+	 *
+	 * @return null if the airport can be created, the reason otherwise
+	 */
+	private static String invalidAirport(Airport airport) {
+		if (airport == null || airport.getIataCode() == null || airport.getIataCode().isEmpty()) {
+			return "Airport code is missing";
+		}
+		return null;
+	}
+
+	/**
+	 * Records are read with the streaming {@link CsvParser}, so a quoted field
+	 * may span lines; errors report the line a record starts on.
+	 */
+	@POST
+	@Path("/import")
+	@Consumes(AirportCsv.MEDIA_TYPE)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Override
+	public Response importAirportsCsv(InputStream airports) {
+		AirportImport result = new AirportImport();
+		try (Reader reader = new InputStreamReader(airports, StandardCharsets.UTF_8)) {
+			CsvParser record = new CsvParser(reader);
+			while (record.next()) {
+				result.lineNumber = record.getLineNumber();
+				importAirport(result, () -> AirportCsv.read(record));
+			}
+		} catch (IOException e) {
+			return result.failed(e);
+		}
+		return result.toResponse();
+	}
+
+	@POST
+	@Path("/import")
+	@Consumes(JSON_LINES)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Override
+	public Response importAirportsJsonLines(InputStream airports) {
+		AirportImport result = new AirportImport();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(airports, StandardCharsets.UTF_8))) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				result.lineNumber++;
+				if (!line.trim().isEmpty()) {
+					String json = line;
+					importAirport(result, () -> gson.fromJson(json, Airport.class));
+				}
+			}
+		} catch (IOException e) {
+			return result.failed(e);
+		}
+		return result.toResponse();
+	}
+
+	/**
+	 * Creates the airport of the current line like {@link #createAirport(String)}.
+	 */
+	private void importAirport(AirportImport result, Supplier<Airport> parser) {
+		Airport airport;
+		try {
+			airport = parser.get();
+		} catch (RuntimeException e) {
+			result.error(String.valueOf(e.getMessage()));
+			return;
+		}
+		String invalid = invalidAirport(airport);
+		if (invalid != null) {
+			result.error(invalid);
+		} else if (repository.airportExists(airport.getIataCode())) {
+			result.conflicts.add(new JsonPrimitive(airport.getIataCode()));
+		} else {
+			try {
+				repository.saveAirport(airport);
+				result.created++;
+			} catch (IllegalArgumentException e) {
+				result.error(e.getMessage());
+			}
+		}
+	}
+
     // Implemented it for compatibility with existing systems which depend on this application
 	@POST
 	@Path("/{iata}/{lat}/{long}")
@@ -138,37 +304,138 @@ public class RestAirportsEndpoint implements AirportsEndpoint {
 	@GET
 	@Path("/{iata}/weather/{radius}")
 	@Produces(MediaType.APPLICATION_JSON)
-	public Response getWeatherAround(@PathParam("iata") String iata, @PathParam("radius") String radiusString) {
+	@Override
+	public void getWeatherAround(@Suspended AsyncResponse response, @PathParam("iata") String iata,
+			@PathParam("radius") String radiusString, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+			@HeaderParam(HttpHeaders.IF_MODIFIED_SINCE) String ifModifiedSince) {
+		reads.execute(response, () -> getWeatherAround(iata, radiusString, ifNoneMatch, ifModifiedSince));
+	}
+
+	@Override
+	public Response getWeatherAround(String iata, String radiusString, String ifNoneMatch, String ifModifiedSince) {
 		double radius = radiusString == null || radiusString.trim().isEmpty() ? 0 : Double.valueOf(radiusString);
 	
-		repository.updateRequestCount(iata, repository.getRequestCount(iata) + 1);
-		repository.updateRadiusCount(radius, repository.getRadiusCount(radius) +1);
+		repository.incrementRequestCount(iata);
+		repository.incrementRadiusCount(radius);
 	
-		List<AtmosphericInformation> responseEntity = new ArrayList<>();
 		if (radius == 0) {
-			responseEntity.add(repository.getAtmosphericInformationByIataCode(iata));
-		} else {
-			Airport requestedAirport = repository.getAirport(iata);
-			for (Airport airport : repository.getAirports()) {
-				if (calculateDistance(requestedAirport, airport) <= radius) {
-					AtmosphericInformation ai = repository.getAtmosphericInformationByIataCode(airport.getIataCode());
-					if (isAtmosphericInformationPopulated(ai)) {
-						responseEntity.add(ai);
-					}
+			String etag = EntityTags.quote(Long.toHexString(TAG_EPOCH) + "-" + repository.getAtmosphericInformationVersion(iata));
+			long lastModified = repository.getAtmosphericInformationLastUpdateTime(iata);
+			if (isNotModified(ifNoneMatch, ifModifiedSince, etag, lastModified)) {
+				return notModified(etag, lastModified);
+			}
+			AtmosphericInformation ai = repository.getAtmosphericInformationByIataCode(iata);
+			return validated(Response.status(Response.Status.OK), etag, lastModified).entity(JsonOutput.of(gson, writer -> {
+				writer.beginArray();
+				gson.toJson(ai, AtmosphericInformation.class, writer);
+				writer.endArray();
+			})).build();
+		}
+
+		Airport requestedAirport = repository.getAirport(iata);
+		if (requestedAirport == null) {
+			return Response.status(Status.NOT_FOUND).build();
+		}
+		// the catalog version is read first, a concurrent change of the catalog then only costs a cache miss
+		long catalogVersion = repository.getCatalogVersion();
+		long lastModified = repository.getCatalogLastModified();
+		Collection<Airport> airports = repository.getAirportsAround(requestedAirport, radius);
+
+		// validators only need the versions, no atmospheric information is materialized
+		long hash = catalogVersion;
+		for (Airport airport : airports) {
+			hash = (hash ^ repository.getAtmosphericInformationVersion(airport.getIataCode())) * 0x9E3779B97F4A7C15L;
+			lastModified = Math.max(lastModified, repository.getAtmosphericInformationLastUpdateTime(airport.getIataCode()));
+		}
+		String etag = EntityTags.quote(Long.toHexString(TAG_EPOCH) + "-" + catalogVersion + "-" + Long.toHexString(hash));
+		if (isNotModified(ifNoneMatch, ifModifiedSince, etag, lastModified)) {
+			return notModified(etag, lastModified);
+		}
+
+		return validated(Response.status(Response.Status.OK), etag, lastModified).entity(weatherOf(airports)).build();
+	}
+
+	/**
+	 * The weather of the airports of this server within the radius of a
+	 * point. A sharded deployment scatters radius queries to every shard with
+	 * this, see {@link ShardRouter}; only the shard of the queried airport
+	 * passes its code, so the query is counted once.
+	 *
+	 * @param iata
+	 *            the queried airport, whose request and radius counts are
+	 *            incremented, or null
+	 */
+	@GET
+	@Path("/weather/near/{lat}/{long}/{radius}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public void getWeatherNear(@Suspended AsyncResponse response, @PathParam("lat") double latitude,
+			@PathParam("long") double longitude, @PathParam("radius") double radius, @QueryParam("iata") String iata) {
+		reads.execute(response, () -> getWeatherNear(latitude, longitude, radius, iata));
+	}
+
+	public Response getWeatherNear(double latitude, double longitude, double radius, String iata) {
+		if (iata != null) {
+			repository.incrementRequestCount(iata);
+			repository.incrementRadiusCount(radius);
+		}
+		Airport center = new Airport.Builder().withLatitude(latitude).withLongitude(longitude).build();
+		return Response.status(Response.Status.OK).entity(weatherOf(repository.getAirportsAround(center, radius))).build();
+	}
+
+	/**
+	 * weather is looked up and written airport by airport while the response is sent
+	 */
+	private StreamingOutput weatherOf(Collection<Airport> airports) {
+		return JsonOutput.of(gson, writer -> {
+			writer.beginArray();
+			for (Airport airport : airports) {
+				AtmosphericInformation ai = repository.getAtmosphericInformationByIataCode(airport.getIataCode());
+				if (isAtmosphericInformationPopulated(ai)) {
+					gson.toJson(ai, AtmosphericInformation.class, writer);
 				}
 			}
+			writer.endArray();
+		});
+	}
+
+	/**
+	 * If-None-Match takes precedence over If-Modified-Since, as required by
+	 * RFC 7232.
+	 */
+	private static boolean isNotModified(String ifNoneMatch, String ifModifiedSince, String etag, long lastModified) {
+		if (ifNoneMatch != null) {
+			return EntityTags.matches(ifNoneMatch, etag);
 		}
-		
-		return Response.status(Response.Status.OK).entity(gson.toJson(responseEntity)).build();
+		return EntityTags.notModifiedSince(ifModifiedSince, lastModified);
+	}
+
+	private static Response notModified(String etag, long lastModified) {
+		return validated(Response.status(Response.Status.NOT_MODIFIED), etag, lastModified).build();
+	}
+
+	private static Response.ResponseBuilder validated(Response.ResponseBuilder response, String etag, long lastModified) {
+		response.header(HttpHeaders.ETAG, etag);
+		if (lastModified > 0) {
+			response.lastModified(new Date(lastModified));
+		}
+		return response;
 	}
 
 	@PUT
 	@Path("/{iata}/weather")
 	@Override
-	public Response updateWeather(@PathParam("iata") String iataCode, String datapointJson) {
+	public void updateWeather(@Suspended AsyncResponse response, @PathParam("iata") String iataCode, String datapointJson) {
+		writes.execute(response, () -> updateWeather(iataCode, datapointJson));
+	}
+
+	@Override
+	public Response updateWeather(String iataCode, String datapointJson) {
+		// weather of unknown airports is dropped, so clients cannot create state for arbitrary codes
+		if (!repository.airportExists(iataCode)) {
+			return Response.status(Response.Status.NOT_FOUND).entity(unknownAirport(iataCode)).build();
+		}
 		try {
-			AtmosphericInformation ai = repository.getAtmosphericInformationByIataCode(iataCode);
-			updateAtmosphericInformation(ai, gson.fromJson(datapointJson, DataPoint.class));
+			repository.updateAtmosphericInformation(iataCode, gson.fromJson(datapointJson, DataPoint.class));
 		} catch (Exception e) {
 			log.log(Level.SEVERE, "Supplied data is not valid", e);
 			return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
@@ -177,109 +444,239 @@ public class RestAirportsEndpoint implements AirportsEndpoint {
 		return Response.status(Response.Status.OK).build();
 	}
 
-	@GET
-	@Path("/stats")
-	public Response stats() {
-		Map<String, Object> responseEntity = new HashMap<>();
-
-		// we only count recent readings
-		// updated in the last day
-		long dataSize = repository.getAllAtmosphericInformation().stream().filter(ai -> isAtmosphericInformationPopulated(ai) &&
-				ai.getLastUpdateTime() > System.currentTimeMillis() - 86400000).count();
-		
-		responseEntity.put("datasize", dataSize);
-
-		Map<String, Integer> requestCounts = repository.getRequestCounts();
-
-		int totalRequestsCount = requestCounts.values().stream().mapToInt(Number::intValue).sum();
+	@PUT
+	@Path("/weather")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Override
+	public void updateWeather(@Suspended AsyncResponse response, InputStream updates) {
+		writes.execute(response, () -> updateWeather(updates));
+	}
 
-		Map<String, Double> freq = new HashMap<>();
-		// fraction of queries
-		for (Airport airport : repository.getAirports()) {
-			double frac = (double) requestCounts.getOrDefault(airport.getIataCode(), 0) / totalRequestsCount;
-			freq.put(airport.getIataCode(), frac);
+	@Override
+	public Response updateWeather(InputStream updates) {
+		StringWriter responseEntity = new StringWriter();
+		int accepted = 0;
+		int rejected = 0;
+		try (JsonReader reader = new JsonReader(new InputStreamReader(updates, StandardCharsets.UTF_8));
+				JsonWriter writer = new JsonWriter(responseEntity)) {
+			writer.beginObject().name("results").beginArray();
+			reader.beginArray();
+			for (int index = 0; reader.hasNext(); index++) {
+				// items are parsed into a tree first, so a bad item does not break the stream
+				JsonElement item = gson.fromJson(reader, JsonElement.class);
+				Rejection rejection = applyWeatherUpdate(item);
+				writer.beginObject().name("index").value(index).name("status");
+				if (rejection == null) {
+					writer.value(Response.Status.OK.getStatusCode());
+					accepted++;
+				} else {
+					writer.value(rejection.status.getStatusCode()).name("error").value(rejection.message);
+					rejected++;
+				}
+				writer.endObject();
+			}
+			reader.endArray();
+			writer.endArray().name("accepted").value(accepted).name("rejected").value(rejected).endObject();
+		} catch (IOException | JsonParseException | IllegalStateException e) {
+			log.log(Level.SEVERE, "Supplied batch is not valid after " + (accepted + rejected) + " items", e);
+			return Response.status(Response.Status.BAD_REQUEST)
+					.entity("Malformed batch after " + (accepted + rejected) + " items: " + e.getMessage()).build();
 		}
+		return Response.status(Response.Status.OK).entity(responseEntity.toString()).build();
+	}
 
-		responseEntity.put("iata_freq", freq);
-		
-		Map<Double, Integer> radiusFreq = repository.getRadiusCounts();
-
-		int m = radiusFreq.keySet().stream().max(Double::compare).orElse(1000.0).intValue() + 1;
+	@PUT
+	@Path("/weather")
+	@Consumes(WeatherRecords.MEDIA_TYPE)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Override
+	public void updateWeatherRecords(@Suspended AsyncResponse response, InputStream records) {
+		writes.execute(response, () -> updateWeatherRecords(records));
+	}
 
-		int[] hist = new int[m];
-		for (Map.Entry<Double, Integer> e : radiusFreq.entrySet()) {
-			int i = e.getKey().intValue() % 10;
-			hist[i] += e.getValue();
+	@Override
+	public Response updateWeatherRecords(InputStream records) {
+		StringWriter responseEntity = new StringWriter();
+		// a whole number of records, so a partial record is always moved to the front
+		ByteBuffer buffer = ByteBuffer.allocate(WeatherRecords.RECORD_BYTES * 1024);
+		int accepted = 0;
+		int rejected = 0;
+		try (JsonWriter writer = new JsonWriter(responseEntity)) {
+			writer.beginObject().name("errors").beginArray();
+			int read;
+			while ((read = records.read(buffer.array(), buffer.position(), buffer.remaining())) != -1) {
+				buffer.position(buffer.position() + read);
+				buffer.flip();
+				while (buffer.remaining() >= WeatherRecords.RECORD_BYTES) {
+					int index = accepted + rejected;
+					Rejection rejection;
+					try {
+						rejection = applyWeatherUpdate(WeatherRecords.read(buffer));
+					} catch (IllegalArgumentException e) {
+						rejection = Rejection.badRequest(e.getMessage());
+					}
+					if (rejection == null) {
+						accepted++;
+					} else {
+						writer.beginObject().name("index").value(index).name("error").value(rejection.message).endObject();
+						rejected++;
+					}
+				}
+				buffer.compact();
+			}
+			if (buffer.position() != 0) {
+				return Response.status(Response.Status.BAD_REQUEST)
+						.entity("Truncated record after " + (accepted + rejected) + " records").build();
+			}
+			writer.endArray().name("accepted").value(accepted).name("rejected").value(rejected).endObject();
+		} catch (IOException e) {
+			log.log(Level.SEVERE, "Supplied records are not readable after " + (accepted + rejected) + " records", e);
+			return Response.status(Response.Status.BAD_REQUEST)
+					.entity("Malformed records after " + (accepted + rejected) + " records: " + e.getMessage()).build();
 		}
-		responseEntity.put("radius_freq", hist);
-
-		return Response.status(Response.Status.OK).entity(gson.toJson(responseEntity)).build();
-
+		return Response.status(Response.Status.OK).entity(responseEntity.toString()).build();
 	}
 
 	/**
-	 * update atmospheric information with the given data point for the given
-	 * point type
-	 *
-	 * @param ai
-	 *            the atmospheric information object to update
-	 * @param pointType
-	 *            the data point type as a string
-	 * @param dp
-	 *            the actual data point
+	 * @return null if the update was applied, the reason otherwise
 	 */
-	private void updateAtmosphericInformation(AtmosphericInformation ai, DataPoint dp) throws WeatherException {
-		// TODO : avoid this switch
-		switch (dp.getType()) {
-		case WIND:
-			ai.setWind(dp);
-			ai.setLastUpdateTime(System.currentTimeMillis());
-			break;
-		case TEMPERATURE:
-			ai.setTemperature(dp);
-			ai.setLastUpdateTime(System.currentTimeMillis());
-			break;
-		case HUMIDITY:
-			ai.setHumidity(dp);
-			ai.setLastUpdateTime(System.currentTimeMillis());
-			break;
-		case PRESSURE:
-			ai.setLastUpdateTime(System.currentTimeMillis());
-			ai.setPressure(dp);
-			break;
-		case CLOUDCOVER:
-			ai.setLastUpdateTime(System.currentTimeMillis());
-			ai.setCloudCover(dp);
-			break;
-		case PRECIPITATION:
-			ai.setPrecipitation(dp);
-			ai.setLastUpdateTime(System.currentTimeMillis());
-			break;
-		default:
-			throw new WeatherException("Data in request is not valid");
+	private Rejection applyWeatherUpdate(JsonElement item) {
+		try {
+			WeatherUpdate update = gson.fromJson(item, WeatherUpdate.class);
+			if (update == null || update.getIata() == null) {
+				return Rejection.badRequest("Airport code is missing");
+			}
+			if (update.getDataPoint() == null) {
+				return Rejection.badRequest("Data point is missing");
+			}
+			return applyWeatherUpdate(update);
+		} catch (Exception e) {
+			log.log(Level.FINE, "Supplied data is not valid", e);
+			return Rejection.badRequest(String.valueOf(e.getMessage()));
 		}
 	}
 
 	/**
-	 * Haversine distance between two airports.
-	 *
-	 * @param ad1
-	 *            airport 1
-	 * @param ad2
-	 *            airport 2
-	 * @return the distance in KM
+	 * @return null if the update was applied, the status and message of the
+	 *         equivalent single update otherwise
 	 */
-	private double calculateDistance(Airport ad1, Airport ad2) {
-		double deltaLat = Math.toRadians(ad2.getLatitude() - ad1.getLatitude());
-		double deltaLon = Math.toRadians(ad2.getLongitude() - ad1.getLongitude());
-		double a = Math.pow(Math.sin(deltaLat / 2), 2) + Math.pow(Math.sin(deltaLon / 2), 2) * Math.cos(ad1.getLatitude())
-				* Math.cos(ad2.getLatitude());
-		double c = 2 * Math.asin(Math.sqrt(a));
-		return EARTH_RADIUS_KM * c;
+	private Rejection applyWeatherUpdate(WeatherUpdate update) {
+		if (!repository.airportExists(update.getIata())) {
+			return new Rejection(Response.Status.NOT_FOUND, unknownAirport(update.getIata()));
+		}
+		if (update.getTimestamp() < 0) {
+			return Rejection.badRequest("Timestamp must not be negative: " + update.getTimestamp());
+		}
+		try {
+			if (update.getTimestamp() == 0) {
+				repository.updateAtmosphericInformation(update.getIata(), update.getDataPoint());
+			} else {
+				// a collector's clock running ahead must not date updates into the future
+				repository.updateAtmosphericInformation(update.getIata(), update.getDataPoint(),
+						Math.min(update.getTimestamp(), System.currentTimeMillis()));
+			}
+			return null;
+		} catch (Exception e) {
+			log.log(Level.FINE, "Supplied data is not valid", e);
+			return Rejection.badRequest(String.valueOf(e.getMessage()));
+		}
+	}
+
+	private static String unknownAirport(String iataCode) {
+		return "Unknown airport: " + iataCode;
+	}
+
+	@GET
+	@Path("/stats")
+	public Response stats() {
+		// we only count recent readings
+		// updated in the last day
+		long dataSize = repository.getDataSize();
+
+		Map<String, Long> requestCounts = repository.getRequestCounts();
+
+		long totalRequestsCount = requestCounts.values().stream().mapToLong(Number::longValue).sum();
+
+		long[] radiusHistogram = repository.getRadiusHistogram();
+
+		return Response.status(Response.Status.OK).entity(JsonOutput.of(gson, writer -> {
+			writer.beginObject();
+			writer.name("datasize").value(dataSize);
+			// lets the fractions of several shards be merged
+			writer.name("request_count").value(totalRequestsCount);
+
+			writer.name("iata_freq").beginObject();
+			// fraction of queries
+			for (Airport airport : repository.getAirports()) {
+				// no requests yet means no fraction, NaN cannot be serialized
+				double frac = totalRequestsCount == 0 ? 0
+						: (double) requestCounts.getOrDefault(airport.getIataCode(), 0L) / totalRequestsCount;
+				writer.name(airport.getIataCode()).value(frac);
+			}
+			writer.endObject();
+
+			writer.name("radius_freq").beginArray();
+			for (long count : radiusHistogram) {
+				writer.value(count);
+			}
+			writer.endArray();
+			writer.endObject();
+		})).build();
 	}
 
 	private boolean isAtmosphericInformationPopulated(AtmosphericInformation ai) {
 		return ai.getCloudCover() != null || ai.getHumidity() != null || ai.getPrecipitation() != null || ai.getPressure() != null
 				|| ai.getTemperature() != null || ai.getWind() != null;
 	}
+
+	/** the result of an import so far */
+	private static final class AirportImport {
+
+		private int lineNumber;
+
+		private int created;
+
+		private final JsonArray conflicts = new JsonArray();
+
+		private final JsonArray errors = new JsonArray();
+
+		void error(String message) {
+			JsonObject error = new JsonObject();
+			error.addProperty("line", lineNumber);
+			error.addProperty("error", message);
+			errors.add(error);
+		}
+
+		Response failed(IOException e) {
+			log.log(Level.SEVERE, "Failed to read airports after line " + lineNumber, e);
+			return Response.status(Response.Status.BAD_REQUEST)
+					.entity("Failed to read airports after line " + lineNumber + ": " + e.getMessage()).build();
+		}
+
+		Response toResponse() {
+			JsonObject responseEntity = new JsonObject();
+			responseEntity.addProperty("created", created);
+			responseEntity.add("conflicts", conflicts);
+			responseEntity.add("errors", errors);
+			return Response.status(Response.Status.OK).entity(gson.toJson(responseEntity)).build();
+		}
+	}
+
+	/** why an item of a batch was not applied */
+	private static final class Rejection {
+
+		private final Response.Status status;
+
+		private final String message;
+
+		private Rejection(Response.Status status, String message) {
+			this.status = status;
+			this.message = message;
+		}
+
+		static Rejection badRequest(String message) {
+			return new Rejection(Response.Status.BAD_REQUEST, message);
+		}
+	}
 }
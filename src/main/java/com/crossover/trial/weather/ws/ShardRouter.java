@@ -0,0 +1,745 @@
+package com.crossover.trial.weather.ws;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.glassfish.jersey.client.ClientProperties;
+
+import com.crossover.trial.weather.io.AirportCsv;
+import com.crossover.trial.weather.io.CsvParser;
+import com.crossover.trial.weather.io.WeatherRecords;
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.server.data.HashRing;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Front of a sharded deployment, serving the API of
+ * {@link RestAirportsEndpoint} from shards which each hold the airports, and
+ * their weather, that the {@link HashRing} assigns to them by IATA code. The
+ * router keeps no data:
+ *
+ * <ul>
+ * <li>requests about one airport are forwarded to its shard, with the
+ * validators and Accept-Encoding of the request and the validators of the
+ * response</li>
+ * <li>batches of updates and imports are split by shard, sent in parallel and
+ * their results merged, with the indexes and line numbers of the original
+ * batch</li>
+ * <li>radius queries are scattered to every shard and the lists gathered,
+ * since airports near each other are on any shard</li>
+ * <li>the airport list and the statistics are fanned out and merged</li>
+ * </ul>
+ *
+ * A shard which cannot be reached is answered with 502 Bad Gateway, a shard
+ * shedding load with its 503. In a batch only the items of that shard get
+ * these errors, the results of the other shards are still merged.
+ */
+@Path("/airports")
+public class ShardRouter implements Closeable {
+
+	private static final Logger log = Logger.getLogger(ShardRouter.class.getName());
+
+	private static final Gson gson = new Gson();
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+	private static final int READ_TIMEOUT_MILLIS = 30000;
+
+	private static final String[] FORWARDED_REQUEST_HEADERS = { HttpHeaders.IF_NONE_MATCH,
+			HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.ACCEPT_ENCODING };
+
+	private static final String[] FORWARDED_RESPONSE_HEADERS = { HttpHeaders.CONTENT_TYPE,
+			HttpHeaders.CONTENT_ENCODING, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.VARY,
+			HttpHeaders.RETRY_AFTER };
+
+	private final HashRing<String> ring;
+
+	private final Client client;
+
+	/** the airports resource of every shard, in the order of the ring's nodes */
+	private final List<WebTarget> shards = new ArrayList<>();
+
+	/**
+	 * @param ring
+	 *            the base URLs of the shards, like "http://localhost:8081/"
+	 */
+	public ShardRouter(HashRing<String> ring) {
+		this.ring = ring;
+		this.client = ClientBuilder.newClient()
+				.property(ClientProperties.CONNECT_TIMEOUT, CONNECT_TIMEOUT_MILLIS)
+				.property(ClientProperties.READ_TIMEOUT, READ_TIMEOUT_MILLIS);
+		for (String url : ring.getNodes()) {
+			shards.add(client.target(url).path("airports"));
+		}
+	}
+
+	@HEAD
+	public Response ping() {
+		return Response.status(Response.Status.OK).build();
+	}
+
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response getAirports() {
+		return routed(() -> {
+			List<Future<Response>> responses = new ArrayList<>();
+			for (WebTarget shard : shards) {
+				responses.add(shard.request(MediaType.APPLICATION_JSON).async().get());
+			}
+			return concatenated(responses);
+		});
+	}
+
+	@GET
+	@Path("/{iata}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response getAirport(@PathParam("iata") String iata) {
+		return routed(() -> relay(airport(iata).request().get()));
+	}
+
+	@POST
+	public Response createAirport(String airportJson) {
+		Airport airport;
+		try {
+			airport = gson.fromJson(airportJson, Airport.class);
+		} catch (JsonParseException e) {
+			return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+		}
+		if (airport == null || airport.getIataCode() == null) {
+			return Response.status(Response.Status.BAD_REQUEST).build();
+		}
+		return routed(() -> relay(shardOf(airport.getIataCode()).request()
+				.post(Entity.entity(airportJson, MediaType.APPLICATION_JSON))));
+	}
+
+	@POST
+	@Path("/{iata}/{lat}/{long}")
+	public Response addAirport(@PathParam("iata") String iata, @PathParam("lat") String latString,
+			@PathParam("long") String longString) {
+		return routed(() -> relay(airport(iata).path("{lat}/{long}").resolveTemplate("lat", latString)
+				.resolveTemplate("long", longString).request().post(Entity.text(""))));
+	}
+
+	@DELETE
+	@Path("/{iata}")
+	public Response deleteAirport(@PathParam("iata") String iata) {
+		return routed(() -> relay(airport(iata).request().delete()));
+	}
+
+	/**
+	 * Records are split with the streaming {@link CsvParser} and forwarded as
+	 * they are, so a quoted field may span lines.
+	 */
+	@POST
+	@Path("/import")
+	@Consumes(AirportCsv.MEDIA_TYPE)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response importAirportsCsv(InputStream airports) {
+		ImportBatches batches = new ImportBatches();
+		try (Reader reader = new InputStreamReader(airports, StandardCharsets.UTF_8)) {
+			CsvParser record = new CsvParser(reader);
+			while (record.next()) {
+				batches.lineNumber = record.getLineNumber();
+				batches.add(record.getLine(), () -> AirportCsv.read(record));
+			}
+		} catch (IOException e) {
+			return batches.failed(e);
+		}
+		return importAirports(batches, AirportCsv.MEDIA_TYPE);
+	}
+
+	@POST
+	@Path("/import")
+	@Consumes(AirportsEndpoint.JSON_LINES)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response importAirportsJsonLines(InputStream airports) {
+		ImportBatches batches = new ImportBatches();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(airports, StandardCharsets.UTF_8))) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				batches.lineNumber++;
+				if (!line.trim().isEmpty()) {
+					String json = line;
+					batches.add(line, () -> gson.fromJson(json, Airport.class));
+				}
+			}
+		} catch (IOException e) {
+			return batches.failed(e);
+		}
+		return importAirports(batches, AirportsEndpoint.JSON_LINES);
+	}
+
+	private Response importAirports(ImportBatches batches, String mediaType) {
+		List<StringBuilder> bodies = batches.bodies;
+		List<Map<Integer, Integer>> lineNumbers = batches.lineNumbers;
+		return routed(() -> {
+			Map<Integer, Future<Response>> responses = new LinkedHashMap<>();
+			for (int i = 0; i < shards.size(); i++) {
+				if (!lineNumbers.get(i).isEmpty()) {
+					responses.put(i, shards.get(i).path("import").request(MediaType.APPLICATION_JSON).async()
+							.post(Entity.entity(bodies.get(i).toString(), mediaType)));
+				}
+			}
+			int created = 0;
+			JsonArray conflicts = new JsonArray();
+			List<JsonObject> errors = new ArrayList<>();
+			for (Map.Entry<Integer, Future<Response>> response : responses.entrySet()) {
+				Map<Integer, Integer> lines = lineNumbers.get(response.getKey());
+				ShardResult result = ShardResult.orBadGateway(response.getValue());
+				if (result.status != Response.Status.OK.getStatusCode()) {
+					for (int line : lines.values()) {
+						errors.add(error("line", line, result.status, result.body));
+					}
+					continue;
+				}
+				JsonObject shardResult = gson.fromJson(result.body, JsonObject.class);
+				created += shardResult.get("created").getAsInt();
+				conflicts.addAll(shardResult.getAsJsonArray("conflicts"));
+				for (JsonElement error : shardResult.getAsJsonArray("errors")) {
+					JsonObject shardError = error.getAsJsonObject();
+					shardError.addProperty("line", lines.get(shardError.get("line").getAsInt()));
+					errors.add(shardError);
+				}
+			}
+			errors.sort((first, second) -> Integer.compare(first.get("line").getAsInt(), second.get("line").getAsInt()));
+
+			JsonObject responseEntity = new JsonObject();
+			responseEntity.addProperty("created", created);
+			responseEntity.add("conflicts", conflicts);
+			responseEntity.add("errors", toArray(errors));
+			return Response.status(Response.Status.OK).entity(gson.toJson(responseEntity)).build();
+		});
+	}
+
+	/**
+	 * A query without a radius is forwarded to the shard of the airport, any
+	 * other is scattered to every shard with the coordinates of the airport.
+	 * Gathered lists carry no validators, since no single shard knows the
+	 * versions of all their airports.
+	 */
+	@GET
+	@Path("/{iata}/weather/{radius}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response getWeatherAround(@PathParam("iata") String iata, @PathParam("radius") String radiusString,
+			@Context HttpHeaders headers) {
+		double radius = radiusString == null || radiusString.trim().isEmpty() ? 0 : Double.valueOf(radiusString);
+		if (radius == 0) {
+			return routed(() -> relay(forwarded(airport(iata).path("weather").path(radiusString).request(), headers)
+					.get()));
+		}
+		return routed(() -> {
+			Response located = airport(iata).request(MediaType.APPLICATION_JSON).get();
+			if (located.getStatus() != Response.Status.OK.getStatusCode()) {
+				return relay(located);
+			}
+			Airport center = gson.fromJson(located.readEntity(String.class), Airport.class);
+			int owner = ring.indexOf(iata);
+			List<Future<Response>> responses = new ArrayList<>();
+			for (int i = 0; i < shards.size(); i++) {
+				WebTarget near = shards.get(i).path("weather/near").path(String.valueOf(center.getLatitude()))
+						.path(String.valueOf(center.getLongitude())).path(String.valueOf(radius));
+				// only the shard of the airport counts the query
+				if (i == owner) {
+					near = near.queryParam("iata", "{iata}").resolveTemplate("iata", iata);
+				}
+				responses.add(near.request(MediaType.APPLICATION_JSON).async().get());
+			}
+			return concatenated(responses);
+		});
+	}
+
+	@PUT
+	@Path("/{iata}/weather")
+	public Response updateWeather(@PathParam("iata") String iataCode, String datapointJson) {
+		return routed(() -> relay(airport(iataCode).path("weather").request()
+				.put(Entity.entity(datapointJson, MediaType.APPLICATION_JSON))));
+	}
+
+	/**
+	 * Unlike a shard, the router reads the whole batch before applying any of
+	 * it, so a malformed batch is rejected as a whole.
+	 */
+	@PUT
+	@Path("/weather")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response updateWeather(InputStream updates) {
+		JsonArray items;
+		try (InputStreamReader reader = new InputStreamReader(updates, StandardCharsets.UTF_8)) {
+			items = gson.fromJson(reader, JsonArray.class);
+		} catch (IOException | JsonParseException e) {
+			log.log(Level.SEVERE, "Supplied batch is not valid", e);
+			return Response.status(Response.Status.BAD_REQUEST).entity("Malformed batch: " + e.getMessage()).build();
+		}
+		if (items == null) {
+			return Response.status(Response.Status.BAD_REQUEST).entity("Malformed batch: the body is empty").build();
+		}
+
+		List<JsonArray> batches = new ArrayList<>();
+		List<List<Integer>> indexes = new ArrayList<>();
+		for (int i = 0; i < shards.size(); i++) {
+			batches.add(new JsonArray());
+			indexes.add(new ArrayList<>());
+		}
+		for (int index = 0; index < items.size(); index++) {
+			JsonElement item = items.get(index);
+			// items without a code go to the first shard, which reports them
+			int shard = 0;
+			if (item.isJsonObject() && item.getAsJsonObject().get("iata") instanceof JsonPrimitive) {
+				shard = ring.indexOf(item.getAsJsonObject().get("iata").getAsString());
+			}
+			batches.get(shard).add(item);
+			indexes.get(shard).add(index);
+		}
+
+		return routed(() -> {
+			Map<Integer, Future<Response>> responses = new LinkedHashMap<>();
+			for (int i = 0; i < shards.size(); i++) {
+				if (batches.get(i).size() > 0) {
+					responses.put(i, shards.get(i).path("weather").request(MediaType.APPLICATION_JSON).async()
+							.put(Entity.entity(gson.toJson(batches.get(i)), MediaType.APPLICATION_JSON)));
+				}
+			}
+			JsonObject[] results = new JsonObject[items.size()];
+			int accepted = 0;
+			for (Map.Entry<Integer, Future<Response>> response : responses.entrySet()) {
+				List<Integer> shardIndexes = indexes.get(response.getKey());
+				ShardResult result = ShardResult.orBadGateway(response.getValue());
+				if (result.status != Response.Status.OK.getStatusCode()) {
+					for (int index : shardIndexes) {
+						results[index] = error("index", index, result.status, result.body);
+					}
+					continue;
+				}
+				JsonObject shardResult = gson.fromJson(result.body, JsonObject.class);
+				accepted += shardResult.get("accepted").getAsInt();
+				for (JsonElement item : shardResult.getAsJsonArray("results")) {
+					JsonObject itemResult = item.getAsJsonObject();
+					int index = shardIndexes.get(itemResult.get("index").getAsInt());
+					itemResult.addProperty("index", index);
+					results[index] = itemResult;
+				}
+			}
+
+			JsonObject responseEntity = new JsonObject();
+			responseEntity.add("results", toArray(Arrays.asList(results)));
+			responseEntity.addProperty("accepted", accepted);
+			responseEntity.addProperty("rejected", items.size() - accepted);
+			return Response.status(Response.Status.OK).entity(gson.toJson(responseEntity)).build();
+		});
+	}
+
+	@PUT
+	@Path("/weather")
+	@Consumes(WeatherRecords.MEDIA_TYPE)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response updateWeatherRecords(InputStream records) {
+		byte[] body;
+		try {
+			body = readAll(records);
+		} catch (IOException e) {
+			log.log(Level.SEVERE, "Supplied records are not readable", e);
+			return Response.status(Response.Status.BAD_REQUEST).entity("Malformed records: " + e.getMessage()).build();
+		}
+		int count = body.length / WeatherRecords.RECORD_BYTES;
+
+		List<ByteArrayOutputStream> batches = new ArrayList<>();
+		List<List<Integer>> indexes = new ArrayList<>();
+		for (int i = 0; i < shards.size(); i++) {
+			batches.add(new ByteArrayOutputStream());
+			indexes.add(new ArrayList<>());
+		}
+		for (int index = 0; index < count; index++) {
+			int offset = index * WeatherRecords.RECORD_BYTES;
+			// the code is the first three bytes, a code which is not ASCII is reported by its shard
+			int shard = ring.indexOf(new String(body, offset, 3, StandardCharsets.ISO_8859_1));
+			batches.get(shard).write(body, offset, WeatherRecords.RECORD_BYTES);
+			indexes.get(shard).add(index);
+		}
+
+		return routed(() -> {
+			Map<Integer, Future<Response>> responses = new LinkedHashMap<>();
+			for (int i = 0; i < shards.size(); i++) {
+				if (batches.get(i).size() > 0) {
+					responses.put(i, shards.get(i).path("weather").request(MediaType.APPLICATION_JSON).async()
+							.put(Entity.entity(batches.get(i).toByteArray(), WeatherRecords.MEDIA_TYPE)));
+				}
+			}
+			List<JsonObject> errors = new ArrayList<>();
+			int accepted = 0;
+			for (Map.Entry<Integer, Future<Response>> response : responses.entrySet()) {
+				List<Integer> shardIndexes = indexes.get(response.getKey());
+				ShardResult result = ShardResult.orBadGateway(response.getValue());
+				if (result.status != Response.Status.OK.getStatusCode()) {
+					for (int index : shardIndexes) {
+						errors.add(error("index", index, result.status, result.body));
+					}
+					continue;
+				}
+				JsonObject shardResult = gson.fromJson(result.body, JsonObject.class);
+				accepted += shardResult.get("accepted").getAsInt();
+				for (JsonElement error : shardResult.getAsJsonArray("errors")) {
+					JsonObject shardError = error.getAsJsonObject();
+					shardError.addProperty("index", shardIndexes.get(shardError.get("index").getAsInt()));
+					errors.add(shardError);
+				}
+			}
+			// like a shard, the complete records before a partial one are applied
+			if (body.length % WeatherRecords.RECORD_BYTES != 0) {
+				return Response.status(Response.Status.BAD_REQUEST)
+						.entity("Truncated record after " + count + " records").build();
+			}
+			errors.sort((first, second) -> Integer.compare(first.get("index").getAsInt(), second.get("index").getAsInt()));
+
+			JsonObject responseEntity = new JsonObject();
+			responseEntity.add("errors", toArray(errors));
+			responseEntity.addProperty("accepted", accepted);
+			responseEntity.addProperty("rejected", count - accepted);
+			return Response.status(Response.Status.OK).entity(gson.toJson(responseEntity)).build();
+		});
+	}
+
+	/**
+	 * Merges the statistics of the shards. The frequency of an airport is
+	 * weighted by the requests its shard counted, so the fractions of all
+	 * airports add up to one again.
+	 */
+	@GET
+	@Path("/stats")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response stats() {
+		return routed(() -> {
+			List<Future<Response>> responses = new ArrayList<>();
+			for (WebTarget shard : shards) {
+				responses.add(shard.path("stats").request(MediaType.APPLICATION_JSON).async().get());
+			}
+			List<JsonObject> stats = new ArrayList<>();
+			long dataSize = 0;
+			long requestCount = 0;
+			for (ShardResult result : ShardResult.all(responses)) {
+				if (result.status != Response.Status.OK.getStatusCode()) {
+					return Response.status(result.status).entity(result.body).build();
+				}
+				JsonObject shardStats = gson.fromJson(result.body, JsonObject.class);
+				dataSize += shardStats.get("datasize").getAsLong();
+				requestCount += shardStats.get("request_count").getAsLong();
+				stats.add(shardStats);
+			}
+
+			JsonObject iataFrequencies = new JsonObject();
+			long[] radiusFrequencies = new long[0];
+			for (JsonObject shardStats : stats) {
+				long shardRequests = shardStats.get("request_count").getAsLong();
+				for (Map.Entry<String, JsonElement> frequency : shardStats.getAsJsonObject("iata_freq").entrySet()) {
+					// no requests yet means no fraction, NaN cannot be serialized
+					double fraction = requestCount == 0 ? 0
+							: frequency.getValue().getAsDouble() * shardRequests / requestCount;
+					iataFrequencies.addProperty(frequency.getKey(), fraction);
+				}
+				JsonArray radiusHistogram = shardStats.getAsJsonArray("radius_freq");
+				if (radiusFrequencies.length < radiusHistogram.size()) {
+					radiusFrequencies = Arrays.copyOf(radiusFrequencies, radiusHistogram.size());
+				}
+				for (int i = 0; i < radiusHistogram.size(); i++) {
+					radiusFrequencies[i] += radiusHistogram.get(i).getAsLong();
+				}
+			}
+
+			JsonObject responseEntity = new JsonObject();
+			responseEntity.addProperty("datasize", dataSize);
+			responseEntity.addProperty("request_count", requestCount);
+			responseEntity.add("iata_freq", iataFrequencies);
+			JsonArray radiusHistogram = new JsonArray();
+			for (long count : radiusFrequencies) {
+				radiusHistogram.add(new JsonPrimitive(count));
+			}
+			responseEntity.add("radius_freq", radiusHistogram);
+			return Response.status(Response.Status.OK).entity(gson.toJson(responseEntity)).build();
+		});
+	}
+
+	/**
+	 * Closes the connections to the shards.
+	 */
+	@Override
+	public void close() {
+		client.close();
+	}
+
+	private WebTarget shardOf(String iata) {
+		return shards.get(ring.indexOf(iata));
+	}
+
+	/** the resource of the airport on its shard, any characters of the code are escaped */
+	private WebTarget airport(String iata) {
+		return shardOf(iata).path("{iata}").resolveTemplate("iata", iata);
+	}
+
+	private static Invocation.Builder forwarded(Invocation.Builder request, HttpHeaders headers) {
+		for (String header : FORWARDED_REQUEST_HEADERS) {
+			String value = headers.getHeaderString(header);
+			if (value != null) {
+				request.header(header, value);
+			}
+		}
+		return request;
+	}
+
+	/**
+	 * @return the response of a shard as a response of the router
+	 */
+	private static Response relay(Response shardResponse) {
+		try {
+			Response.ResponseBuilder response = Response.status(shardResponse.getStatus());
+			for (String header : FORWARDED_RESPONSE_HEADERS) {
+				String value = shardResponse.getHeaderString(header);
+				if (value != null) {
+					response.header(header, value);
+				}
+			}
+			if (shardResponse.hasEntity()) {
+				response.entity(shardResponse.readEntity(byte[].class));
+			}
+			return response.build();
+		} finally {
+			shardResponse.close();
+		}
+	}
+
+	/**
+	 * @return the json arrays of the shards as one array, or the first failed
+	 *         response
+	 */
+	private static Response concatenated(List<Future<Response>> responses) {
+		StringBuilder array = new StringBuilder("[");
+		for (ShardResult result : ShardResult.all(responses)) {
+			if (result.status != Response.Status.OK.getStatusCode()) {
+				return Response.status(result.status).entity(result.body).build();
+			}
+			// the elements are copied as they are, nothing is parsed
+			String elements = result.body.trim();
+			elements = elements.substring(1, elements.length() - 1).trim();
+			if (!elements.isEmpty()) {
+				if (array.length() > 1) {
+					array.append(',');
+				}
+				array.append(elements);
+			}
+		}
+		return Response.status(Response.Status.OK).entity(array.append(']').toString())
+				.type(MediaType.APPLICATION_JSON).build();
+	}
+
+	/**
+	 * Answers 502 Bad Gateway if a shard cannot be reached.
+	 */
+	private static Response routed(Supplier<Response> handler) {
+		try {
+			return handler.get();
+		} catch (ProcessingException e) {
+			log.log(Level.WARNING, "A shard failed", e);
+			return Response.status(Status.BAD_GATEWAY).type(MediaType.TEXT_PLAIN)
+					.entity("A shard failed: " + e.getMessage()).build();
+		}
+	}
+
+	private static JsonObject error(String position, int value, int status, String message) {
+		JsonObject error = new JsonObject();
+		error.addProperty(position, value);
+		error.addProperty("status", status);
+		error.addProperty("error", message);
+		return error;
+	}
+
+	private static JsonArray toArray(List<JsonObject> elements) {
+		JsonArray array = new JsonArray();
+		for (JsonObject element : elements) {
+			array.add(element);
+		}
+		return array;
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/** the records of an import split by shard */
+	private final class ImportBatches {
+
+		private final List<StringBuilder> bodies = new ArrayList<>();
+
+		/** per shard the line a record starts on in its body to the line in the import */
+		private final List<Map<Integer, Integer>> lineNumbers = new ArrayList<>();
+
+		/** per shard the line the next record starts on in its body */
+		private final int[] bodyLines = new int[shards.size()];
+
+		/** the line the current record starts on in the import */
+		private int lineNumber;
+
+		ImportBatches() {
+			for (int i = 0; i < shards.size(); i++) {
+				bodies.add(new StringBuilder());
+				lineNumbers.add(new LinkedHashMap<>());
+			}
+			Arrays.fill(bodyLines, 1);
+		}
+
+		void add(String record, Supplier<Airport> parser) {
+			// records without a code go to the first shard, which reports them
+			int shard = 0;
+			try {
+				Airport airport = parser.get();
+				if (airport != null && airport.getIataCode() != null) {
+					shard = ring.indexOf(airport.getIataCode());
+				}
+			} catch (RuntimeException e) {
+				log.log(Level.FINE, "Line " + lineNumber + " is left to a shard to report", e);
+			}
+			bodies.get(shard).append(record).append('\n');
+			lineNumbers.get(shard).put(bodyLines[shard], lineNumber);
+			bodyLines[shard] += lineBreaks(record) + 1;
+		}
+
+		Response failed(IOException e) {
+			log.log(Level.SEVERE, "Failed to read airports after line " + lineNumber, e);
+			return Response.status(Response.Status.BAD_REQUEST)
+					.entity("Failed to read airports after line " + lineNumber + ": " + e.getMessage()).build();
+		}
+	}
+
+	/** counts LF, CRLF and a lone CR once each, like {@link CsvParser#getLineNumber()} */
+	private static int lineBreaks(String text) {
+		int breaks = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\n' || (c == '\r' && (i + 1 >= text.length() || text.charAt(i + 1) != '\n'))) {
+				breaks++;
+			}
+		}
+		return breaks;
+	}
+
+	/** status and body of a shard's response */
+	private static final class ShardResult {
+
+		private final int status;
+
+		private final String body;
+
+		private ShardResult(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+
+		/**
+		 * Waits for and closes every response before failing, so none is left
+		 * open when one failed.
+		 *
+		 * @throws ProcessingException
+		 *             the first failure, if a shard could not be reached
+		 */
+		static List<ShardResult> all(List<Future<Response>> futures) {
+			List<ShardResult> results = new ArrayList<>();
+			ProcessingException failure = null;
+			for (Future<Response> future : futures) {
+				try {
+					results.add(of(future));
+				} catch (ProcessingException e) {
+					if (failure == null) {
+						failure = e;
+					} else {
+						failure.addSuppressed(e);
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return results;
+		}
+
+		/**
+		 * Waits for the response and reads it, a shard which could not be
+		 * reached is answered with 502 Bad Gateway.
+		 */
+		static ShardResult orBadGateway(Future<Response> future) {
+			try {
+				return of(future);
+			} catch (ProcessingException e) {
+				log.log(Level.WARNING, "A shard failed", e);
+				return new ShardResult(Status.BAD_GATEWAY.getStatusCode(), "A shard failed: " + e.getMessage());
+			}
+		}
+
+		/**
+		 * Waits for the response and reads it.
+		 *
+		 * @throws ProcessingException
+		 *             if the shard could not be reached
+		 */
+		static ShardResult of(Future<Response> future) {
+			Response response;
+			try {
+				response = future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ProcessingException("Interrupted while waiting for a shard", e);
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof ProcessingException ? (ProcessingException) e.getCause()
+						: new ProcessingException(e.getCause());
+			}
+			try {
+				return new ShardResult(response.getStatus(), response.hasEntity() ? response.readEntity(String.class) : "");
+			} finally {
+				response.close();
+			}
+		}
+	}
+}
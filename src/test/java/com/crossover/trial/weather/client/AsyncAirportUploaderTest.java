@@ -0,0 +1,222 @@
+package com.crossover.trial.weather.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.Airport;
+import com.google.gson.Gson;
+
+/**
+ * Uploads to a stub of {@code POST /airports} on a local port, which answers
+ * scripted statuses per airport and 201 Created after them.
+ */
+public class AsyncAirportUploaderTest {
+
+	private static final Gson gson = new Gson();
+
+	private final StubAirports stub = new StubAirports();
+
+	private HttpServer server;
+
+	private String baseUrl;
+
+	@Before
+	public void setUp() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			baseUrl = "http://localhost:" + socket.getLocalPort() + "/";
+		}
+		server = GrizzlyHttpServerFactory.createHttpServer(URI.create(baseUrl), new ResourceConfig().register(stub));
+	}
+
+	@After
+	public void tearDown() {
+		server.shutdownNow();
+	}
+
+	@Test(timeout = 10000)
+	public void testLimitRequestsInFlightToWindow() throws Exception {
+		// Given
+		AsyncAirportUploader unit = new AsyncAirportUploader(baseUrl, 2, 1);
+		String[] codes = { "BOS", "EWR", "JFK", "LGA", "MMU", "ORD", "SFO", "LAX" };
+
+		// When
+		try {
+			unit.upload(csv(codes));
+		} finally {
+			unit.close();
+		}
+
+		// Then
+		assertEquals(codes.length, unit.getCreated());
+		assertTrue("max in flight " + stub.maxInFlight, stub.maxInFlight.get() <= 2);
+	}
+
+	@Test(timeout = 10000)
+	public void testRetryWithBackoff() throws Exception {
+		// Given
+		AsyncAirportUploader unit = new AsyncAirportUploader(baseUrl, 4, 3);
+		stub.script("BOS", 503, 503);
+
+		// When
+		long start = System.nanoTime();
+		try {
+			unit.upload(csv("BOS"));
+		} finally {
+			unit.close();
+		}
+
+		// Then
+		// backoffs of at least 25 and 50 ms, half of 50 and 100 ms
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(75));
+		assertEquals(1, unit.getCreated());
+		assertEquals(2, unit.getRetried());
+		assertEquals(3, stub.attempts("BOS"));
+	}
+
+	@Test(timeout = 10000)
+	public void testGiveUpAfterMaxAttempts() throws Exception {
+		// Given
+		AsyncAirportUploader unit = new AsyncAirportUploader(baseUrl, 4, 3);
+		stub.script("BOS", 503, 503, 503, 503);
+
+		// When
+		try {
+			unit.upload(csv("BOS", "JFK"));
+		} finally {
+			unit.close();
+		}
+
+		// Then
+		assertEquals(1, unit.getFailed());
+		assertEquals(1, unit.getCreated());
+		assertEquals(2, unit.getRetried());
+		assertEquals(3, stub.attempts("BOS"));
+	}
+
+	@Test(timeout = 10000)
+	public void testCountConflictAsDone() throws Exception {
+		// Given
+		AsyncAirportUploader unit = new AsyncAirportUploader(baseUrl, 4, 3);
+		stub.script("BOS", 409);
+
+		// When
+		try {
+			unit.upload(csv("BOS"));
+		} finally {
+			unit.close();
+		}
+
+		// Then
+		assertEquals(1, unit.getConflicts());
+		assertEquals(0, unit.getFailed());
+		assertEquals(0, unit.getRetried());
+		assertEquals(1, stub.attempts("BOS"));
+	}
+
+	@Test(timeout = 10000)
+	public void testSummaryCounts() throws Exception {
+		// Given
+		AsyncAirportUploader unit = new AsyncAirportUploader(baseUrl, 4, 3);
+		stub.script("EWR", 409);
+		stub.script("JFK", 400);
+		String body = line("BOS") + "\n" + line("EWR") + "\n" + line("JFK") + "\nnot an airport\n";
+
+		// When
+		String summary;
+		try {
+			summary = unit.upload(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+		} finally {
+			unit.close();
+		}
+
+		// Then
+		assertTrue(summary, summary.startsWith("Uploaded 3 airports"));
+		assertTrue(summary, summary.contains("1 created, 1 conflicts, 1 failed, 1 skipped lines, 0 retries"));
+	}
+
+	@Test(timeout = 10000)
+	public void testReleasePermitWhenRequestCannotBeSent() throws Exception {
+		// Given
+		AsyncAirportUploader unit = new AsyncAirportUploader(baseUrl, 1, 3);
+		unit.close();
+
+		// When
+		unit.upload(csv("BOS", "EWR", "JFK"));
+
+		// Then
+		assertEquals(3, unit.getFailed());
+	}
+
+	private static ByteArrayInputStream csv(String... codes) {
+		StringBuilder body = new StringBuilder();
+		for (String code : codes) {
+			body.append(line(code)).append('\n');
+		}
+		return new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String line(String code) {
+		return "1,\"Airport\",\"City\",\"Country\",\"" + code + "\",\"K" + code + "\",42.36,-71.0,19,-5,\"A\"";
+	}
+
+	@Path("/airports")
+	public static class StubAirports {
+
+		private final Map<String, Queue<Integer>> statuses = new ConcurrentHashMap<>();
+
+		private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+
+		void script(String code, Integer... responses) {
+			statuses.put(code, new ConcurrentLinkedQueue<>(Arrays.asList(responses)));
+		}
+
+		int attempts(String code) {
+			AtomicInteger count = attempts.get(code);
+			return count == null ? 0 : count.get();
+		}
+
+		@POST
+		public Response createAirport(String airportJson) throws InterruptedException {
+			String code = gson.fromJson(airportJson, Airport.class).getIataCode();
+			attempts.computeIfAbsent(code, k -> new AtomicInteger()).incrementAndGet();
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				// keeps requests overlapping
+				Thread.sleep(10);
+			} finally {
+				inFlight.decrementAndGet();
+			}
+			Queue<Integer> scripted = statuses.get(code);
+			Integer status = scripted == null ? null : scripted.poll();
+			return Response.status(status == null ? Response.Status.CREATED.getStatusCode() : status).build();
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.crossover.trial.weather.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.client.LoadGenerator.Operation;
+import com.crossover.trial.weather.metrics.LatencyHistogram;
+
+public class LoadGeneratorTest {
+
+	@Test
+	public void testRecordCorrectedAddsMissedRequests() {
+		// Given
+		LatencyHistogram histogram = new LatencyHistogram();
+		long interval = TimeUnit.MILLISECONDS.toNanos(1);
+
+		// When
+		for (int i = 0; i < 99; i++) {
+			LoadGenerator.recordCorrected(histogram, interval / 2, interval);
+		}
+		LoadGenerator.recordCorrected(histogram, 100 * interval, interval);
+
+		// Then
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		// the stall also delayed the 99 requests which would have been sent during it
+		assertEquals(99 + 100, snapshot.getCount());
+		assertEquals(99, snapshot.getCountBelow(interval));
+		assertEquals(99 + 50, snapshot.getCountBelow(TimeUnit.MILLISECONDS.toNanos(51)), 2);
+	}
+
+	@Test
+	public void testParseMix() {
+		// When
+		Map<Operation, Integer> mix = LoadGenerator.parseMix("radius=3, stats=1");
+
+		// Then
+		assertEquals(2, mix.size());
+		assertEquals(Integer.valueOf(3), mix.get(Operation.RADIUS_QUERY));
+		assertEquals(Integer.valueOf(1), mix.get(Operation.STATS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseMixWithUnknownOperation() {
+		LoadGenerator.parseMix("delete=1");
+	}
+}
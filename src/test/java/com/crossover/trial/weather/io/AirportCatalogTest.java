@@ -0,0 +1,43 @@
+package com.crossover.trial.weather.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.DST;
+
+public class AirportCatalogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWriteAndOpen() throws Exception {
+		// Given
+		Airport jfk = new Airport.Builder().withIataCode("JFK").withIcaoCode("KJFK").withCity("New York")
+				.withCountry("United States").withLatitude(40.639751).withLongitude(-73.778925).withAltitude(13)
+				.withUtcOffset("-5").withDst(DST.A).build();
+		Airport lga = new Airport.Builder().withIataCode("LGA").withCity("New York").withLatitude(40.777245)
+				.withLongitude(-73.872608).withDst(null).build();
+		Path file = folder.newFile("airports.bin").toPath();
+
+		// When
+		AirportCatalog.write(Arrays.asList(jfk, lga), file);
+		AirportCatalog catalog = AirportCatalog.open(file);
+
+		// Then
+		assertEquals(2, catalog.size());
+		assertEquals("LGA", catalog.getIataCode(1));
+		assertEquals(jfk, catalog.getAirport(0));
+		assertEquals(lga, catalog.getAirport(1));
+		// the city is stored and decoded once
+		assertSame(catalog.getAirport(0).getCity(), catalog.getAirport(1).getCity());
+	}
+}
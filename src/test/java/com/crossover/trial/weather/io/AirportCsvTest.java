@@ -0,0 +1,43 @@
+package com.crossover.trial.weather.io;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.DST;
+
+public class AirportCsvTest {
+
+	@Test
+	public void testParse() {
+		// When
+		Airport airport = AirportCsv.parse(
+				"1,\"General Edward Lawrence Logan Intl\",\"Boston\",\"United States\",\"BOS\",\"KBOS\",42.364347,-71.005181,19,-5,\"A\"");
+
+		// Then
+		assertEquals("BOS", airport.getIataCode());
+		assertEquals("KBOS", airport.getIcaoCode());
+		assertEquals("Boston", airport.getCity());
+		assertEquals(42.364347, airport.getLatitude(), 0);
+		assertEquals(-71.005181, airport.getLongitude(), 0);
+		assertEquals(DST.A, airport.getDst());
+	}
+
+	@Test
+	public void testParseQuotedComma() {
+		// When
+		Airport airport = AirportCsv.parse(
+				"3,\"Washington Dulles Intl\",\"Washington, D.C.\",\"United States\",\"IAD\",\"KIAD\",38.9445,-77.4558,312,-5,\"A\"");
+
+		// Then
+		assertEquals("IAD", airport.getIataCode());
+		assertEquals("Washington, D.C.", airport.getCity());
+		assertEquals(-77.4558, airport.getLongitude(), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseLineWithMissingColumns() {
+		AirportCsv.parse("1,\"Logan\",\"Boston\"");
+	}
+}
@@ -0,0 +1,122 @@
+package com.crossover.trial.weather.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class CsvParserTest {
+
+	@Test
+	public void testQuotedFields() throws Exception {
+		// Given
+		CsvParser unit = CsvParser.of("1,\"a, b\",\"say \"\"hi\"\"\",\"two\nlines\"\r\n\r\n2,,x\n");
+
+		// When / Then
+		assertTrue(unit.next());
+		assertEquals(4, unit.getFieldCount());
+		assertEquals(1.0, unit.getDouble(0), 0);
+		assertEquals("a, b", unit.getString(1));
+		assertEquals("say \"hi\"", unit.getString(2));
+		assertTrue(unit.fieldEquals(2, "say \"hi\""));
+		assertEquals("two\nlines", unit.getString(3));
+		assertEquals(1, unit.getLineNumber());
+
+		assertTrue(unit.next());
+		assertEquals(4, unit.getLineNumber());
+		assertEquals(3, unit.getFieldCount());
+		assertEquals("", unit.getString(1));
+		assertTrue(unit.fieldEquals(2, "x"));
+		assertEquals("2,,x", unit.getLine());
+		assertFalse(unit.next());
+	}
+
+	@Test
+	public void testRecordsAcrossBufferRefills() throws Exception {
+		// Given
+		String content = content(200);
+		CsvParser unit = new CsvParser(new StringReader(content), 7);
+
+		// When
+		List<String> lines = new ArrayList<>();
+		while (unit.next()) {
+			lines.add(unit.getString(0) + "|" + unit.getString(1) + "|" + unit.getDouble(2));
+		}
+
+		// Then
+		assertEquals(sequential(content), lines);
+	}
+
+	@Test
+	public void testParallelParseKeepsOrder() throws Exception {
+		// Given
+		String content = content(20000);
+
+		// When
+		List<String> lines = CsvParser.parse(new StringReader(content), new ForkJoinPool(4),
+				record -> record.getString(0) + "|" + record.getString(1) + "|" + record.getDouble(2));
+
+		// Then
+		assertEquals(20000, lines.size());
+		assertEquals(sequential(content), lines);
+	}
+
+	@Test
+	public void testGetDoubleMatchesParseDouble() throws Exception {
+		// Given
+		Random random = new Random(42);
+		StringBuilder content = new StringBuilder("-0,1e3, 12.5 ,0.1,123456789012345678,4.\n");
+		for (int i = 0; i < 1000; i++) {
+			content.append(random.nextDouble() * 360 - 180).append(',')
+					.append(String.format("%.6f", random.nextDouble() * 100)).append('\n');
+		}
+		CsvParser unit = CsvParser.of(content.toString());
+
+		// When / Then
+		while (unit.next()) {
+			for (int i = 0; i < unit.getFieldCount(); i++) {
+				assertEquals(Double.parseDouble(unit.getString(i)), unit.getDouble(i), 0);
+			}
+		}
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testGetDoubleOfText() throws Exception {
+		CsvParser unit = CsvParser.of("abc");
+		unit.next();
+		unit.getDouble(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingField() throws Exception {
+		CsvParser unit = CsvParser.of("a,b");
+		unit.next();
+		unit.getString(2);
+	}
+
+	/** lines with quoted commas and line breaks */
+	private static String content(int lines) {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			content.append(i).append(",\"name ").append(i).append(i % 3 == 0 ? ",\nquoted \"\"x\"\"" : "")
+					.append("\",").append(i * 0.25).append(i % 2 == 0 ? "\r\n" : "\n");
+		}
+		return content.toString();
+	}
+
+	private static List<String> sequential(String content) throws Exception {
+		List<String> lines = new ArrayList<>();
+		CsvParser parser = CsvParser.of(content);
+		while (parser.next()) {
+			lines.add(parser.getString(0) + "|" + parser.getString(1) + "|" + parser.getDouble(2));
+		}
+		return lines;
+	}
+}
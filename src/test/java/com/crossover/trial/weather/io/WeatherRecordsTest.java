@@ -0,0 +1,52 @@
+package com.crossover.trial.weather.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherUpdate;
+
+public class WeatherRecordsTest {
+
+	@Test
+	public void testWriteAndRead() {
+		// Given
+		WeatherUpdate update = new WeatherUpdate.Builder().withIata("BOS")
+				.withDataPoint(new DataPoint.Builder(DataPointType.PRESSURE).withFirst(700).withSecond(720).withLast(740).withMean(719.5).withCount(12).build())
+				.withTimestamp(1_500_000_000_000L).build();
+		ByteBuffer buffer = ByteBuffer.allocate(WeatherRecords.RECORD_BYTES);
+
+		// When
+		WeatherRecords.write(buffer, update);
+		buffer.flip();
+		WeatherUpdate read = WeatherRecords.read(buffer);
+
+		// Then
+		assertEquals(update, read);
+		assertEquals(WeatherRecords.RECORD_BYTES, buffer.position());
+	}
+
+	@Test
+	public void testInvalidRecordIsSkipped() {
+		// Given
+		ByteBuffer buffer = ByteBuffer.allocate(WeatherRecords.RECORD_BYTES);
+		buffer.put(new byte[] { 'B', 'O', 'S', (byte) DataPointType.HUMIDITY.ordinal() }).putDouble(Double.NaN);
+		buffer.clear();
+
+		// When
+		String error = null;
+		try {
+			WeatherRecords.read(buffer);
+		} catch (IllegalArgumentException e) {
+			error = e.getMessage();
+		}
+
+		// Then
+		assertEquals("Humidity is out of allowed range", error);
+		assertEquals(WeatherRecords.RECORD_BYTES, buffer.position());
+	}
+}
@@ -0,0 +1,42 @@
+package com.crossover.trial.weather.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBucketBoundaries() {
+		for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT - 1; bucket++) {
+			long lower = LatencyHistogram.lowerBoundOf(bucket);
+			long upper = LatencyHistogram.upperBoundOf(bucket);
+			assertEquals(bucket, LatencyHistogram.bucketOf(lower));
+			assertEquals(bucket, LatencyHistogram.bucketOf(upper - 1));
+			assertTrue(upper - lower <= Math.max(1, lower / LatencyHistogram.SUB_BUCKETS));
+		}
+		assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testSnapshot() {
+		// Given
+		LatencyHistogram unit = new LatencyHistogram();
+
+		// When
+		for (int i = 1; i <= 100; i++) {
+			unit.record(i * 1000L);
+		}
+		unit.record(-5);
+
+		// Then
+		LatencyHistogram.Snapshot snapshot = unit.snapshot();
+		assertEquals(101, snapshot.getCount());
+		assertEquals(5050 * 1000L, snapshot.getTotalNanos());
+		// the negative value is counted as 0
+		assertEquals(33, snapshot.getCountBelow(32768));
+		assertEquals(50000, snapshot.getValueAtPercentile(50), 50000 / LatencyHistogram.SUB_BUCKETS);
+		assertEquals(100000, snapshot.getMaxValue(), 100000 / LatencyHistogram.SUB_BUCKETS);
+	}
+}
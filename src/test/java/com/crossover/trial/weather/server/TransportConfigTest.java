@@ -0,0 +1,54 @@
+package com.crossover.trial.weather.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.net.URI;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.Test;
+
+import com.crossover.trial.weather.server.TransportConfig.ExecutionMode;
+
+public class TransportConfigTest {
+
+	private static final URI BASE_URI = URI.create("http://localhost:8080/");
+
+	@Test
+	public void testConfigurePool() {
+		// Given
+		TransportConfig unit = new TransportConfig.Builder().withSelectorThreads(3).withWorkerThreads(24)
+				.withQueueLimit(100).build();
+
+		// When
+		HttpServer server = unit.createHttpServer(BASE_URI, new ResourceConfig());
+
+		// Then
+		TCPNIOTransport transport = server.getListener("grizzly").getTransport();
+		assertEquals(3, transport.getSelectorRunnersCount());
+		ThreadPoolConfig pool = transport.getWorkerThreadPoolConfig();
+		assertEquals(24, pool.getCorePoolSize());
+		assertEquals(24, pool.getMaxPoolSize());
+		assertEquals(100, pool.getQueueLimit());
+	}
+
+	@Test
+	public void testVirtualModeOrPoolFallback() {
+		// Given
+		TransportConfig unit = new TransportConfig.Builder().withMode(ExecutionMode.VIRTUAL).withWorkerThreads(8).build();
+
+		// When
+		HttpServer server = unit.createHttpServer(BASE_URI, new ResourceConfig());
+
+		// Then
+		TCPNIOTransport transport = server.getListener("grizzly").getTransport();
+		if (TransportConfig.newVirtualThreadPerTaskExecutor() == null) {
+			assertEquals(8, transport.getWorkerThreadPoolConfig().getMaxPoolSize());
+		} else {
+			assertNotNull(transport.getWorkerThreadPool());
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.crossover.trial.weather.server.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.Airport;
+
+public class AirportGridIndexTest {
+
+	private static final double[] RADII = { 0, 1, 13.4, 150, 1000, 5000, 12000, 20000, 1e9 };
+
+	private AirportGridIndex unit;
+
+	private List<Airport> airports;
+
+	@Before
+	public void setUp() {
+		unit = new AirportGridIndex();
+		airports = new ArrayList<>();
+
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			Airport airport = new Airport.Builder().withIataCode("A" + i)
+					.withLatitude(random.nextDouble() * 180 - 90)
+					.withLongitude(random.nextDouble() * 360 - 180)
+					.build();
+			airports.add(airport);
+			unit.add(airport);
+		}
+		// corner cases: poles, date line and coordinates out of range
+		double[][] coordinates = { { 90, 0 }, { -90, 10 }, { 89.99, 179.99 }, { 0, 180 }, { 0, -180 }, { 1231.123, -123.33 } };
+		for (int i = 0; i < coordinates.length; i++) {
+			Airport airport = new Airport.Builder().withIataCode("C" + i)
+					.withLatitude(coordinates[i][0])
+					.withLongitude(coordinates[i][1])
+					.build();
+			airports.add(airport);
+			unit.add(airport);
+		}
+	}
+
+	@Test
+	public void testFindWithinMatchesLinearScan() {
+		for (Airport center : airports) {
+			for (double radius : RADII) {
+				assertEquals(linearScan(center, radius), identitySet(unit.findWithin(center, radius)));
+			}
+		}
+	}
+
+	@Test
+	public void testRemovedAirportIsNotFound() {
+		// Given
+		Airport center = airports.get(0);
+		unit.remove(center);
+
+		// When
+		List<Airport> result = unit.findWithin(center, 100);
+
+		// Then
+		assertFalse(result.contains(center));
+	}
+
+	private Set<Airport> linearScan(Airport center, double radius) {
+		Set<Airport> result = identitySet(new ArrayList<>());
+		for (Airport airport : airports) {
+			if (GeoDistance.calculateDistance(center, airport) <= radius) {
+				result.add(airport);
+			}
+		}
+		return result;
+	}
+
+	private static Set<Airport> identitySet(Collection<Airport> airports) {
+		Set<Airport> result = Collections.newSetFromMap(new IdentityHashMap<>());
+		result.addAll(airports);
+		return result;
+	}
+}
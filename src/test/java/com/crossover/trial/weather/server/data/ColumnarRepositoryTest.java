@@ -0,0 +1,165 @@
+package com.crossover.trial.weather.server.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+
+public class ColumnarRepositoryTest {
+
+	private final ColumnarRepository unit = new ColumnarRepository();
+
+	@Test
+	public void testUpdateAndRead() {
+		// Given
+		DataPoint wind = new DataPoint.Builder(DataPointType.WIND).withFirst(1).withSecond(2).withLast(3).withMean(2.5).withCount(10).build();
+		DataPoint pressure = new DataPoint.Builder(DataPointType.PRESSURE).withMean(720).build();
+
+		// When
+		unit.updateAtmosphericInformation("BOS", wind);
+		unit.updateAtmosphericInformation("BOS", pressure);
+
+		// Then
+		AtmosphericInformation ai = unit.getAtmosphericInformationByIataCode("BOS");
+		assertEquals(wind, ai.getWind());
+		assertEquals(pressure, ai.getPressure());
+		assertNull(ai.getTemperature());
+		assertTrue(ai.getLastUpdateTime() > 0);
+		assertEquals(ai.getVersion(), unit.getAtmosphericInformationVersion("BOS"));
+		assertEquals(ai.getLastUpdateTime(), unit.getAtmosphericInformationLastUpdateTime("BOS"));
+		assertEquals(1, unit.getAllAtmosphericInformation().size());
+		assertEquals(1, unit.getDataSize());
+	}
+
+	@Test
+	public void testIgnoreDataPointOlderThanStoredOne() {
+		// Given
+		DataPoint wind = new DataPoint.Builder(DataPointType.WIND).withMean(4).build();
+		DataPoint olderWind = new DataPoint.Builder(DataPointType.WIND).withMean(8).build();
+		DataPoint olderPressure = new DataPoint.Builder(DataPointType.PRESSURE).withMean(720).build();
+		unit.updateAtmosphericInformation("BOS", wind, 2000);
+		long version = unit.getAtmosphericInformationVersion("BOS");
+
+		// When
+		unit.updateAtmosphericInformation("BOS", olderWind, 1000);
+
+		// Then
+		assertEquals(wind, unit.getAtmosphericInformationByIataCode("BOS").getWind());
+		assertEquals(version, unit.getAtmosphericInformationVersion("BOS"));
+
+		// When
+		unit.updateAtmosphericInformation("BOS", olderPressure, 1500);
+
+		// Then
+		AtmosphericInformation ai = unit.getAtmosphericInformationByIataCode("BOS");
+		assertEquals(olderPressure, ai.getPressure());
+		assertEquals(2000, ai.getDataPointTime(DataPointType.WIND));
+		assertEquals(1500, ai.getDataPointTime(DataPointType.PRESSURE));
+		assertEquals(2000, ai.getLastUpdateTime());
+	}
+
+	@Test
+	public void testUnknownAirportHasNoInformation() {
+		AtmosphericInformation ai = unit.getAtmosphericInformationByIataCode("BOS");
+
+		assertEquals(new AtmosphericInformation.Builder().build(), ai);
+		assertEquals(0, unit.getAtmosphericInformationVersion("BOS"));
+		assertEquals(0, unit.getAtmosphericInformationLastUpdateTime("BOS"));
+	}
+
+	@Test
+	public void testReuseIdsOfDeletedNonIataAirports() {
+		// Given
+		ColumnarRepository unit = new ColumnarRepository(1);
+		DataPoint wind = new DataPoint.Builder(DataPointType.WIND).withMean(4).build();
+		unit.saveAirport(new Airport.Builder().withIataCode("KBOS").build());
+		unit.updateAtmosphericInformation("KBOS", wind);
+
+		// When
+		unit.deleteAirport("KBOS");
+		unit.saveAirport(new Airport.Builder().withIataCode("KJFK").build());
+		unit.updateAtmosphericInformation("KJFK", wind);
+
+		// Then
+		assertEquals(wind, unit.getAtmosphericInformationByIataCode("KJFK").getWind());
+		assertEquals(new AtmosphericInformation.Builder().build(), unit.getAtmosphericInformationByIataCode("KBOS"));
+		assertEquals(1, unit.getAllAtmosphericInformation().size());
+		assertEquals(1, unit.getDataSize());
+	}
+
+	@Test
+	public void testUnknownNonIataCodeTakesNoId() {
+		// Given
+		ColumnarRepository unit = new ColumnarRepository(1);
+		DataPoint wind = new DataPoint.Builder(DataPointType.WIND).withMean(4).build();
+
+		// When
+		try {
+			unit.updateAtmosphericInformation("XXXX", wind);
+			fail("Weather of an unknown airport must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		unit.saveAirport(new Airport.Builder().withIataCode("KBOS").build());
+		unit.updateAtmosphericInformation("KBOS", wind);
+
+		// Then
+		assertEquals(wind, unit.getAtmosphericInformationByIataCode("KBOS").getWind());
+	}
+
+	@Test
+	public void testConcurrentRequestAndRadiusCountsAreExact() throws Exception {
+		// Given
+		int threads = 8;
+		int increments = 10000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> writers = new ArrayList<>();
+
+		// When
+		for (int thread = 0; thread < threads; thread++) {
+			writers.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < increments; i++) {
+					// the counters are created by whichever thread comes first
+					unit.incrementRequestCount("BOS");
+					unit.incrementRequestCount("KBOS");
+					unit.incrementRadiusCount(i % 2 == 0 ? 5 : 15);
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> writer : writers) {
+			writer.get();
+		}
+		executor.shutdown();
+
+		// Then
+		assertEquals(threads * increments, unit.getRequestCount("BOS"));
+		assertEquals(threads * increments, unit.getRequestCount("KBOS"));
+		assertEquals(Long.valueOf(threads * increments), unit.getRequestCounts().get("KBOS"));
+		long[] radiusCounts = unit.getRadiusHistogram();
+		assertEquals(threads * increments / 2, radiusCounts[0]);
+		assertEquals(threads * increments / 2, radiusCounts[1]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOutOfRangeDataPointIsRejected() {
+		unit.updateAtmosphericInformation("BOS", new DataPoint.Builder(DataPointType.HUMIDITY).withMean(101).build());
+	}
+}
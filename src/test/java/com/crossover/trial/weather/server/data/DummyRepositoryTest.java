@@ -0,0 +1,88 @@
+package com.crossover.trial.weather.server.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+
+public class DummyRepositoryTest {
+
+	/** the repository is a singleton, codes unused by other tests keep them apart */
+	private final Repository unit = DummyRepository.getInstance();
+
+	@Test
+	public void testConcurrentWritersOfIataCode() throws Exception {
+		assertConcurrentWritersLoseNoDataPoint("ZZA");
+	}
+
+	@Test
+	public void testConcurrentWritersOfOtherCode() throws Exception {
+		assertConcurrentWritersLoseNoDataPoint("ZZZZ");
+	}
+
+	/**
+	 * Every writer updates its own data point type of the same airport, so
+	 * every CAS races with the others. A lost update would drop the data point
+	 * of another type.
+	 */
+	private void assertConcurrentWritersLoseNoDataPoint(String iataCode) throws Exception {
+		// Given
+		DataPointType[] types = { DataPointType.WIND, DataPointType.TEMPERATURE, DataPointType.HUMIDITY,
+				DataPointType.CLOUDCOVER };
+		int updates = 10000;
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(types.length + 1);
+		CountDownLatch ready = new CountDownLatch(1);
+		AtomicBoolean writing = new AtomicBoolean(true);
+		List<Future<?>> writers = new ArrayList<>();
+
+		// When
+		Future<?> reader = executor.submit(() -> {
+			long previous = 0;
+			while (writing.get()) {
+				long version = unit.getAtmosphericInformationByIataCode(iataCode).getVersion();
+				assertTrue("Version went back from " + previous + " to " + version, version >= previous);
+				previous = version;
+			}
+			return null;
+		});
+		for (DataPointType type : types) {
+			writers.add(executor.submit(() -> {
+				ready.await();
+				for (int i = 0; i < updates; i++) {
+					unit.updateAtmosphericInformation(iataCode,
+							new DataPoint.Builder(type).withMean(i % 50).withCount(i).build(), start + i);
+				}
+				return null;
+			}));
+		}
+		ready.countDown();
+		for (Future<?> writer : writers) {
+			writer.get();
+		}
+		writing.set(false);
+		reader.get();
+		executor.shutdown();
+
+		// Then
+		AtmosphericInformation ai = unit.getAtmosphericInformationByIataCode(iataCode);
+		DataPoint[] dataPoints = { ai.getWind(), ai.getTemperature(), ai.getHumidity(), ai.getCloudCover() };
+		for (int i = 0; i < types.length; i++) {
+			assertEquals(updates - 1, dataPoints[i].getCount());
+			assertEquals(start + updates - 1, ai.getDataPointTime(types[i]));
+		}
+		assertEquals(start + updates - 1, ai.getLastUpdateTime());
+	}
+}
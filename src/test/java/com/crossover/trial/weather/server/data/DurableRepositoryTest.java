@@ -0,0 +1,186 @@
+package com.crossover.trial.weather.server.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+
+public class DurableRepositoryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Airport bos = new Airport.Builder().withIataCode("BOS").withCity("Boston").withLatitude(42.36).withLongitude(-71.0).build();
+
+	private final Airport jfk = new Airport.Builder().withIataCode("JFK").withLatitude(40.63).withLongitude(-73.77).build();
+
+	private final DataPoint wind = new DataPoint.Builder(DataPointType.WIND).withMean(4).withCount(10).build();
+
+	private final DataPoint pressure = new DataPoint.Builder(DataPointType.PRESSURE).withMean(720).build();
+
+	private DurableRepository open() throws IOException {
+		return new DurableRepository(new ColumnarRepository(), folder.getRoot().toPath(), TimeUnit.HOURS.toMillis(1));
+	}
+
+	@Test
+	public void testRecoverFromLog() throws Exception {
+		// Given
+		try (DurableRepository unit = open()) {
+			unit.saveAirport(bos);
+			unit.saveAirport(jfk);
+			unit.saveAirport(new Airport.Builder().withIataCode("XXXX").build());
+			unit.updateAtmosphericInformation("BOS", wind, 1000L);
+			unit.updateAtmosphericInformation("XXXX", pressure, 2000L);
+			unit.deleteAirport("JFK");
+		}
+
+		// When
+		try (DurableRepository unit = open()) {
+
+			// Then
+			assertEquals(bos, unit.getAirport("BOS"));
+			assertFalse(unit.airportExists("JFK"));
+			AtmosphericInformation ai = unit.getAtmosphericInformationByIataCode("BOS");
+			assertEquals(wind, ai.getWind());
+			assertEquals(1000L, ai.getLastUpdateTime());
+			assertEquals(pressure, unit.getAtmosphericInformationByIataCode("XXXX").getPressure());
+		}
+	}
+
+	@Test
+	public void testRecoverFromSnapshotAndTornLog() throws Exception {
+		// Given
+		Path directory = folder.getRoot().toPath();
+		try (DurableRepository unit = open()) {
+			unit.saveAirport(bos);
+			unit.updateAtmosphericInformation("BOS", wind, 1000L);
+			unit.snapshot();
+			unit.updateAtmosphericInformation("BOS", pressure, 2000L);
+		}
+		Path tail;
+		try (Stream<Path> files = Files.list(directory)) {
+			tail = files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().reduce((a, b) -> b).get();
+		}
+		Files.write(tail, new byte[] { 0, 0, 0, 36, 3, 'B', 'O' }, StandardOpenOption.APPEND);
+
+		// When
+		try (DurableRepository unit = open()) {
+			unit.saveAirport(jfk);
+		}
+		try (DurableRepository unit = open()) {
+
+			// Then
+			assertEquals(bos, unit.getAirport("BOS"));
+			assertEquals(jfk, unit.getAirport("JFK"));
+			AtmosphericInformation ai = unit.getAtmosphericInformationByIataCode("BOS");
+			assertEquals(wind, ai.getWind());
+			assertEquals(pressure, ai.getPressure());
+			assertEquals(2000L, ai.getLastUpdateTime());
+			assertNull(ai.getTemperature());
+		}
+	}
+
+	@Test
+	public void testRecoverDataPointsWithTheirOwnTimes() throws Exception {
+		// Given
+		DataPoint newerWind = new DataPoint.Builder(DataPointType.WIND).withMean(9).build();
+		try (DurableRepository unit = open()) {
+			unit.saveAirport(bos);
+			unit.updateAtmosphericInformation("BOS", wind, 1000L);
+			unit.updateAtmosphericInformation("BOS", pressure, 2000L);
+			unit.snapshot();
+			unit.updateAtmosphericInformation("BOS", newerWind, 1500L);
+		}
+
+		// When
+		try (DurableRepository unit = open()) {
+
+			// Then
+			AtmosphericInformation ai = unit.getAtmosphericInformationByIataCode("BOS");
+			assertEquals(newerWind, ai.getWind());
+			assertEquals(1500L, ai.getDataPointTime(DataPointType.WIND));
+			assertEquals(pressure, ai.getPressure());
+			assertEquals(2000L, ai.getDataPointTime(DataPointType.PRESSURE));
+			assertEquals(2000L, ai.getLastUpdateTime());
+		}
+	}
+
+	@Test
+	public void testRejectAirportTooLargeForTheLog() throws Exception {
+		// Given
+		char[] city = new char[2 << 20];
+		Arrays.fill(city, 'x');
+		Airport large = new Airport.Builder().withIataCode("LRG").withCity(new String(city)).build();
+
+		try (DurableRepository unit = open()) {
+			// When
+			try {
+				unit.saveAirport(large);
+				fail("An airport too large for the log must be rejected");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+			unit.saveAirport(bos);
+
+			// Then
+			assertFalse(unit.airportExists("LRG"));
+		}
+		try (DurableRepository unit = open()) {
+			assertEquals(bos, unit.getAirport("BOS"));
+		}
+	}
+
+	@Test
+	public void testNotApplyMutationsTheLogRejects() throws Exception {
+		// Given
+		ColumnarRepository delegate = new ColumnarRepository();
+		DurableRepository unit = new DurableRepository(delegate, folder.getRoot().toPath(), TimeUnit.HOURS.toMillis(1));
+		unit.saveAirport(bos);
+		unit.close();
+
+		// When
+		try {
+			unit.updateAtmosphericInformation("BOS", wind, 1000L);
+			fail("Updates of a closed log must be rejected");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			unit.saveAirport(jfk);
+			fail("Airports of a closed log must be rejected");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// Then
+		assertNull(delegate.getAtmosphericInformationByIataCode("BOS").getWind());
+		assertFalse(delegate.airportExists("JFK"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRejectSyncOnceClosed() throws Exception {
+		// Given
+		DurableRepository unit = open();
+		unit.close();
+
+		// When
+		unit.sync();
+	}
+}
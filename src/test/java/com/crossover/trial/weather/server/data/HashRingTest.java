@@ -0,0 +1,72 @@
+package com.crossover.trial.weather.server.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class HashRingTest {
+
+	private static final String[] NODES = { "http://localhost:8081/", "http://localhost:8082/",
+			"http://localhost:8083/" };
+
+	@Test
+	public void testSpreadKeysEvenly() {
+		// Given
+		HashRing<String> unit = HashRing.of(Arrays.asList(NODES));
+
+		// When
+		Map<String, Integer> counts = new HashMap<>();
+		for (int code = 0; code < IataCodec.CAPACITY; code++) {
+			counts.merge(unit.nodeOf(IataCodec.decode(code)), 1, Integer::sum);
+		}
+
+		// Then
+		assertEquals(NODES.length, counts.size());
+		for (int count : counts.values()) {
+			double share = (double) count / IataCodec.CAPACITY;
+			assertTrue("share " + share, share > 0.25 && share < 0.42);
+		}
+	}
+
+	@Test
+	public void testOnlyMoveKeysToAddedNode() {
+		// Given
+		HashRing<String> before = HashRing.of(Arrays.asList(NODES[0], NODES[1]));
+		HashRing<String> after = HashRing.of(Arrays.asList(NODES));
+
+		// When
+		int moved = 0;
+		for (int code = 0; code < IataCodec.CAPACITY; code++) {
+			String key = IataCodec.decode(code);
+			if (!before.nodeOf(key).equals(after.nodeOf(key))) {
+				// Then
+				assertEquals(NODES[2], after.nodeOf(key));
+				moved++;
+			}
+		}
+		double share = (double) moved / IataCodec.CAPACITY;
+		assertTrue("moved " + share, share > 0.25 && share < 0.42);
+	}
+
+	@Test
+	public void testPlacementIgnoresNodeOrder() {
+		// Given
+		HashRing<String> unit = HashRing.of(Arrays.asList(NODES));
+		HashRing<String> reversed = HashRing.of(Arrays.asList(NODES[2], NODES[1], NODES[0]));
+
+		// When / Then
+		for (String key : Arrays.asList("BOS", "EWR", "JFK", "LGA", "MMU")) {
+			assertEquals(unit.nodeOf(key), reversed.nodeOf(key));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectDuplicateNodes() {
+		HashRing.of(Arrays.asList(NODES[0], NODES[0]));
+	}
+}
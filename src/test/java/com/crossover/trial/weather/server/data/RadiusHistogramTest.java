@@ -0,0 +1,49 @@
+package com.crossover.trial.weather.server.data;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RadiusHistogramTest {
+
+	@Test
+	public void testRecordIntoFixedBuckets() {
+		// Given
+		RadiusHistogram unit = new RadiusHistogram();
+
+		// When
+		unit.record(0);
+		unit.record(9.99);
+		unit.record(10);
+		unit.record(999.9);
+		unit.record(1000);
+		unit.record(1e9);
+		unit.record(Double.NaN);
+
+		// Then
+		long[] counts = unit.snapshot();
+		assertEquals(RadiusHistogram.BUCKET_COUNT, counts.length);
+		assertEquals(3, counts[0]);
+		assertEquals(1, counts[1]);
+		assertEquals(1, counts[99]);
+		assertEquals(2, counts[100]);
+	}
+
+	@Test
+	public void testMerge() {
+		// Given
+		RadiusHistogram first = new RadiusHistogram();
+		RadiusHistogram second = new RadiusHistogram();
+		first.record(15);
+		second.record(15);
+		second.record(250);
+
+		// When
+		first.merge(second.snapshot());
+
+		// Then
+		long[] counts = first.snapshot();
+		assertEquals(2, counts[1]);
+		assertEquals(1, counts[25]);
+	}
+}
@@ -0,0 +1,100 @@
+package com.crossover.trial.weather.server.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class RecentUpdateCounterTest {
+
+	private static final long MINUTE = 60_000;
+
+	private static final long DAY = 24 * 60 * MINUTE;
+
+	private final RecentUpdateCounter unit = new RecentUpdateCounter(DAY, MINUTE);
+
+	@Test
+	public void testKeyIsCountedOnce() {
+		// When
+		unit.record("BOS", 0);
+		unit.record("BOS", 10 * MINUTE);
+		unit.record("JFK", 20 * MINUTE);
+
+		// Then
+		assertEquals(2, unit.count(30 * MINUTE));
+	}
+
+	@Test
+	public void testUpdatesExpireAfterWindow() {
+		// Given
+		unit.record("BOS", 0);
+		unit.record("JFK", 2 * MINUTE);
+
+		// Then
+		assertEquals(2, unit.count(DAY - 1));
+		assertEquals(1, unit.count(DAY + MINUTE));
+		assertEquals(0, unit.count(DAY + 3 * MINUTE));
+	}
+
+	@Test
+	public void testRefreshedKeyStaysInWindow() {
+		// Given
+		unit.record("BOS", 0);
+		unit.record("BOS", DAY - MINUTE);
+
+		// Then
+		assertEquals(1, unit.count(DAY + MINUTE));
+		assertEquals(0, unit.count(3 * DAY));
+	}
+
+	@Test
+	public void testRemove() {
+		// Given
+		unit.record("BOS", 0);
+
+		// When
+		unit.remove("BOS");
+
+		// Then
+		assertEquals(0, unit.count(MINUTE));
+	}
+
+	@Test
+	public void testConcurrentUpdatesAreCountedOncePerKey() throws Exception {
+		// Given
+		int keys = 500;
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> writers = new ArrayList<>();
+
+		// When
+		for (int thread = 0; thread < 8; thread++) {
+			int offset = thread;
+			writers.add(executor.submit(() -> {
+				for (int i = 0; i < 20 * keys; i++) {
+					// every key moves forward through the buckets, out of order between threads
+					unit.record("K" + (i % keys), (i / keys + offset) * MINUTE);
+					if (i % 7 == 0) {
+						unit.remove("R" + (i % keys));
+					} else {
+						unit.record("R" + (i % keys), (i / keys) * MINUTE);
+					}
+				}
+			}));
+		}
+		for (Future<?> writer : writers) {
+			writer.get();
+		}
+		executor.shutdown();
+		for (int i = 0; i < keys; i++) {
+			unit.remove("R" + i);
+		}
+
+		// Then
+		assertEquals(keys, unit.count(30 * MINUTE));
+	}
+}
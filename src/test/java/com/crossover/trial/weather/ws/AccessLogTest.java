@@ -0,0 +1,101 @@
+package com.crossover.trial.weather.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AccessLogTest {
+
+	private static final long FAST = TimeUnit.MICROSECONDS.toNanos(1234);
+
+	@Test
+	public void testWriteRecords() throws Exception {
+		// Given
+		StringWriter out = new StringWriter();
+		AccessLog unit = new AccessLog(out, 16, 1, 100);
+
+		// When
+		unit.log("GET", URI.create("http://localhost:8080/airports/BOS/weather/0"), 200, FAST);
+		unit.log("PUT", URI.create("http://localhost:8080/airports/BOS/weather?x=1"), 204, 5_000);
+		unit.close();
+
+		// Then
+		String[] lines = out.toString().split("\n");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0], lines[0].endsWith("Z GET /airports/BOS/weather/0 200 1.234ms"));
+		assertTrue(lines[1], lines[1].endsWith("Z PUT /airports/BOS/weather?x=1 204 0.005ms"));
+	}
+
+	@Test
+	public void testAlwaysLogErrorsAndSlowRequests() throws Exception {
+		// Given
+		StringWriter out = new StringWriter();
+		AccessLog unit = new AccessLog(out, 16, 0, 100);
+		URI uri = URI.create("http://localhost:8080/airports");
+
+		// When
+		assertFalse(unit.log("GET", uri, 200, FAST));
+		assertTrue(unit.log("GET", uri, 404, FAST));
+		assertTrue(unit.log("GET", uri, 200, TimeUnit.MILLISECONDS.toNanos(100)));
+		unit.close();
+
+		// Then
+		String[] lines = out.toString().split("\n");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0].endsWith(" 404 1.234ms"));
+		assertTrue(lines[1].endsWith(" 200 100.000ms"));
+	}
+
+	@Test
+	public void testDropRecordsWhenFull() throws Exception {
+		// Given
+		CountDownLatch blocked = new CountDownLatch(1);
+		List<String> written = new ArrayList<>();
+		Writer out = new Writer() {
+			@Override
+			public void write(char[] buffer, int offset, int length) {
+				written.add(new String(buffer, offset, length));
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() throws IOException {
+			}
+		};
+		AccessLog unit = new AccessLog(out, 4, 1, 100);
+		URI uri = URI.create("http://localhost:8080/airports");
+
+		// When
+		int logged = 0;
+		for (int i = 0; i < 100; i++) {
+			logged += unit.log("GET", uri, 200, FAST) ? 1 : 0;
+		}
+		blocked.countDown();
+		unit.close();
+
+		// Then
+		// at most one record taken by the blocked writer plus a full buffer
+		assertTrue(String.valueOf(logged), logged <= 5);
+		assertEquals(100 - logged, unit.getDropped());
+		assertEquals(logged, written.size());
+	}
+}
@@ -0,0 +1,132 @@
+package com.crossover.trial.weather.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import com.crossover.trial.weather.metrics.EndpointMetrics;
+import com.crossover.trial.weather.metrics.RouteMetrics;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MetricsFilterTest {
+
+	@Mock
+	private ResourceInfo resourceInfo;
+
+	@Mock
+	private ContainerRequestContext request;
+
+	@Mock
+	private ContainerResponseContext response;
+
+	@Mock
+	private WriterInterceptorContext writerContext;
+
+	private final Map<String, Object> properties = new HashMap<>();
+
+	private EndpointMetrics metrics;
+
+	private MetricsFilter unit;
+
+	@Before
+	public void setUp() {
+		metrics = new EndpointMetrics("weather_http");
+		unit = new MetricsFilter(metrics, resourceInfo);
+		when(request.getProperty(anyString())).thenAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) {
+				return properties.get(invocation.getArguments()[0]);
+			}
+		});
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				properties.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+				return null;
+			}
+		}).when(request).setProperty(anyString(), any());
+	}
+
+	@Test
+	public void testRecordMatchedRequest() throws Exception {
+		// Given
+		doReturn(RestAirportsEndpoint.class).when(resourceInfo).getResourceClass();
+		when(resourceInfo.getResourceMethod()).thenReturn(RestAirportsEndpoint.class.getMethod("getAirport", String.class));
+		when(response.getStatus()).thenReturn(404);
+
+		// When
+		unit.filter(request);
+		RouteMetrics route = metrics.route("GET /airports/{iata}");
+		assertEquals(1, route.getInFlight());
+		unit.filter(request, response);
+
+		// Then
+		assertEquals(0, route.getInFlight());
+		assertEquals(1, route.getStatusCount(404));
+		assertEquals(1, route.getLatency().getCount());
+	}
+
+	@Test
+	public void testRecordStreamedResponseAfterWriting() throws Exception {
+		// Given
+		doReturn(RestAirportsEndpoint.class).when(resourceInfo).getResourceClass();
+		when(resourceInfo.getResourceMethod()).thenReturn(RestAirportsEndpoint.class.getMethod("getAirports", String.class, String.class));
+		when(response.getStatus()).thenReturn(200);
+		when(response.hasEntity()).thenReturn(true);
+		when(writerContext.getProperty(anyString())).thenAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) {
+				return properties.get(invocation.getArguments()[0]);
+			}
+		});
+
+		// When
+		unit.filter(request);
+		unit.filter(request, response);
+		RouteMetrics route = metrics.route("GET /airports");
+		assertEquals(1, route.getInFlight());
+		unit.aroundWriteTo(writerContext);
+
+		// Then
+		verify(writerContext).proceed();
+		assertEquals(0, route.getInFlight());
+		assertEquals(1, route.getStatusCount(200));
+	}
+
+	@Test
+	public void testRecordUnmatchedRequest() throws Exception {
+		// Given
+		when(response.getStatus()).thenReturn(404);
+
+		// When
+		unit.filter(request);
+		unit.filter(request, response);
+
+		// Then
+		StringWriter out = new StringWriter();
+		metrics.writePrometheus(out);
+		assertTrue(out.toString().contains("weather_http_responses_total{route=\"unmatched\",code=\"404\"} 1\n"));
+	}
+}
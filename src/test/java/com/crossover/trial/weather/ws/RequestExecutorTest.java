@@ -0,0 +1,102 @@
+package com.crossover.trial.weather.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class RequestExecutorTest {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private RequestExecutor unit;
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		if (unit != null) {
+			unit.close();
+		}
+	}
+
+	private Response blocked() {
+		try {
+			release.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return Response.ok().build();
+	}
+
+	@Test
+	public void testDirectResumesOnCallingThread() {
+		// Given
+		AsyncResponse response = mock(AsyncResponse.class);
+		Response ok = Response.ok().build();
+
+		// When
+		RequestExecutor.direct().execute(response, () -> ok);
+
+		// Then
+		verify(response).resume(ok);
+	}
+
+	@Test
+	public void testRejectWhenQueueIsFull() {
+		// Given
+		unit = new RequestExecutor("test", 1, 1, 0, 3);
+		AsyncResponse running = mock(AsyncResponse.class);
+		AsyncResponse waiting = mock(AsyncResponse.class);
+		AsyncResponse rejected = mock(AsyncResponse.class);
+		unit.execute(running, this::blocked);
+		unit.execute(waiting, this::blocked);
+
+		// When
+		unit.execute(rejected, this::blocked);
+
+		// Then
+		Response response = captureResponse(rejected);
+		assertEquals(Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+		assertEquals("3", String.valueOf(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)));
+		assertEquals(1, unit.getRejected());
+
+		release.countDown();
+		assertEquals(Status.OK.getStatusCode(), captureResponse(waiting).getStatus());
+	}
+
+	@Test
+	public void testRejectAfterMaximumQueueTime() throws Exception {
+		// Given
+		unit = new RequestExecutor("test", 1, 10, 50, 1);
+		AsyncResponse running = mock(AsyncResponse.class);
+		AsyncResponse waiting = mock(AsyncResponse.class);
+		unit.execute(running, this::blocked);
+		unit.execute(waiting, () -> Response.ok().build());
+
+		// When
+		TimeUnit.MILLISECONDS.sleep(100);
+		release.countDown();
+
+		// Then
+		assertEquals(Status.SERVICE_UNAVAILABLE.getStatusCode(), captureResponse(waiting).getStatus());
+		assertEquals(Status.OK.getStatusCode(), captureResponse(running).getStatus());
+	}
+
+	private static Response captureResponse(AsyncResponse response) {
+		ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+		verify(response, timeout(5000)).resume(captor.capture());
+		return captor.getValue();
+	}
+}
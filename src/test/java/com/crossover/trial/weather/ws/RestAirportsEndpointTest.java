@@ -1,18 +1,33 @@
 package com.crossover.trial.weather.ws;
 
 import static org.junit.Assert.assertEquals;
-import static org.mockito.Matchers.anyDouble;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -20,12 +35,18 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.crossover.trial.weather.io.AirportCsv;
+import com.crossover.trial.weather.io.WeatherRecords;
 import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.DST;
 import com.crossover.trial.weather.model.AtmosphericInformation;
 import com.crossover.trial.weather.model.DataPoint;
 import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherUpdate;
 import com.crossover.trial.weather.server.data.Repository;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 
 @RunWith(MockitoJUnitRunner.class)
 public class RestAirportsEndpointTest {
@@ -38,6 +59,13 @@ public class RestAirportsEndpointTest {
 
 	private static final Gson gson = new Gson();
 
+	/** renders the streamed response body */
+	private static String entityOf(Response response) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		((StreamingOutput) response.getEntity()).write(output);
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
 	@Test
 	public void testPing() throws Exception {
 		// When
@@ -48,7 +76,7 @@ public class RestAirportsEndpointTest {
 	}
 
 	@Test
-	public void testGetExistingAirport() {
+	public void testGetExistingAirport() throws Exception {
 		// Given
 		Airport airport = new Airport.Builder().withCity("NY").build();
 		when(repository.getAirport(anyString())).thenReturn(airport);
@@ -59,7 +87,7 @@ public class RestAirportsEndpointTest {
 		// Then
 		verify(repository).getAirport("DDD");
 		assertEquals(Status.OK.getStatusCode(), response.getStatus());
-		assertEquals(gson.toJson(airport), response.getEntity());
+		assertEquals(gson.toJson(airport), entityOf(response));
 	}
 
 	@Test
@@ -111,6 +139,93 @@ public class RestAirportsEndpointTest {
 		assertEquals(Status.CREATED.getStatusCode(), response.getStatus());
 	}
 	
+	@Test
+	public void testCreateAirportTheRepositoryRejects() {
+		// Given
+		doThrow(new IllegalArgumentException("Record of 2097152 bytes is too large for the log")).when(repository)
+				.saveAirport(anyObject());
+
+		// When
+		Response response = unit.createAirport("{\"iataCode\": \"DDD\"}");
+
+		// Then
+		verify(repository).saveAirport(anyObject());
+		assertEquals(Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+	}
+
+	@Test
+	public void testCreateAirportWithoutCode() {
+		// When
+		Response response = unit.createAirport("{\"iataCode\": \"\"}");
+
+		// Then
+		verify(repository, never()).saveAirport(anyObject());
+		assertEquals(Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+		assertEquals("Airport code is missing", response.getEntity());
+	}
+
+	@Test
+	public void testImportAirportsCsv() throws Exception {
+		// Given
+		when(repository.airportExists("EWR")).thenReturn(true);
+		String csv = "1,\"Logan Intl\",\"Boston\",\"United States\",\"BOS\",\"KBOS\",42.364347,-71.005181,19,-5,\"A\"\n"
+				+ "2,\"Newark Liberty Intl\",\"Newark\",\"United States\",\"EWR\",\"KEWR\",40.6925,-74.168667,18,-5,\"A\"\n"
+				+ "3,\"broken\"\n";
+
+		// When
+		Response response = unit.importAirportsCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+		// Then
+		verify(repository).saveAirport(AirportCsv.parse(csv.split("\n")[0]));
+		verify(repository, times(1)).saveAirport(anyObject());
+		assertEquals(Status.OK.getStatusCode(), response.getStatus());
+		JsonObject result = gson.fromJson(response.getEntity().toString(), JsonObject.class);
+		assertEquals(1, result.get("created").getAsInt());
+		assertEquals("EWR", result.getAsJsonArray("conflicts").get(0).getAsString());
+		assertEquals(3, result.getAsJsonArray("errors").get(0).getAsJsonObject().get("line").getAsInt());
+	}
+
+	@Test
+	public void testImportAirportsCsvWithLineBreaksInQuotedFields() throws Exception {
+		// Given
+		String csv = "1,\"Logan\nIntl\",\"Boston\",\"United States\",\"BOS\",\"KBOS\",42.364347,-71.005181,19,-5,\"A\"\n"
+				+ "\n"
+				+ "2,\"broken\"\n"
+				+ "3,\"Newark\r\nLiberty Intl\",\"Newark\",\"United States\",\"\",\"KEWR\",40.6925,-74.168667,18,-5,\"A\"\n";
+
+		// When
+		Response response = unit.importAirportsCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+		// Then
+		verify(repository).saveAirport(new Airport.Builder().withCity("Boston").withCountry("United States")
+				.withIataCode("BOS").withIcaoCode("KBOS").withLatitude(42.364347).withLongitude(-71.005181)
+				.withAltitude(19).withUtcOffset("-5").withDst(DST.A).build());
+		verify(repository, times(1)).saveAirport(anyObject());
+		JsonObject result = gson.fromJson(response.getEntity().toString(), JsonObject.class);
+		assertEquals(1, result.get("created").getAsInt());
+		JsonArray errors = result.getAsJsonArray("errors");
+		assertEquals(2, errors.size());
+		assertEquals(4, errors.get(0).getAsJsonObject().get("line").getAsInt());
+		assertEquals(5, errors.get(1).getAsJsonObject().get("line").getAsInt());
+		assertEquals("Airport code is missing", errors.get(1).getAsJsonObject().get("error").getAsString());
+	}
+
+	@Test
+	public void testImportAirportsJsonLines() throws Exception {
+		// Given
+		Airport airport = new Airport.Builder().withIataCode("JFK").withLatitude(40.64).withLongitude(-73.78).build();
+		String lines = gson.toJson(airport) + "\n\n{\"city\": \"Nowhere\"}\n";
+
+		// When
+		Response response = unit.importAirportsJsonLines(new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)));
+
+		// Then
+		verify(repository).saveAirport(airport);
+		JsonObject result = gson.fromJson(response.getEntity().toString(), JsonObject.class);
+		assertEquals(1, result.get("created").getAsInt());
+		assertEquals("Airport code is missing", result.getAsJsonArray("errors").get(0).getAsJsonObject().get("error").getAsString());
+	}
+
 	@Test
 	public void testGetAirports() throws Exception {
 		// Given
@@ -122,13 +237,50 @@ public class RestAirportsEndpointTest {
 		when(repository.getAirports()).thenReturn(airports);
 
 		// When
-		Response response = unit.getAirports();
+		Response response = unit.getAirports(null, null);
 
 		// Then
 		verify(repository).getAirports();
 		assertEquals(Status.OK.getStatusCode(), response.getStatus());
 		Object expectedResponse = gson.toJson(Arrays.asList("JFK", "LHR"));
-		assertEquals(expectedResponse, response.getEntity());
+		assertEquals(expectedResponse, new String((byte[]) response.getEntity(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testGetAirportsFromCacheUntilCatalogChanges() throws Exception {
+		// Given
+		when(repository.getAirports()).thenReturn(Arrays.asList(new Airport.Builder().withIataCode("JFK").build()));
+		when(repository.getCatalogVersion()).thenReturn(1L);
+		String etag = unit.getAirports(null, null).getHeaderString(HttpHeaders.ETAG);
+
+		// When
+		Response notModified = unit.getAirports(etag, null);
+		Response gzipped = unit.getAirports("\"other\"", "gzip, deflate");
+		Response gzippedForIdentityTag = unit.getAirports(etag, "gzip");
+		String gzipEtag = gzipped.getHeaderString(HttpHeaders.ETAG);
+		Response gzippedNotModified = unit.getAirports(gzipEtag, "gzip");
+		Response identityForGzipTag = unit.getAirports(gzipEtag, null);
+		when(repository.getCatalogVersion()).thenReturn(2L);
+		Response rebuilt = unit.getAirports(etag, null);
+
+		// Then
+		verify(repository, times(2)).getAirports();
+		assertEquals(Status.NOT_MODIFIED.getStatusCode(), notModified.getStatus());
+		assertEquals(etag, notModified.getHeaderString(HttpHeaders.ETAG));
+		assertEquals(Status.OK.getStatusCode(), gzipped.getStatus());
+		assertEquals("gzip", gzipped.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+		try (InputStream body = new GZIPInputStream(new ByteArrayInputStream((byte[]) gzipped.getEntity()))) {
+			assertEquals("[\"JFK\"]", new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)).readLine());
+		}
+		// each content coding is a representation with its own tag
+		assertNotEquals(etag, gzipEtag);
+		assertEquals(Status.OK.getStatusCode(), gzippedForIdentityTag.getStatus());
+		assertEquals(Status.NOT_MODIFIED.getStatusCode(), gzippedNotModified.getStatus());
+		assertEquals(gzipEtag, gzippedNotModified.getHeaderString(HttpHeaders.ETAG));
+		assertEquals(Status.OK.getStatusCode(), identityForGzipTag.getStatus());
+		assertEquals(null, identityForGzipTag.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+		// same content, same tag
+		assertEquals(Status.NOT_MODIFIED.getStatusCode(), rebuilt.getStatus());
 	}
 
 	@Test
@@ -139,17 +291,10 @@ public class RestAirportsEndpointTest {
 		Airport airport1InRadius = new Airport.Builder().withIataCode("MNL").withLatitude(40.65).withLongitude(-71.1).build();
 		Airport airport2InRadius = new Airport.Builder().withIataCode("LHR").withLatitude(40.68).withLongitude(-70.9).build();
 
-		Airport airport3OutsideRadius = new Airport.Builder().withIataCode("AMS").withLatitude(50.64).withLongitude(-70.9).build();
-
-		Collection<Airport> airports = Arrays.asList(requestedAirport, airport1InRadius, airport2InRadius, airport3OutsideRadius);
+		Collection<Airport> airportsInRadius = Arrays.asList(requestedAirport, airport1InRadius, airport2InRadius);
 
-		int currentRadiusCount = 6;
-		int currentRequestCount = 12;
-
-		when(repository.getRadiusCount(anyDouble())).thenReturn(currentRadiusCount);
-		when(repository.getRequestCount(anyString())).thenReturn(currentRequestCount);
 		when(repository.getAirport(anyString())).thenReturn(requestedAirport);
-		when(repository.getAirports()).thenReturn(airports);
+		when(repository.getAirportsAround(requestedAirport, 13.4d)).thenReturn(airportsInRadius);
 
 		AtmosphericInformation requestedAirportData = new AtmosphericInformation.Builder().withWind(
 				new DataPoint.Builder(DataPointType.WIND).withMean(5).build()).build();
@@ -163,17 +308,16 @@ public class RestAirportsEndpointTest {
 		when(repository.getAtmosphericInformationByIataCode("LHR")).thenReturn(airport2Data);
 
 		// When
-		Response response = unit.getWeatherAround("JFK", "13.4");
+		Response response = unit.getWeatherAround("JFK", "13.4", null, null);
+		String entity = entityOf(response);
 
 		// Then
-		verify(repository).getRadiusCount(13.4d);
-		verify(repository).getRequestCount("JFK");
-		verify(repository).updateRadiusCount(13.4d, currentRadiusCount + 1);
-		verify(repository).updateRequestCount("JFK", currentRequestCount + 1);
+		verify(repository).incrementRadiusCount(13.4d);
+		verify(repository).incrementRequestCount("JFK");
 
 		verify(repository).getAirport("JFK");
 
-		verify(repository).getAirports();
+		verify(repository).getAirportsAround(requestedAirport, 13.4d);
 		verify(repository).getAtmosphericInformationByIataCode("JFK");
 		verify(repository).getAtmosphericInformationByIataCode("MNL");
 		verify(repository).getAtmosphericInformationByIataCode("LHR");
@@ -182,7 +326,65 @@ public class RestAirportsEndpointTest {
 		assertEquals(Status.OK.getStatusCode(), response.getStatus());
 
 		Object expectedResponse = gson.toJson(Arrays.asList(requestedAirportData, airport1Data, airport2Data));
-		assertEquals(expectedResponse.toString(), response.getEntity().toString());
+		assertEquals(expectedResponse.toString(), entity);
+	}
+
+	@Test
+	public void testUpdateWeatherRecords() throws Exception {
+		// Given
+		DataPoint wind = new DataPoint.Builder(DataPointType.WIND).withMean(4).withCount(10).build();
+		DataPoint humidity = new DataPoint.Builder(DataPointType.HUMIDITY).withMean(50).build();
+		ByteBuffer body = ByteBuffer.allocate(WeatherRecords.RECORD_BYTES * 3);
+		WeatherRecords.write(body, new WeatherUpdate.Builder().withIata("BOS").withDataPoint(wind).build());
+		body.put(new byte[] { 'J', 'F', 'K', 42 }).position(WeatherRecords.RECORD_BYTES * 2);
+		WeatherRecords.write(body, new WeatherUpdate.Builder().withIata("LGA").withDataPoint(humidity).withTimestamp(1000L).build());
+		when(repository.airportExists(anyString())).thenReturn(true);
+
+		// When
+		Response response = unit.updateWeatherRecords(new ByteArrayInputStream(body.array()));
+		Response truncated = unit.updateWeatherRecords(new ByteArrayInputStream(body.array(), 0, WeatherRecords.RECORD_BYTES + 1));
+
+		// Then
+		verify(repository, times(2)).updateAtmosphericInformation("BOS", wind);
+		verify(repository).updateAtmosphericInformation("LGA", humidity, 1000L);
+		assertEquals(Status.OK.getStatusCode(), response.getStatus());
+		JsonObject result = gson.fromJson(response.getEntity().toString(), JsonObject.class);
+		assertEquals(2, result.get("accepted").getAsInt());
+		assertEquals(1, result.get("rejected").getAsInt());
+		JsonObject error = result.getAsJsonArray("errors").get(0).getAsJsonObject();
+		assertEquals(1, error.get("index").getAsInt());
+		assertEquals("Unknown data point type 42", error.get("error").getAsString());
+		assertEquals(Status.BAD_REQUEST.getStatusCode(), truncated.getStatus());
+	}
+
+	@Test
+	public void testGetWeatherAroundNotModified() throws Exception {
+		// Given
+		Airport requestedAirport = new Airport.Builder().withIataCode("JFK").withLatitude(40.63).withLongitude(-73.77).build();
+		Airport airportInRadius = new Airport.Builder().withIataCode("LGA").withLatitude(40.77).withLongitude(-73.87).build();
+		when(repository.getAirport("JFK")).thenReturn(requestedAirport);
+		when(repository.getAirportsAround(requestedAirport, 50d)).thenReturn(Arrays.asList(requestedAirport, airportInRadius));
+		when(repository.getCatalogVersion()).thenReturn(3L);
+		when(repository.getAtmosphericInformationVersion("LGA")).thenReturn(7L);
+		when(repository.getAtmosphericInformationLastUpdateTime("LGA")).thenReturn(1_500_000_000_000L);
+		Response first = unit.getWeatherAround("JFK", "50", null, null);
+		String etag = first.getHeaderString(HttpHeaders.ETAG);
+		String lastModified = first.getHeaderString(HttpHeaders.LAST_MODIFIED);
+
+		// When
+		Response byTag = unit.getWeatherAround("JFK", "50", etag, "Thu, 01 Jan 1970 00:00:00 GMT");
+		Response byDate = unit.getWeatherAround("JFK", "50", null, lastModified);
+		when(repository.getAtmosphericInformationVersion("LGA")).thenReturn(8L);
+		Response changed = unit.getWeatherAround("JFK", "50", etag, null);
+
+		// Then
+		assertEquals(Status.OK.getStatusCode(), first.getStatus());
+		assertEquals(Status.NOT_MODIFIED.getStatusCode(), byTag.getStatus());
+		assertEquals(etag, byTag.getHeaderString(HttpHeaders.ETAG));
+		assertEquals(Status.NOT_MODIFIED.getStatusCode(), byDate.getStatus());
+		assertEquals(Status.OK.getStatusCode(), changed.getStatus());
+		// nothing is read or written for a not modified response
+		verify(repository, times(0)).getAtmosphericInformationByIataCode(anyString());
 	}
 
 	@Test
@@ -200,24 +402,167 @@ public class RestAirportsEndpointTest {
 		// Given
 		DataPoint dataPoint = new DataPoint.Builder(DataPointType.PRESSURE).withFirst(4).withMean(720).build();
 		String postData = gson.toJson(dataPoint);
+		when(repository.airportExists("JFK")).thenReturn(true);
 
-		AtmosphericInformation atmosphericInformation = new AtmosphericInformation.Builder().build();
-		
-		when(repository.getAtmosphericInformationByIataCode(anyString())).thenReturn(atmosphericInformation);
-		
 		// When
-		unit.updateWeather("JFK", postData);
+		Response response = unit.updateWeather("JFK", postData);
 
-		// Tnen
-		verify(repository).getAtmosphericInformationByIataCode("JFK");
+		// Then
+		verify(repository).updateAtmosphericInformation("JFK", dataPoint);
+		assertEquals(Status.OK.getStatusCode(), response.getStatus());
 	}
-	
+
+	@Test
+	public void testUpdateWeatherWithInvalidDataPoint() throws Exception {
+		// Given
+		DataPoint dataPoint = new DataPoint.Builder(DataPointType.PRESSURE).withMean(10).build();
+		doThrow(new IllegalArgumentException("Pressure is out of allowed range")).when(repository)
+				.updateAtmosphericInformation("JFK", dataPoint);
+		when(repository.airportExists("JFK")).thenReturn(true);
+
+		// When
+		Response response = unit.updateWeather("JFK", gson.toJson(dataPoint));
+
+		// Then
+		assertEquals(Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+	}
+
+	@Test
+	public void testUpdateWeatherBatch() throws Exception {
+		// Given
+		DataPoint valid = new DataPoint.Builder(DataPointType.PRESSURE).withMean(720).build();
+		DataPoint invalid = new DataPoint.Builder(DataPointType.PRESSURE).withMean(10).build();
+		doThrow(new IllegalArgumentException("Pressure is out of allowed range")).when(repository)
+				.updateAtmosphericInformation("LHR", invalid);
+		String batch = gson.toJson(Arrays.asList(new WeatherUpdate.Builder().withIata("JFK").withDataPoint(valid).build(),
+				new WeatherUpdate.Builder().withIata("LHR").withDataPoint(invalid).build(),
+				new WeatherUpdate.Builder().withIata("BOS").build(),
+				new WeatherUpdate.Builder().withIata("ZZZ").withDataPoint(valid).build()));
+		when(repository.airportExists("JFK")).thenReturn(true);
+		when(repository.airportExists("LHR")).thenReturn(true);
+
+		// When
+		Response response = unit.updateWeather(new ByteArrayInputStream(batch.getBytes(StandardCharsets.UTF_8)));
+
+		// Then
+		verify(repository).updateAtmosphericInformation("JFK", valid);
+		assertEquals(Status.OK.getStatusCode(), response.getStatus());
+		JsonObject result = gson.fromJson(response.getEntity().toString(), JsonObject.class);
+		assertEquals(1, result.get("accepted").getAsInt());
+		assertEquals(3, result.get("rejected").getAsInt());
+		JsonArray items = result.getAsJsonArray("results");
+		assertEquals(200, items.get(0).getAsJsonObject().get("status").getAsInt());
+		assertEquals(400, items.get(1).getAsJsonObject().get("status").getAsInt());
+		assertEquals("Pressure is out of allowed range", items.get(1).getAsJsonObject().get("error").getAsString());
+		assertEquals("Data point is missing", items.get(2).getAsJsonObject().get("error").getAsString());
+		assertEquals("Unknown airport: ZZZ", items.get(3).getAsJsonObject().get("error").getAsString());
+		verify(repository, times(0)).updateAtmosphericInformation("ZZZ", valid);
+	}
+
+	@Test
+	public void testUpdateWeatherOfUnknownAirport() throws Exception {
+		// Given
+		DataPoint dataPoint = new DataPoint.Builder(DataPointType.PRESSURE).withMean(720).build();
+		when(repository.airportExists("ZZZ")).thenReturn(false);
+
+		// When
+		Response response = unit.updateWeather("ZZZ", gson.toJson(dataPoint));
+
+		// Then
+		assertEquals(Status.NOT_FOUND.getStatusCode(), response.getStatus());
+		verify(repository, times(0)).updateAtmosphericInformation("ZZZ", dataPoint);
+	}
+
+	@Test
+	public void testUpdateWeatherBatchOfUnknownAirport() throws Exception {
+		// Given
+		DataPoint dataPoint = new DataPoint.Builder(DataPointType.PRESSURE).withMean(720).build();
+		String batch = gson.toJson(Arrays.asList(new WeatherUpdate.Builder().withIata("ZZZ").withDataPoint(dataPoint).build(),
+				new WeatherUpdate.Builder().withIata("JFK").withDataPoint(dataPoint).build()));
+		when(repository.airportExists("JFK")).thenReturn(true);
+
+		// When
+		Response response = unit.updateWeather(new ByteArrayInputStream(batch.getBytes(StandardCharsets.UTF_8)));
+
+		// Then
+		JsonObject result = gson.fromJson(response.getEntity().toString(), JsonObject.class);
+		JsonArray items = result.getAsJsonArray("results");
+		assertEquals(Status.NOT_FOUND.getStatusCode(), items.get(0).getAsJsonObject().get("status").getAsInt());
+		assertEquals("Unknown airport: ZZZ", items.get(0).getAsJsonObject().get("error").getAsString());
+		assertEquals(Status.OK.getStatusCode(), items.get(1).getAsJsonObject().get("status").getAsInt());
+		assertEquals(1, result.get("rejected").getAsInt());
+		verify(repository, times(0)).updateAtmosphericInformation("ZZZ", dataPoint);
+	}
+
+	@Test
+	public void testUpdateWeatherBatchWithNegativeTimestamp() throws Exception {
+		// Given
+		DataPoint dataPoint = new DataPoint.Builder(DataPointType.PRESSURE).withMean(720).build();
+		String batch = gson.toJson(Collections.singletonList(
+				new WeatherUpdate.Builder().withIata("JFK").withDataPoint(dataPoint).withTimestamp(-1).build()));
+		when(repository.airportExists("JFK")).thenReturn(true);
+
+		// When
+		Response response = unit.updateWeather(new ByteArrayInputStream(batch.getBytes(StandardCharsets.UTF_8)));
+
+		// Then
+		JsonObject result = gson.fromJson(response.getEntity().toString(), JsonObject.class);
+		assertEquals(1, result.get("rejected").getAsInt());
+		assertEquals("Timestamp must not be negative: -1",
+				result.getAsJsonArray("results").get(0).getAsJsonObject().get("error").getAsString());
+		verify(repository, times(0)).updateAtmosphericInformation(anyString(), anyObject(), anyLong());
+	}
+
+	@Test
+	public void testUpdateWeatherBatchWithMalformedBody() throws Exception {
+		// When
+		Response response = unit.updateWeather(new ByteArrayInputStream("{\"iata\": \"JFK\"}".getBytes(StandardCharsets.UTF_8)));
+
+		// Then
+		assertEquals(Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+	}
+
 	@Test
 	public void testStats() throws Exception {
-		// TODO : write test for stats. Hope to do this in part 3
-		//		unit.stats();
+		// Given
+		Airport airport1 = new Airport.Builder().withIataCode("JFK").build();
+		Airport airport2 = new Airport.Builder().withIataCode("LHR").build();
+
+		when(repository.getDataSize()).thenReturn(2L);
+		when(repository.getAirports()).thenReturn(Arrays.asList(airport1, airport2));
+		when(repository.getRequestCounts()).thenReturn(Collections.singletonMap("JFK", 4L));
+		when(repository.getRadiusHistogram()).thenReturn(new long[] { 1, 3 });
+
+		// When
+		Response response = unit.stats();
+
+		// Then
+		assertEquals(Status.OK.getStatusCode(), response.getStatus());
+		JsonObject stats = gson.fromJson(entityOf(response), JsonObject.class);
+		assertEquals(2, stats.get("datasize").getAsLong());
+		assertEquals(1.0, stats.getAsJsonObject("iata_freq").get("JFK").getAsDouble(), 0);
+		assertEquals(0.0, stats.getAsJsonObject("iata_freq").get("LHR").getAsDouble(), 0);
+		assertEquals(3, stats.getAsJsonArray("radius_freq").get(1).getAsLong());
 	}
-	
+
+	@Test
+	public void testStatsWithoutRequests() throws Exception {
+		// Given
+		Airport airport = new Airport.Builder().withIataCode("JFK").build();
+
+		when(repository.getAirports()).thenReturn(Collections.singletonList(airport));
+		when(repository.getRequestCounts()).thenReturn(Collections.emptyMap());
+		when(repository.getRadiusHistogram()).thenReturn(new long[0]);
+
+		// When
+		Response response = unit.stats();
+
+		// Then
+		assertEquals(Status.OK.getStatusCode(), response.getStatus());
+		JsonObject stats = gson.fromJson(entityOf(response), JsonObject.class);
+		assertEquals(0.0, stats.getAsJsonObject("iata_freq").get("JFK").getAsDouble(), 0);
+	}
+
 	
 	@Test
 	public void testDeleteExistingAirport() {
@@ -0,0 +1,248 @@
+package com.crossover.trial.weather.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.io.AirportCsv;
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.server.data.ColumnarRepository;
+import com.crossover.trial.weather.server.data.HashRing;
+import com.crossover.trial.weather.server.data.Repository;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Runs two shards and the router on local ports.
+ */
+public class ShardRouterTest {
+
+	private static final Gson gson = new Gson();
+
+	/** airports around New York, spread over both shards */
+	private static final String[] CODES = { "BOS", "EWR", "JFK", "LGA", "MMU" };
+
+	private final List<HttpServer> servers = new ArrayList<>();
+
+	private final List<Repository> repositories = new ArrayList<>();
+
+	private HashRing<String> ring;
+
+	private ShardRouter router;
+
+	private Client client;
+
+	private WebTarget airports;
+
+	@Before
+	public void setUp() throws IOException {
+		// the placement depends on the ports, which are retried until both shards own airports
+		List<String> urls;
+		do {
+			urls = Arrays.asList("http://localhost:" + freePort() + "/", "http://localhost:" + freePort() + "/");
+			ring = HashRing.of(urls);
+		} while (urls.get(0).equals(urls.get(1)) || !ownsAirports(ring, 0) || !ownsAirports(ring, 1));
+		for (String url : urls) {
+			Repository repository = new ColumnarRepository();
+			servers.add(GrizzlyHttpServerFactory.createHttpServer(URI.create(url),
+					new ResourceConfig().register(new RestAirportsEndpoint(repository))));
+			repositories.add(repository);
+		}
+		router = new ShardRouter(ring);
+		String routerUrl = "http://localhost:" + freePort() + "/";
+		servers.add(GrizzlyHttpServerFactory.createHttpServer(URI.create(routerUrl),
+				new ResourceConfig().register(router)));
+
+		client = ClientBuilder.newClient();
+		airports = client.target(routerUrl).path("airports");
+		addAirport("BOS", 42.364347, -71.005181);
+		addAirport("EWR", 40.6925, -74.168667);
+		addAirport("JFK", 40.639751, -73.778925);
+		addAirport("LGA", 40.777245, -73.872608);
+		addAirport("MMU", 40.79935, -74.4148747);
+	}
+
+	@After
+	public void tearDown() {
+		client.close();
+		router.close();
+		for (HttpServer server : servers) {
+			server.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testPartitionAirports() {
+		// When
+		String[] listed = gson.fromJson(airports.request().get(String.class), String[].class);
+		Response conflict = airports.path("JFK/1/1").request().post(Entity.text(""));
+
+		// Then
+		assertEquals(new HashSet<>(Arrays.asList(CODES)), new HashSet<>(Arrays.asList(listed)));
+		assertEquals(Response.Status.CONFLICT.getStatusCode(), conflict.getStatus());
+		for (String code : CODES) {
+			int shard = ring.indexOf(code);
+			assertNotNull(repositories.get(shard).getAirport(code));
+			assertNull(repositories.get(1 - shard).getAirport(code));
+		}
+	}
+
+	@Test
+	public void testGatherWeatherAroundFromAllShards() {
+		// Given
+		JsonArray updates = new JsonArray();
+		for (String code : CODES) {
+			JsonObject update = new JsonObject();
+			update.addProperty("iata", code);
+			update.add("dataPoint", gson.toJsonTree(new DataPoint.Builder(DataPointType.WIND).withMean(10)
+					.withFirst(5).withSecond(10).withLast(20).withCount(4).build()));
+			updates.add(update);
+		}
+		updates.add(new JsonObject());
+		JsonObject updated = gson.fromJson(airports.path("weather").request()
+				.put(Entity.entity(gson.toJson(updates), MediaType.APPLICATION_JSON), String.class), JsonObject.class);
+
+		// When
+		JsonArray around = gson.fromJson(airports.path("JFK/weather/100").request().get(String.class),
+				JsonArray.class);
+		JsonObject stats = gson.fromJson(airports.path("stats").request().get(String.class), JsonObject.class);
+
+		// Then
+		assertEquals(CODES.length, updated.get("accepted").getAsInt());
+		assertEquals(1, updated.get("rejected").getAsInt());
+		JsonArray results = updated.getAsJsonArray("results");
+		for (int index = 0; index < results.size(); index++) {
+			assertEquals(index, results.get(index).getAsJsonObject().get("index").getAsInt());
+		}
+		assertEquals(400, results.get(CODES.length).getAsJsonObject().get("status").getAsInt());
+		// all but Boston
+		assertEquals(4, around.size());
+		assertEquals(1, stats.get("request_count").getAsLong());
+		assertEquals(1.0, stats.getAsJsonObject("iata_freq").get("JFK").getAsDouble(), 0);
+		assertEquals(1, stats.getAsJsonArray("radius_freq").get(10).getAsLong());
+	}
+
+	@Test
+	public void testAnswerBadGatewayForUnreachableShard() {
+		// Given
+		servers.get(ring.indexOf("JFK")).shutdownNow();
+
+		// When
+		Response response = airports.path("JFK").request().get();
+		Response listed = airports.request().get();
+
+		// Then
+		assertEquals(Response.Status.BAD_GATEWAY.getStatusCode(), response.getStatus());
+		assertEquals(Response.Status.BAD_GATEWAY.getStatusCode(), listed.getStatus());
+	}
+
+	@Test
+	public void testReportUnreachableShardPerItem() {
+		// Given
+		int down = ring.indexOf("JFK");
+		servers.get(down).shutdownNow();
+		JsonArray updates = new JsonArray();
+		for (String code : CODES) {
+			JsonObject update = new JsonObject();
+			update.addProperty("iata", code);
+			update.add("dataPoint", gson.toJsonTree(new DataPoint.Builder(DataPointType.WIND).withMean(10).build()));
+			updates.add(update);
+		}
+
+		// When
+		Response response = airports.path("weather").request()
+				.put(Entity.entity(gson.toJson(updates), MediaType.APPLICATION_JSON));
+
+		// Then
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+		JsonObject updated = gson.fromJson(response.readEntity(String.class), JsonObject.class);
+		JsonArray results = updated.getAsJsonArray("results");
+		int accepted = 0;
+		for (int index = 0; index < CODES.length; index++) {
+			JsonObject result = results.get(index).getAsJsonObject();
+			assertEquals(index, result.get("index").getAsInt());
+			if (ring.indexOf(CODES[index]) == down) {
+				assertEquals(Response.Status.BAD_GATEWAY.getStatusCode(), result.get("status").getAsInt());
+			} else {
+				assertEquals(Response.Status.OK.getStatusCode(), result.get("status").getAsInt());
+				accepted++;
+			}
+		}
+		assertEquals(accepted, updated.get("accepted").getAsInt());
+		assertEquals(CODES.length - accepted, updated.get("rejected").getAsInt());
+	}
+
+	@Test
+	public void testImportCsvWithLineBreaksInQuotedFields() {
+		// Given
+		String[] codes = { "ORD", "LAX", "SFO", "SEA", "DEN" };
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < codes.length; i++) {
+			csv.append(i).append(",\"Airport\n").append(codes[i]).append("\",\"City\n").append(codes[i])
+					.append("\",\"United States\",\"").append(codes[i]).append("\",\"K").append(codes[i])
+					.append("\",40,-100,0,-6,\"A\"\n");
+		}
+		csv.append("5,\"broken\"\n");
+
+		// When
+		Response response = airports.path("import").request()
+				.post(Entity.entity(csv.toString(), AirportCsv.MEDIA_TYPE));
+
+		// Then
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+		JsonObject imported = gson.fromJson(response.readEntity(String.class), JsonObject.class);
+		assertEquals(codes.length, imported.get("created").getAsInt());
+		JsonArray errors = imported.getAsJsonArray("errors");
+		assertEquals(1, errors.size());
+		assertEquals(3 * codes.length + 1, errors.get(0).getAsJsonObject().get("line").getAsInt());
+		for (String code : codes) {
+			assertEquals("City\n" + code, repositories.get(ring.indexOf(code)).getAirport(code).getCity());
+		}
+	}
+
+	private void addAirport(String iata, double latitude, double longitude) {
+		Response response = airports.path(iata).path(String.valueOf(latitude)).path(String.valueOf(longitude))
+				.request().post(Entity.text(""));
+		assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+	}
+
+	private static boolean ownsAirports(HashRing<String> ring, int shard) {
+		for (String code : CODES) {
+			if (ring.indexOf(code) == shard) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}